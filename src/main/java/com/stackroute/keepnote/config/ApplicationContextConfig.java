@@ -1,27 +1,67 @@
 package com.stackroute.keepnote.config;
 
+import java.io.Closeable;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import javax.sql.DataSource;
 
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.orm.hibernate5.HibernateTransactionManager;
 import org.springframework.orm.hibernate5.LocalSessionFactoryBean;
+import org.springframework.orm.hibernate5.LocalSessionFactoryBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
-import org.apache.commons.dbcp2.BasicDataSource;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.hibernate5.Hibernate5Module;
+import com.stackroute.keepnote.model.NoteContentConverter;
+import com.stackroute.keepnote.model.NoteContentType;
+import com.stackroute.keepnote.service.ChangeSink;
+import com.stackroute.keepnote.service.FileChangeSink;
+import com.stackroute.keepnote.service.InMemoryChangeSink;
 
 
+
+import static org.hibernate.cfg.AvailableSettings.CACHE_REGION_FACTORY;
+import static org.hibernate.cfg.AvailableSettings.CACHE_REGION_PREFIX;
 import static org.hibernate.cfg.AvailableSettings.DIALECT;
 import static org.hibernate.cfg.AvailableSettings.FORMAT_SQL;
+import static org.hibernate.cfg.AvailableSettings.GENERATE_STATISTICS;
 import static org.hibernate.cfg.AvailableSettings.HBM2DDL_AUTO;
+import static org.hibernate.cfg.AvailableSettings.ORDER_INSERTS;
+import static org.hibernate.cfg.AvailableSettings.ORDER_UPDATES;
+import static org.hibernate.cfg.AvailableSettings.QUERY_PLAN_CACHE_MAX_SIZE;
+import static org.hibernate.cfg.AvailableSettings.QUERY_PLAN_CACHE_PARAMETER_METADATA_MAX_SIZE;
+import static org.hibernate.cfg.AvailableSettings.QUERY_STARTUP_CHECKING;
 import static org.hibernate.cfg.AvailableSettings.SHOW_SQL;
+import static org.hibernate.cfg.AvailableSettings.USE_QUERY_CACHE;
+import static org.hibernate.cfg.AvailableSettings.USE_SECOND_LEVEL_CACHE;
+import static org.hibernate.cfg.AvailableSettings.STATEMENT_BATCH_SIZE;
 
 /*This class will contain the application-context for the application. 
  * Define the following annotations:
@@ -32,6 +72,7 @@ import static org.hibernate.cfg.AvailableSettings.SHOW_SQL;
  * @EnableWebMvc - Adding this annotation to an @Configuration class imports the Spring MVC 
  * 				   configuration from WebMvcConfigurationSupport 
  * @EnableTransactionManagement - Enables Spring's annotation-driven transaction management capability.
+ * @EnableScheduling - Runs the @Scheduled maintenance jobs (e.g. purging deleted notes).
  *                  
  * 
  * */
@@ -40,8 +81,9 @@ import static org.hibernate.cfg.AvailableSettings.SHOW_SQL;
 @ComponentScan(basePackages= {"com.stackroute.keepnote.*"})
 @EnableWebMvc
 @EnableTransactionManagement
+@EnableScheduling
 @PropertySource("classpath:application.properties")
-public class ApplicationContextConfig {
+public class ApplicationContextConfig implements WebMvcConfigurer {
 
 	
 	@Autowired
@@ -50,17 +92,100 @@ public class ApplicationContextConfig {
 	 * Define the bean for DataSource. In our application, we are using MySQL as the
 	 * dataSource. To create the DataSource bean, we need to know: 1. Driver class
 	 * name 2. Database URL 3. UserName 4. Password
+	 *
+	 * Reads are routed to replicas: MYSQL_REPLICA_URLS holds a comma separated list
+	 * of JDBC urls of read replicas (same user and password as the primary).
+	 * Read-only transactions go to a replica, everything else to the primary; with
+	 * no replicas configured everything goes to the primary.
 	 */
 	 @Bean (name ="dataSource")
-	 @Autowired
-	 public BasicDataSource getDataSource() {
-		 final BasicDataSource dataSource = new BasicDataSource();
-		 dataSource.setDriverClassName("com.mysql.cj.jdbc.driver");
-		 dataSource.setUrl("jdbc:mysql://" + System.getenv("MYSQL_HOST") + ":3306/" + System.getenv("MYSQL_DATABASE")+"?verifyServerCertificate=false&useSSL=false&requireSSL=false");
-		 dataSource.setUsername(System.getenv("MYSQL_USER"));
-		 dataSource.setPassword(System.getenv("MYSQL_PASSWORD"));
-		 
-		 return dataSource;
+	 public DataSource getDataSource() {
+		 List<DataSource> replicas = new ArrayList<DataSource>();
+		 String replicaUrls = System.getenv("MYSQL_REPLICA_URLS");
+		 if (replicaUrls != null) {
+			 for (String replicaUrl : replicaUrls.split(",")) {
+				 if (!replicaUrl.trim().isEmpty()) {
+					 replicas.add(createDataSource("replica-" + replicas.size(), replicaUrl.trim()));
+				 }
+			 }
+		 }
+		 ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(createDataSource("primary",
+				 "jdbc:mysql://" + System.getenv("MYSQL_HOST") + ":3306/" + System.getenv("MYSQL_DATABASE")+"?verifyServerCertificate=false&useSSL=false&requireSSL=false"),
+				 replicas);
+		 routingDataSource.afterPropertiesSet();
+		 return new LazyConnectionDataSourceProxy(routingDataSource);
+	 }
+
+	/*
+	 * Metrics of every connection pool, fed by Hikari on each checkout.
+	 */
+	 @Bean
+	 public ConnectionPoolMetrics connectionPoolMetrics() {
+		 return new ConnectionPoolMetrics();
+	 }
+
+	/*
+	 * Metrics of the compression of note content.
+	 */
+	 @Bean
+	 public ContentCompressionMetrics contentCompressionMetrics() {
+		 return new ContentCompressionMetrics();
+	 }
+
+	/*
+	 * The converter of note content, compressing values of at least
+	 * content.compression_threshold bytes. Every SessionFactory maps the content
+	 * columns with it through the NoteContentType registered by registerTypes.
+	 */
+	 @Bean
+	 public NoteContentConverter noteContentConverter() {
+		 return new NoteContentConverter(env.getProperty("content.compression_threshold", Integer.class,
+				 NoteContentConverter.DEFAULT_COMPRESSION_THRESHOLD), contentCompressionMetrics());
+	 }
+
+	 private void registerTypes(LocalSessionFactoryBuilder builder) {
+		 builder.registerTypeOverride(new NoteContentType(noteContentConverter()), new String[] { NoteContentType.NAME });
+	 }
+
+	/*
+	 * Create a Hikari connection pool for the given url. Sizing, timeouts and
+	 * validation come from the pool.* properties of application.properties.
+	 */
+	 private HikariDataSource createDataSource(String poolName, String url) {
+		 final HikariConfig config = new HikariConfig();
+		 config.setPoolName(poolName);
+		 config.setJdbcUrl(url);
+		 if (isEmbedded(url)) {
+			 config.setUsername("sa");
+		 } else {
+			 config.setDriverClassName("com.mysql.cj.jdbc.Driver");
+			 config.setUsername(System.getenv("MYSQL_USER"));
+			 config.setPassword(System.getenv("MYSQL_PASSWORD"));
+		 }
+		 config.setMaximumPoolSize(env.getProperty("pool.maximum_pool_size", Integer.class, 10));
+		 config.setMinimumIdle(env.getProperty("pool.minimum_idle", Integer.class, 10));
+		 config.setConnectionTimeout(env.getProperty("pool.connection_timeout_ms", Long.class, 3000L));
+		 config.setValidationTimeout(env.getProperty("pool.validation_timeout_ms", Long.class, 1000L));
+		 config.setIdleTimeout(env.getProperty("pool.idle_timeout_ms", Long.class, 600000L));
+		 config.setMaxLifetime(env.getProperty("pool.max_lifetime_ms", Long.class, 1800000L));
+		 config.setLeakDetectionThreshold(env.getProperty("pool.leak_detection_threshold_ms", Long.class, 0L));
+		 if (!isEmbedded(url)) {
+			 // let the driver reuse prepared statements across checkouts
+			 config.addDataSourceProperty("cachePrepStmts", "true");
+			 config.addDataSourceProperty("prepStmtCacheSize", env.getProperty("pool.prep_stmt_cache_size", "250"));
+			 config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+			 config.addDataSourceProperty("useServerPrepStmts", "true");
+			 // honour the fetch size of scrolled queries (exports), on the primary, replicas and shards alike
+			 config.addDataSourceProperty("useCursorFetch", "true");
+			 // send a JDBC batch of inserts as one multi-row INSERT instead of a round trip per row
+			 config.addDataSourceProperty("rewriteBatchedStatements", "true");
+		 }
+		 config.setMetricsTrackerFactory(connectionPoolMetrics());
+		 return new HikariDataSource(config);
+	 }
+
+	 private static boolean isEmbedded(String url) {
+		 return url.startsWith("jdbc:h2:");
 	 }
 	/*
 	 * Use this configuration while submitting solution in hobbes.
@@ -73,13 +198,45 @@ public class ApplicationContextConfig {
 	 */
 	 private Properties hibernateProperties() {
 		 final Properties properties = new Properties();
-		 properties.setProperty(HBM2DDL_AUTO, env.getProperty("hibernate.hbm2ddl.auto"));
+		 // the schema is owned by the Flyway migrations, Hibernate only checks it matches the mappings
+		 properties.setProperty(HBM2DDL_AUTO, env.getProperty("hibernate.hbm2ddl.auto", "validate"));
 		 properties.setProperty(DIALECT, env.getProperty("hibernate.dialect"));
 		 properties.setProperty(SHOW_SQL, env.getProperty("hibernate.show_sql"));
 		 properties.setProperty(FORMAT_SQL, env.getProperty("hibernate.format_sql"));
+		 // group inserts/updates per entity so they can be sent as JDBC batches
+		 properties.setProperty(STATEMENT_BATCH_SIZE, env.getProperty("hibernate.jdbc.batch_size", "50"));
+		 properties.setProperty(ORDER_INSERTS, env.getProperty("hibernate.order_inserts", "true"));
+		 properties.setProperty(ORDER_UPDATES, env.getProperty("hibernate.order_updates", "true"));
+		 // second level and query cache for the read-mostly Category and Reminder rows, regions in ehcache.xml
+		 properties.setProperty(USE_SECOND_LEVEL_CACHE, env.getProperty("hibernate.cache.use_second_level_cache", "true"));
+		 properties.setProperty(USE_QUERY_CACHE, env.getProperty("hibernate.cache.use_query_cache", "true"));
+		 properties.setProperty(CACHE_REGION_FACTORY, env.getProperty("hibernate.cache.region.factory_class",
+				 "org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory"));
+		 properties.setProperty(GENERATE_STATISTICS, env.getProperty("hibernate.generate_statistics", "true"));
+		 // the DAO queries are named queries on the entities: compile the HQL ones when the factory is built, so
+		 // one not matching the mappings stops the boot (native SQL is only parsed for its parameters), and keep
+		 // the plans of the named and dynamic ones cached
+		 properties.setProperty(QUERY_STARTUP_CHECKING, "true");
+		 properties.setProperty(QUERY_PLAN_CACHE_MAX_SIZE, env.getProperty("hibernate.query.plan_cache_max_size", "1024"));
+		 properties.setProperty(QUERY_PLAN_CACHE_PARAMETER_METADATA_MAX_SIZE,
+				 env.getProperty("hibernate.query.plan_parameter_metadata_max_size", "256"));
 		 return properties;
 	 }
 
+	/*
+	 * Define the bean for Flyway, which brings the schema up to date by applying
+	 * the versioned scripts of src/main/resources/db/migration (V<n>__name.sql),
+	 * and the Java migrations of the db.migration package, not yet recorded in
+	 * its schema_version table. It runs before the SessionFactory
+	 * is built, which takes it as a parameter for that reason.
+	 */
+	 @Bean(name = "flyway", initMethod = "migrate")
+	 public Flyway getFlyway() {
+		 return Flyway.configure().dataSource(getDataSource())
+				 .locations(env.getProperty("flyway.locations", "classpath:db/migration"))
+				 .table("schema_version").load();
+	 }
+
 	/*
 	 * create a getter for Hibernate properties here we have to mention 1. show_sql
 	 * 2. Dialect 3. hbm2ddl
@@ -90,9 +247,16 @@ public class ApplicationContextConfig {
 	 * class through which we get sessions and perform database operations.
 	 */
 	 @Bean(name = "sessionFactory")
+	 @Primary
 	 @Autowired
-	 public LocalSessionFactoryBean getSessionFactory(final DataSource dataSource) {
-		 final LocalSessionFactoryBean sessionFactory = new LocalSessionFactoryBean();
+	 public LocalSessionFactoryBean getSessionFactory(final DataSource dataSource, final Flyway flyway) {
+		 final LocalSessionFactoryBean sessionFactory = new LocalSessionFactoryBean() {
+			 @Override
+			 protected SessionFactory buildSessionFactory(LocalSessionFactoryBuilder builder) {
+				 registerTypes(builder);
+				 return super.buildSessionFactory(builder);
+			 }
+		 };
 		 sessionFactory.setDataSource(dataSource);
 		 sessionFactory.setPackagesToScan("com.stackroute.keepnote.*");
 		 sessionFactory.setHibernateProperties(hibernateProperties());
@@ -107,11 +271,166 @@ public class ApplicationContextConfig {
 	 * ensures data integrity.
 	 */
 	 
-	 @Bean
-	 public HibernateTransactionManager getTransactionManager() {
+	 @Bean(name = "directoryTransactionManager")
+	 public HibernateTransactionManager getDirectoryTransactionManager() {
 		 HibernateTransactionManager transactionManager = new HibernateTransactionManager();
-		 transactionManager.setSessionFactory(getSessionFactory(getDataSource()).getObject());
+		 transactionManager.setSessionFactory(getSessionFactory(getDataSource(), getFlyway()).getObject());
 		 return transactionManager;
 	 }
 
+	/*
+	 * The transaction manager used by @Transactional. When sharded, transactions
+	 * are begun on the shard of the current user and on the default database
+	 * (which keeps the users) otherwise; the UserDAO always works on the default
+	 * database through directoryTransactionManager.
+	 */
+	 @Bean
+	 @Primary
+	 public PlatformTransactionManager getTransactionManager() {
+		 ShardRouter shardRouter = getShardRouter();
+		 if (!shardRouter.isSharded()) {
+			 return getDirectoryTransactionManager();
+		 }
+		 List<PlatformTransactionManager> shardTransactionManagers = new ArrayList<PlatformTransactionManager>();
+		 for (SessionFactory shard : shardRouter.getShards()) {
+			 shardTransactionManagers.add(new HibernateTransactionManager(shard));
+		 }
+		 return new ShardRoutingTransactionManager(getDirectoryTransactionManager(), shardTransactionManagers);
+	 }
+
+	/*
+	 * Define the shards of the sharded persistence mode: sharding.urls holds the
+	 * comma separated JDBC urls of the shards, in a fixed order as a user's shard
+	 * is picked by position (see ShardRouter). Empty means not sharded. Each
+	 * shard gets its own pool, SessionFactory and cache region prefix. MySQL
+	 * shards are migrated by Flyway like the default database; embedded H2 shards
+	 * (jdbc:h2:mem:..., to run locally) get their schema from the mappings, as
+	 * the migrations are written for MySQL, plus the tables without an entity
+	 * from db/h2/unmapped_tables.sql. They run in MySQL mode, which the native
+	 * statements (INSERT IGNORE, ON DUPLICATE KEY UPDATE) need.
+	 */
+	 @Bean(destroyMethod = "close")
+	 public ShardRouter getShardRouter() {
+		 List<SessionFactory> shards = new ArrayList<SessionFactory>();
+		 List<Closeable> resources = new ArrayList<Closeable>();
+		 for (String url : env.getProperty("sharding.urls", "").split(",")) {
+			 if (url.trim().isEmpty()) {
+				 continue;
+			 }
+			 String name = "shard" + shards.size();
+			 String shardUrl = url.trim();
+			 if (isEmbedded(shardUrl) && !shardUrl.toUpperCase().contains(";MODE=")) {
+				 shardUrl += ";MODE=MySQL";
+			 }
+			 HikariDataSource dataSource = createDataSource(name, shardUrl);
+			 resources.add(dataSource);
+			 Properties properties = hibernateProperties();
+			 properties.setProperty(CACHE_REGION_PREFIX, name);
+			 if (isEmbedded(shardUrl)) {
+				 properties.setProperty(DIALECT, "org.hibernate.dialect.H2Dialect");
+				 properties.setProperty(HBM2DDL_AUTO, "create");
+			 } else {
+				 Flyway.configure().dataSource(dataSource)
+						 .locations(env.getProperty("flyway.locations", "classpath:db/migration"))
+						 .table("schema_version").load().migrate();
+			 }
+			 LocalSessionFactoryBuilder builder = new LocalSessionFactoryBuilder(dataSource);
+			 builder.scanPackages("com.stackroute.keepnote.model");
+			 builder.addProperties(properties);
+			 registerTypes(builder);
+			 shards.add(builder.buildSessionFactory());
+			 if (isEmbedded(shardUrl)) {
+				 new ResourceDatabasePopulator(new ClassPathResource("db/h2/unmapped_tables.sql")).execute(dataSource);
+			 }
+		 }
+		 return new ShardRouter(shards, resources);
+	 }
+
+	/*
+	 * SessionFactory of the Note, Category and Reminder DAOs: routed to the shard
+	 * of the current user when sharded, the default one otherwise.
+	 */
+	 @Bean(name = "shardedSessionFactory", destroyMethod = "")
+	 public SessionFactory getShardedSessionFactory() {
+		 ShardRouter shardRouter = getShardRouter();
+		 if (!shardRouter.isSharded()) {
+			 return getSessionFactory(getDataSource(), getFlyway()).getObject();
+		 }
+		 return ShardRoutingSessionFactory.create(shardRouter);
+	 }
+
+	/*
+	 * Executor for long running background jobs such as erasing a user. Small on
+	 * purpose: these jobs should not compete with requests for connections.
+	 */
+	 @Bean(name = "backgroundTaskExecutor")
+	 public ThreadPoolTaskExecutor getBackgroundTaskExecutor() {
+		 ThreadPoolTaskExecutor taskExecutor = new ThreadPoolTaskExecutor();
+		 taskExecutor.setCorePoolSize(env.getProperty("background.pool_size", Integer.class, 2));
+		 taskExecutor.setMaxPoolSize(env.getProperty("background.pool_size", Integer.class, 2));
+		 taskExecutor.setThreadNamePrefix("keepnote-background-");
+		 taskExecutor.setWaitForTasksToCompleteOnShutdown(true);
+		 return taskExecutor;
+	 }
+
+	/*
+	 * Scheduler of the @Scheduled jobs. Spring's default runs them on a single
+	 * thread, where a long purge or archive run would hold back the autosave
+	 * flushes due every second.
+	 */
+	 @Bean(name = "taskScheduler")
+	 public ThreadPoolTaskScheduler getTaskScheduler() {
+		 ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		 taskScheduler.setPoolSize(env.getProperty("scheduler.pool_size", Integer.class, 3));
+		 taskScheduler.setThreadNamePrefix("keepnote-scheduler-");
+		 return taskScheduler;
+	 }
+
+	/*
+	 * Note.category and Note.reminder are lazy, so a note read through the summary
+	 * graph carries uninitialized proxies. The JSON mapper has the Hibernate module
+	 * registered so these are written as their identifier instead of being loaded
+	 * (or failing) during serialization. It is used by the message converter and
+	 * by handlers which write JSON to the response themselves.
+	 *
+	 * The module would also skip the properties marked @Transient for JPA, but
+	 * those are JSON properties all the same: the content of a note (kept in its
+	 * body), the rebuilt content of a revision and the shard of a change record.
+	 */
+	 @Bean
+	 public ObjectMapper objectMapper() {
+		 Hibernate5Module hibernateModule = new Hibernate5Module();
+		 hibernateModule.enable(Hibernate5Module.Feature.SERIALIZE_IDENTIFIER_FOR_LAZY_NOT_LOADED_OBJECTS);
+		 hibernateModule.disable(Hibernate5Module.Feature.USE_TRANSIENT_ANNOTATION);
+		 return Jackson2ObjectMapperBuilder.json().modulesToInstall(hibernateModule).build();
+	 }
+
+	/*
+	 * Sink of the change relay: outbox.sink "file" appends the changes to
+	 * outbox.file as JSON lines, "memory" keeps them in the process (tests and
+	 * consumers running in the same process).
+	 */
+	 @Bean
+	 public ChangeSink getChangeSink() {
+		 if ("memory".equals(env.getProperty("outbox.sink", "file"))) {
+			 return new InMemoryChangeSink();
+		 }
+		 return new FileChangeSink(Paths.get(env.getProperty("outbox.file", "/var/lib/keepnote/outbox/changes.jsonl")),
+				 objectMapper());
+	 }
+
+	 @Override
+	 public void addInterceptors(InterceptorRegistry registry) {
+		 registry.addInterceptor(new ShardContextInterceptor());
+	 }
+
+	 @Override
+	 public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		 for (HttpMessageConverter<?> converter : converters) {
+			 if (converter instanceof MappingJackson2HttpMessageConverter) {
+				 ((MappingJackson2HttpMessageConverter) converter).setObjectMapper(objectMapper());
+			 }
+		 }
+	 }
+
 }
@@ -0,0 +1,134 @@
+package com.stackroute.keepnote.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/*
+ * Collects, per Hikari pool, the active/idle/pending connection counts and a
+ * histogram of how long threads waited to check a connection out. A pool whose
+ * pending count and checkout wait grow is saturated; slow queries instead show
+ * up as long usage times with little waiting.
+ */
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+	private final Map<String, PoolMetrics> pools = new ConcurrentHashMap<String, PoolMetrics>();
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		PoolMetrics metrics = new PoolMetrics(poolStats);
+		pools.put(poolName, metrics);
+		return metrics;
+	}
+
+	/*
+	 * Snapshot of every pool, keyed by pool name.
+	 */
+	public Map<String, Map<String, Object>> getStatistics() {
+		Map<String, Map<String, Object>> statistics = new LinkedHashMap<String, Map<String, Object>>();
+		for (Map.Entry<String, PoolMetrics> pool : pools.entrySet()) {
+			statistics.put(pool.getKey(), pool.getValue().snapshot());
+		}
+		return statistics;
+	}
+
+	private static class PoolMetrics implements IMetricsTracker {
+
+		private final PoolStats poolStats;
+
+		private final Histogram checkoutWait = new Histogram();
+
+		private final Histogram usage = new Histogram();
+
+		private final LongAdder timeouts = new LongAdder();
+
+		PoolMetrics(PoolStats poolStats) {
+			this.poolStats = poolStats;
+		}
+
+		@Override
+		public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+			checkoutWait.record(TimeUnit.NANOSECONDS.toMicros(elapsedAcquiredNanos));
+		}
+
+		@Override
+		public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+			usage.record(TimeUnit.MILLISECONDS.toMicros(elapsedBorrowedMillis));
+		}
+
+		@Override
+		public void recordConnectionTimeout() {
+			timeouts.increment();
+		}
+
+		Map<String, Object> snapshot() {
+			Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+			snapshot.put("active", poolStats.getActiveConnections());
+			snapshot.put("idle", poolStats.getIdleConnections());
+			snapshot.put("pending", poolStats.getPendingThreads());
+			snapshot.put("total", poolStats.getTotalConnections());
+			snapshot.put("max", poolStats.getMaxConnections());
+			snapshot.put("timeouts", timeouts.sum());
+			snapshot.put("checkoutWaitMicros", checkoutWait.snapshot());
+			snapshot.put("usageMicros", usage.snapshot());
+			return snapshot;
+		}
+	}
+
+	/*
+	 * Fixed bucket histogram of durations in microseconds; the count of each bucket
+	 * is the number of samples up to and including its bound.
+	 */
+	static class Histogram {
+
+		private static final long[] BOUNDS = { 100, 500, 1000, 5000, 10000, 50000, 100000, 500000, 1000000,
+				5000000 };
+
+		private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+		private final LongAdder count = new LongAdder();
+
+		private final LongAdder sum = new LongAdder();
+
+		private final AtomicLong max = new AtomicLong();
+
+		Histogram() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long micros) {
+			int bucket = 0;
+			while (bucket < BOUNDS.length && micros > BOUNDS[bucket]) {
+				bucket++;
+			}
+			buckets[bucket].increment();
+			count.increment();
+			sum.add(micros);
+			max.accumulateAndGet(micros, Math::max);
+		}
+
+		Map<String, Object> snapshot() {
+			Map<String, Object> snapshot = new LinkedHashMap<String, Object>();
+			snapshot.put("count", count.sum());
+			snapshot.put("sum", sum.sum());
+			snapshot.put("max", max.get());
+			Map<String, Long> counts = new LinkedHashMap<String, Long>();
+			for (int i = 0; i < BOUNDS.length; i++) {
+				counts.put("le" + BOUNDS[i], buckets[i].sum());
+			}
+			counts.put("inf", buckets[BOUNDS.length].sum());
+			snapshot.put("buckets", counts);
+			return snapshot;
+		}
+	}
+
+}
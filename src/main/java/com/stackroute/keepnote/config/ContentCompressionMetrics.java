@@ -0,0 +1,71 @@
+package com.stackroute.keepnote.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.stackroute.keepnote.config.ConnectionPoolMetrics.Histogram;
+
+/*
+ * Collects what the compression of note content costs and saves: how many
+ * values were stored compressed or plain, their size before and after, and
+ * histograms of the CPU time spent compressing and decompressing each value.
+ */
+public class ContentCompressionMetrics {
+
+	private final LongAdder storedPlain = new LongAdder();
+
+	private final LongAdder storedCompressed = new LongAdder();
+
+	private final LongAdder bytesBeforeCompression = new LongAdder();
+
+	private final LongAdder bytesAfterCompression = new LongAdder();
+
+	private final LongAdder readCompressed = new LongAdder();
+
+	private final Histogram compressMicros = new Histogram();
+
+	private final Histogram decompressMicros = new Histogram();
+
+	public void recordPlain() {
+		storedPlain.increment();
+	}
+
+	public void recordCompression(int before, int after, long cpuNanos) {
+		storedCompressed.increment();
+		bytesBeforeCompression.add(before);
+		bytesAfterCompression.add(after);
+		compressMicros.record(TimeUnit.NANOSECONDS.toMicros(cpuNanos));
+	}
+
+	/*
+	 * A value which was compressed but kept plain as it did not get smaller; the
+	 * time spent is still counted.
+	 */
+	public void recordIncompressible(long cpuNanos) {
+		storedPlain.increment();
+		compressMicros.record(TimeUnit.NANOSECONDS.toMicros(cpuNanos));
+	}
+
+	public void recordDecompression(long cpuNanos) {
+		readCompressed.increment();
+		decompressMicros.record(TimeUnit.NANOSECONDS.toMicros(cpuNanos));
+	}
+
+	public Map<String, Object> getStatistics() {
+		long before = bytesBeforeCompression.sum();
+		long after = bytesAfterCompression.sum();
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("storedPlain", storedPlain.sum());
+		statistics.put("storedCompressed", storedCompressed.sum());
+		statistics.put("bytesBeforeCompression", before);
+		statistics.put("bytesAfterCompression", after);
+		statistics.put("compressionRatio", after == 0 ? 0.0 : (double) before / after);
+		statistics.put("readCompressed", readCompressed.sum());
+		statistics.put("compressCpuMicros", compressMicros.snapshot());
+		statistics.put("decompressCpuMicros", decompressMicros.snapshot());
+		return statistics;
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.stackroute.keepnote.config;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ * DataSource which sends the connections of @Transactional(readOnly = true)
+ * transactions to one of the replicas (round robin) and everything else to the
+ * primary. The read-only flag of a transaction is only known once the
+ * transaction has begun, so this has to sit behind a
+ * LazyConnectionDataSourceProxy, which defers fetching the real connection
+ * until the first statement is run.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+	private static final String PRIMARY = "primary";
+
+	private static final String REPLICA = "replica-";
+
+	private final int replicaCount;
+
+	private final AtomicInteger nextReplica = new AtomicInteger();
+
+	public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+		Map<Object, Object> targets = new HashMap<Object, Object>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			targets.put(REPLICA + i, replicas.get(i));
+		}
+		this.replicaCount = replicas.size();
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if (replicaCount == 0 || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return PRIMARY;
+		}
+		return REPLICA + Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+	}
+
+}
@@ -0,0 +1,49 @@
+package com.stackroute.keepnote.config;
+
+/*
+ * The user whose shard the current thread works on. It is set for every web
+ * request from the logged in user (ShardContextInterceptor) and by background
+ * jobs working for one user, and picked up by ShardRoutingTransactionManager
+ * and the routed SessionFactory of the Note, Category and Reminder DAOs. Jobs
+ * going over the rows of all users (e.g. the purger) select each shard by its
+ * index instead, which takes precedence over the user.
+ */
+public final class ShardContext {
+
+	private static final ThreadLocal<String> USER_ID = new ThreadLocal<String>();
+
+	private static final ThreadLocal<Integer> SHARD = new ThreadLocal<Integer>();
+
+	private ShardContext() {
+	}
+
+	public static String getUserId() {
+		return USER_ID.get();
+	}
+
+	public static void setUserId(String userId) {
+		if (userId == null) {
+			USER_ID.remove();
+		} else {
+			USER_ID.set(userId);
+		}
+	}
+
+	public static Integer getShard() {
+		return SHARD.get();
+	}
+
+	public static void setShard(Integer shard) {
+		if (shard == null) {
+			SHARD.remove();
+		} else {
+			SHARD.set(shard);
+		}
+	}
+
+	public static void clear() {
+		USER_ID.remove();
+		SHARD.remove();
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.stackroute.keepnote.config;
+
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/*
+ * Selects the shard of the logged in user for the duration of a request. Users
+ * only ever work on their own notes, categories and reminders, so the session
+ * user is the shard key of everything a request touches.
+ */
+public class ShardContextInterceptor extends HandlerInterceptorAdapter {
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		HttpSession session = request.getSession(false);
+		ShardContext.setUserId(session == null ? null : (String) session.getAttribute(LOGGED_IN_USER_ID));
+		return true;
+	}
+
+	@Override
+	public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+			Exception ex) {
+		ShardContext.clear();
+	}
+
+}
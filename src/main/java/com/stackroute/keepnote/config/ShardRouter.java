@@ -0,0 +1,83 @@
+package com.stackroute.keepnote.config;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.hibernate.SessionFactory;
+
+/*
+ * The shards of the sharded persistence mode, in the order of the shard map
+ * (sharding.urls). A user is assigned to a shard by the CRC32 of their user id
+ * modulo the number of shards; the checksum is fixed by the algorithm, not by
+ * the JVM, so a user stays on the same shard across restarts and nodes as long
+ * as the shard map keeps the same number of entries.
+ */
+public class ShardRouter {
+
+	private final List<SessionFactory> shards;
+
+	private final List<Closeable> resources;
+
+	public ShardRouter(List<SessionFactory> shards, List<Closeable> resources) {
+		this.shards = Collections.unmodifiableList(new ArrayList<SessionFactory>(shards));
+		this.resources = new ArrayList<Closeable>(resources);
+	}
+
+	public boolean isSharded() {
+		return !shards.isEmpty();
+	}
+
+	public List<SessionFactory> getShards() {
+		return shards;
+	}
+
+	public static int shardOf(String userId, int shardCount) {
+		CRC32 crc = new CRC32();
+		crc.update(userId.getBytes(StandardCharsets.UTF_8));
+		return (int) (crc.getValue() % shardCount);
+	}
+
+	/*
+	 * The index of the shard the current thread works on: the shard selected in
+	 * ShardContext, else the shard of its user, else null.
+	 */
+	public static Integer currentShard(int shardCount) {
+		Integer shard = ShardContext.getShard();
+		if (shard != null) {
+			return shard;
+		}
+		String userId = ShardContext.getUserId();
+		return userId == null ? null : shardOf(userId, shardCount);
+	}
+
+	public SessionFactory forUser(String userId) {
+		return shards.get(shardOf(userId, shards.size()));
+	}
+
+	/*
+	 * The shard of the current thread; fails if there is none, as guessing a
+	 * shard would silently put rows where they are never found again.
+	 */
+	public SessionFactory current() {
+		Integer shard = currentShard(shards.size());
+		if (shard == null) {
+			throw new IllegalStateException("No user selected for shard routing on this thread");
+		}
+		return shards.get(shard);
+	}
+
+	public void close() throws IOException {
+		for (SessionFactory shard : shards) {
+			shard.close();
+		}
+		for (Closeable resource : resources) {
+			resource.close();
+		}
+	}
+
+}
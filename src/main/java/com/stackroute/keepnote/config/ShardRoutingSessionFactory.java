@@ -0,0 +1,227 @@
+package com.stackroute.keepnote.config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.CacheImplementor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+
+/*
+ * SessionFactory handed to the Note, Category and Reminder DAOs in the sharded
+ * persistence mode: every call goes to the SessionFactory of the shard of the
+ * current thread's user, so the DAOs keep calling getCurrentSession() and get
+ * the session of the shard transaction begun by ShardRoutingTransactionManager.
+ * Calls which only read the mapping metadata (entity graphs, the JDBC services)
+ * are answered by the first shard when no user is selected, since all shards
+ * share the same mappings; opening a session without a user fails. Each shard
+ * has its own second level cache and statistics: getCache() evicts from all
+ * of them and getStatistics() adds up the statistics of all shards.
+ */
+final class ShardRoutingSessionFactory implements InvocationHandler {
+
+	private static final Set<String> SESSION_METHODS = new HashSet<String>(Arrays.asList("getCurrentSession",
+			"openSession", "openStatelessSession", "openTemporarySession", "withOptions", "withStatelessOptions",
+			"createEntityManager"));
+
+	private final ShardRouter shardRouter;
+
+	private ShardRoutingSessionFactory(ShardRouter shardRouter) {
+		this.shardRouter = shardRouter;
+	}
+
+	static SessionFactory create(ShardRouter shardRouter) {
+		return (SessionFactory) Proxy.newProxyInstance(SessionFactoryImplementor.class.getClassLoader(),
+				new Class<?>[] { SessionFactoryImplementor.class }, new ShardRoutingSessionFactory(shardRouter));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		switch (method.getName()) {
+		case "equals":
+			return proxy == args[0];
+		case "hashCode":
+			return System.identityHashCode(proxy);
+		case "toString":
+			return "ShardRoutingSessionFactory" + shardRouter.getShards();
+		case "close":
+			// the shards are closed with the ShardRouter
+			return null;
+		case "getCache":
+			return allCaches();
+		case "getStatistics":
+			List<Statistics> statistics = new ArrayList<Statistics>();
+			for (SessionFactory shard : shardRouter.getShards()) {
+				statistics.add(shard.getStatistics());
+			}
+			return allShards(Statistics.class, statistics);
+		default:
+			break;
+		}
+		SessionFactory target = ShardRouter.currentShard(shardRouter.getShards().size()) != null
+				|| SESSION_METHODS.contains(method.getName())
+				? shardRouter.current() : shardRouter.getShards().get(0);
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+	/*
+	 * A Cache whose calls go to the cache of every shard: evictions reach all of
+	 * them, and a lookup is true if it is true on any shard.
+	 */
+	private Cache allCaches() {
+		return (Cache) Proxy.newProxyInstance(CacheImplementor.class.getClassLoader(),
+				new Class<?>[] { CacheImplementor.class }, (proxy, method, args) -> {
+					if (method.getDeclaringClass() == Object.class) {
+						return method.invoke(this, args);
+					}
+					Object result = null;
+					for (SessionFactory shard : shardRouter.getShards()) {
+						Object shardResult;
+						try {
+							shardResult = method.invoke(shard.getCache(), args);
+						} catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+						result = result == null || Boolean.TRUE.equals(shardResult) ? shardResult : result;
+					}
+					return result;
+				});
+	}
+
+	/*
+	 * Statistics (or the statistics of one entity, collection, query or cache
+	 * region) adding up those of the shards: counts are summed, maximum and
+	 * minimum times are those of all shards, average times are weighted by the
+	 * executions of each shard, and names, entries and the statistics of an item
+	 * are merged. The statistics of an item known on no shard are null, like on
+	 * one SessionFactory. Calls changing the statistics go to every shard.
+	 */
+	private static <T> T allShards(Class<T> type, List<?> targets) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			if (method.getDeclaringClass() == Object.class) {
+				switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					return type.getSimpleName() + targets;
+				}
+			}
+			List<Object> results = new ArrayList<Object>();
+			for (Object target : targets) {
+				results.add(call(target, method, args));
+			}
+			return combine(method, targets, results);
+		}));
+	}
+
+	private static Object combine(Method method, List<?> targets, List<Object> results) throws Throwable {
+		Class<?> returnType = method.getReturnType();
+		String name = method.getName();
+		if (returnType == void.class) {
+			return null;
+		}
+		if (returnType == boolean.class) {
+			return !results.contains(Boolean.FALSE);
+		}
+		if (name.contains("AvgTime")) {
+			Method executionCount = method.getDeclaringClass()
+					.getMethod(name.substring(0, name.indexOf("AvgTime")) + "Count");
+			long executions = 0;
+			double totalTime = 0;
+			for (int i = 0; i < targets.size(); i++) {
+				long shardExecutions = ((Number) call(targets.get(i), executionCount, null)).longValue();
+				executions += shardExecutions;
+				totalTime += shardExecutions * ((Number) results.get(i)).doubleValue();
+			}
+			double average = executions == 0 ? 0 : totalTime / executions;
+			return returnType == double.class ? (Object) average : (Object) (long) average;
+		}
+		if (returnType == long.class || returnType == int.class) {
+			long combined = 0;
+			if (name.endsWith("MaxTime")) {
+				combined = Long.MIN_VALUE;
+				for (Object result : results) {
+					combined = Math.max(combined, ((Number) result).longValue());
+				}
+			} else if (name.endsWith("MinTime") || name.equals("getStartTime")) {
+				combined = Long.MAX_VALUE;
+				for (Object result : results) {
+					combined = Math.min(combined, ((Number) result).longValue());
+				}
+			} else {
+				for (Object result : results) {
+					combined += ((Number) result).longValue();
+				}
+			}
+			return returnType == int.class ? (Object) (int) combined : (Object) combined;
+		}
+		if (returnType == String.class && name.contains("MaxTime")) {
+			// the query or region of the longest time: that of the shard with the maximum
+			Method maxTime = method.getDeclaringClass().getMethod(name.substring(0, name.indexOf("MaxTime") + 7));
+			Object combined = null;
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < targets.size(); i++) {
+				long shardMax = ((Number) call(targets.get(i), maxTime, null)).longValue();
+				if (results.get(i) != null && shardMax > max) {
+					max = shardMax;
+					combined = results.get(i);
+				}
+			}
+			return combined;
+		}
+		if (returnType == String[].class) {
+			Set<String> names = new LinkedHashSet<String>();
+			for (Object result : results) {
+				names.addAll(Arrays.asList((String[]) result));
+			}
+			return names.toArray(new String[names.size()]);
+		}
+		if (returnType == Map.class) {
+			Map<Object, Object> entries = new LinkedHashMap<Object, Object>();
+			for (Object result : results) {
+				if (result != null) {
+					entries.putAll((Map<?, ?>) result);
+				}
+			}
+			return entries;
+		}
+		List<Object> known = new ArrayList<Object>();
+		for (Object result : results) {
+			if (result != null) {
+				known.add(result);
+			}
+		}
+		if (returnType.isInterface() && returnType.getPackage() == Statistics.class.getPackage()) {
+			return known.isEmpty() ? null : allShards(returnType, known);
+		}
+		// e.g. the name of a region: the same on every shard knowing it
+		return known.isEmpty() ? null : known.get(0);
+	}
+
+	private static Object call(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+package com.stackroute.keepnote.config;
+
+import java.util.List;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+
+/*
+ * Transaction manager of the sharded persistence mode. A transaction is begun
+ * on the shard of the current thread (ShardContext), or on the default
+ * (directory) database when there is none. The returned status
+ * remembers the manager it came from, so commit and rollback go to the same
+ * shard even if the thread's user changed in between.
+ */
+public class ShardRoutingTransactionManager implements PlatformTransactionManager {
+
+	private final PlatformTransactionManager defaultTransactionManager;
+
+	private final List<PlatformTransactionManager> shardTransactionManagers;
+
+	public ShardRoutingTransactionManager(PlatformTransactionManager defaultTransactionManager,
+			List<PlatformTransactionManager> shardTransactionManagers) {
+		this.defaultTransactionManager = defaultTransactionManager;
+		this.shardTransactionManagers = shardTransactionManagers;
+	}
+
+	@Override
+	public TransactionStatus getTransaction(TransactionDefinition definition) throws TransactionException {
+		Integer shard = ShardRouter.currentShard(shardTransactionManagers.size());
+		PlatformTransactionManager transactionManager = shard == null ? defaultTransactionManager
+				: shardTransactionManagers.get(shard);
+		return new ShardTransactionStatus(transactionManager, transactionManager.getTransaction(definition));
+	}
+
+	@Override
+	public void commit(TransactionStatus status) throws TransactionException {
+		ShardTransactionStatus shardStatus = (ShardTransactionStatus) status;
+		shardStatus.transactionManager.commit(shardStatus.status);
+	}
+
+	@Override
+	public void rollback(TransactionStatus status) throws TransactionException {
+		ShardTransactionStatus shardStatus = (ShardTransactionStatus) status;
+		shardStatus.transactionManager.rollback(shardStatus.status);
+	}
+
+	private static class ShardTransactionStatus implements TransactionStatus {
+
+		private final PlatformTransactionManager transactionManager;
+
+		private final TransactionStatus status;
+
+		ShardTransactionStatus(PlatformTransactionManager transactionManager, TransactionStatus status) {
+			this.transactionManager = transactionManager;
+			this.status = status;
+		}
+
+		@Override
+		public boolean isNewTransaction() {
+			return status.isNewTransaction();
+		}
+
+		@Override
+		public boolean hasSavepoint() {
+			return status.hasSavepoint();
+		}
+
+		@Override
+		public void setRollbackOnly() {
+			status.setRollbackOnly();
+		}
+
+		@Override
+		public boolean isRollbackOnly() {
+			return status.isRollbackOnly();
+		}
+
+		@Override
+		public void flush() {
+			status.flush();
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return status.isCompleted();
+		}
+
+		@Override
+		public Object createSavepoint() throws TransactionException {
+			return status.createSavepoint();
+		}
+
+		@Override
+		public void rollbackToSavepoint(Object savepoint) throws TransactionException {
+			status.rollbackToSavepoint(savepoint);
+		}
+
+		@Override
+		public void releaseSavepoint(Object savepoint) throws TransactionException {
+			status.releaseSavepoint(savepoint);
+		}
+
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.stackroute.keepnote.controller;
+
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.stackroute.keepnote.service.NoteAutosaveService;
+
+/*
+ * Exposes how many database writes the coalescing of autosaves saves.
+ */
+@RestController
+public class AutosaveStatisticsController {
+
+	private NoteAutosaveService noteAutosaveService;
+
+	@Autowired
+	public AutosaveStatisticsController(NoteAutosaveService noteAutosaveService) {
+		this.noteAutosaveService = noteAutosaveService;
+	}
+
+	/*
+	 * Define a handler method which will return the number of autosaves
+	 * received, of notes written and of failed writes, the notes pending and the
+	 * autosaves per write. This handler method should return any one of the
+	 * status messages basis on different situations: 1. 200(OK) - with the
+	 * statistics. 2. 401(UNAUTHORIZED) - If the user trying to perform the action
+	 * has not logged in.
+	 * 
+	 * This handler method should map to the URL "/stats/autosave" using HTTP GET
+	 * method
+	 */
+	@RequestMapping(path = "/stats/autosave", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Object>> getAutosaveStatistics(HttpSession session) {
+		if (session.getAttribute(LOGGED_IN_USER_ID) == null) {
+			return new ResponseEntity<Map<String, Object>>(HttpStatus.UNAUTHORIZED);
+		}
+		return new ResponseEntity<Map<String, Object>>(noteAutosaveService.getStatistics(), HttpStatus.OK);
+	}
+
+}
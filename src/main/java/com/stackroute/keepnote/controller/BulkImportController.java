@@ -0,0 +1,86 @@
+package com.stackroute.keepnote.controller;
+
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
+import javax.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.stackroute.keepnote.model.ImportJob;
+import com.stackroute.keepnote.service.BulkImportService;
+
+/*
+ * Starts and follows bulk imports of files placed in the import directory of
+ * the server, used to onboard the data of a customer.
+ */
+@RestController
+public class BulkImportController {
+
+	private BulkImportService bulkImportService;
+
+	@Autowired
+	public BulkImportController(BulkImportService bulkImportService) {
+		this.bulkImportService = bulkImportService;
+	}
+
+	/*
+	 * Define a handler method which will start importing a file of the import
+	 * directory. Importing a file again resumes after the last committed chunk.
+	 * Only the rows of the logged in user are imported, the others are rejected.
+	 * This handler method should return any one of the status messages basis on
+	 * different situations: 1. 202(ACCEPTED) - with the import job. 2. 400(BAD
+	 * REQUEST) - If the file is not in the import directory. 3. 409(CONFLICT) - If
+	 * an import of the same file by the logged in user is still running. 4.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 *
+	 * This handler method should map to the URL "/import" using HTTP POST method
+	 */
+	@RequestMapping(path = "/import", method = RequestMethod.POST)
+	public ResponseEntity<ImportJob> startImport(@RequestParam("file") String fileName, HttpSession session) {
+		String userName = (String) session.getAttribute(LOGGED_IN_USER_ID);
+		if (userName == null) {
+			return new ResponseEntity<ImportJob>(HttpStatus.UNAUTHORIZED);
+		}
+		try {
+			return new ResponseEntity<ImportJob>(bulkImportService.startImport(fileName, userName),
+					HttpStatus.ACCEPTED);
+		} catch (IllegalArgumentException e) {
+			return new ResponseEntity<ImportJob>(HttpStatus.BAD_REQUEST);
+		} catch (IllegalStateException e) {
+			return new ResponseEntity<ImportJob>(HttpStatus.CONFLICT);
+		}
+	}
+
+	/*
+	 * Define a handler method which will show the progress and throughput of an
+	 * import job. This handler method should return any one of the status
+	 * messages basis on different situations: 1. 200(OK) - with the import job.
+	 * 2. 404(NOT FOUND) - If there is no such job started by the logged in user.
+	 * 3. 401(UNAUTHORIZED) - If the user trying to perform the action has not
+	 * logged in.
+	 *
+	 * This handler method should map to the URL "/import/{jobId}" using HTTP GET
+	 * method
+	 */
+	@RequestMapping(path = "/import/{jobId}", method = RequestMethod.GET)
+	public ResponseEntity<ImportJob> getImportJob(@PathVariable("jobId") final String jobId, HttpSession session) {
+		String userName = (String) session.getAttribute(LOGGED_IN_USER_ID);
+		if (userName == null) {
+			return new ResponseEntity<ImportJob>(HttpStatus.UNAUTHORIZED);
+		}
+		ImportJob job = bulkImportService.getImportJob(jobId);
+		if (job == null || !userName.equals(job.getSubmittedBy())) {
+			return new ResponseEntity<ImportJob>(HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<ImportJob>(job, HttpStatus.OK);
+	}
+
+}
@@ -0,0 +1,50 @@
+package com.stackroute.keepnote.controller;
+
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.stackroute.keepnote.service.CacheStatisticsService;
+
+/*
+ * Exposes the second level and query cache counters so that the hit ratio of
+ * the Category and Reminder caches can be watched.
+ */
+@RestController
+public class CacheStatisticsController {
+
+	private CacheStatisticsService cacheStatisticsService;
+
+	@Autowired
+	public CacheStatisticsController(CacheStatisticsService cacheStatisticsService) {
+		this.cacheStatisticsService = cacheStatisticsService;
+	}
+
+	/*
+	 * Define a handler method which will return the hits, misses and puts per
+	 * cache region. This handler method should return any one of the status
+	 * messages basis on different situations: 1. 200(OK) - with the counters. 2.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/stats/cache" using HTTP GET method
+	 */
+	@RequestMapping(path = "/stats/cache", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Map<String, Long>>> getCacheStatistics(HttpSession session) {
+		if (session.getAttribute(LOGGED_IN_USER_ID) == null) {
+			return new ResponseEntity<Map<String, Map<String, Long>>>(HttpStatus.UNAUTHORIZED);
+		}
+		return new ResponseEntity<Map<String, Map<String, Long>>>(cacheStatisticsService.getCacheStatistics(),
+				HttpStatus.OK);
+	}
+
+}
@@ -7,17 +7,20 @@ import javax.servlet.http.HttpSession;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.service.CategoryService;
 import com.stackroute.keepnote.util.KeepNoteUtil;
@@ -123,11 +126,18 @@ public class CategoryController {
 	 * is not found. 3. 401(UNAUTHORIZED) - If the user trying to perform the action
 	 * has not logged in.
 	 * 
+	 * When the request carries an If-Match header with the ETag of the category
+	 * (its version), the category is only updated if it still has that version,
+	 * without being read first: 412(PRECONDITION FAILED) - If the category has
+	 * been changed since. 400(BAD REQUEST) - If the If-Match value is not a valid
+	 * tag. The response carries the ETag of the updated category.
+	 * 
 	 * This handler method should map to the URL "/category/{id}" using HTTP PUT
 	 * method.
 	 */
 	@RequestMapping(path = "/category/{id}", method= RequestMethod.PUT)
-	public ResponseEntity<Category> updateCategory(@RequestBody final Category category, @PathVariable("id") final int categoryId, HttpSession session){
+	public ResponseEntity<Category> updateCategory(@RequestBody final Category category, @PathVariable("id") final int categoryId,
+			@RequestHeader(value = "If-Match", required = false) String ifMatch, HttpSession session){
 		Category updateCategory = null;
 		
 		String userName = (String) session.getAttribute(LOGGED_IN_USER_ID);
@@ -139,17 +149,62 @@ public class CategoryController {
 		  try {
 			  category.setCategoryCreationDate(new Date());
 			  category.setCategoryCreatedBy(userName);
-			  updateCategory = categoryService.updateCategory(category, categoryId);
+			  if (EntityTags.isConditional(ifMatch)) {
+				  updateCategory = categoryService.updateCategory(category, categoryId, EntityTags.parseVersion(ifMatch));
+			  } else {
+				  updateCategory = categoryService.updateCategory(category, categoryId);
+			  }
 		  } catch ( CategoryNotFoundException e) {
 			  e.printStackTrace();
 			  return new ResponseEntity<Category>(HttpStatus.NOT_FOUND);
 			  
+		  } catch (VersionConflictException e) {
+			  return new ResponseEntity<Category>(HttpStatus.PRECONDITION_FAILED);
+		  } catch (IllegalArgumentException e) {
+			  return new ResponseEntity<Category>(HttpStatus.BAD_REQUEST);
 		  }
 		  if(updateCategory == null)
 			  return new ResponseEntity<Category>(HttpStatus.NOT_FOUND);
 		  
-			  return new ResponseEntity<Category>(HttpStatus.OK);
+			  return ResponseEntity.ok().eTag(EntityTags.of(updateCategory.getVersion())).build();
 	} 
+
+	/*
+	 * Define a handler method which will change only the name and/or description
+	 * of a category, read from a JSON merge patch (RFC 7386) in the request body.
+	 * Only the changed columns are written. An If-Match header makes the update
+	 * conditional as for PUT. This handler method should return any one of the
+	 * status messages basis on different situations: 1. 200(OK) - If the category
+	 * was patched. 2. 404(NOT FOUND) - If the category is not found or belongs to
+	 * another user. 3.
+	 * 412(PRECONDITION FAILED) - If the category has been changed since. 4.
+	 * 400(BAD REQUEST) - If the patch or If-Match value is invalid. 5.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/category/{id}" using HTTP PATCH
+	 * method.
+	 */
+	@RequestMapping(path = "/category/{id}", method= RequestMethod.PATCH,
+			consumes = { "application/merge-patch+json", "application/json" })
+	public ResponseEntity<Category> patchCategory(@PathVariable("id") final int categoryId, @RequestBody final Map<String, Object> patch,
+			@RequestHeader(value = "If-Match", required = false) String ifMatch, HttpSession session){
+		  String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+		  if (userId == null) {
+			  return new ResponseEntity<Category>(HttpStatus.UNAUTHORIZED);
+		  }
+		  try {
+			  Integer version = EntityTags.isConditional(ifMatch) ? EntityTags.parseVersion(ifMatch) : null;
+			  Category category = categoryService.patchCategory(userId, categoryId, patch, version);
+			  return ResponseEntity.ok().eTag(EntityTags.of(category.getVersion())).build();
+		  } catch (CategoryNotFoundException e) {
+			  return new ResponseEntity<Category>(HttpStatus.NOT_FOUND);
+		  } catch (VersionConflictException e) {
+			  return new ResponseEntity<Category>(HttpStatus.PRECONDITION_FAILED);
+		  } catch (IllegalArgumentException e) {
+			  return new ResponseEntity<Category>(HttpStatus.BAD_REQUEST);
+		  }
+	}
 	/*
 	 * Define a handler method which will get us the category by a userId.
 	 * 
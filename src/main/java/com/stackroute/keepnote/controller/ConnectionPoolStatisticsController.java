@@ -0,0 +1,50 @@
+package com.stackroute.keepnote.controller;
+
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.stackroute.keepnote.config.ConnectionPoolMetrics;
+
+/*
+ * Exposes the connection pool gauges and checkout wait histograms, so that a
+ * saturated pool can be told apart from slow queries.
+ */
+@RestController
+public class ConnectionPoolStatisticsController {
+
+	private ConnectionPoolMetrics connectionPoolMetrics;
+
+	@Autowired
+	public ConnectionPoolStatisticsController(ConnectionPoolMetrics connectionPoolMetrics) {
+		this.connectionPoolMetrics = connectionPoolMetrics;
+	}
+
+	/*
+	 * Define a handler method which will return, per pool, the active, idle and
+	 * pending counts and the checkout wait and usage histograms. This handler
+	 * method should return any one of the status messages basis on different
+	 * situations: 1. 200(OK) - with the statistics. 2. 401(UNAUTHORIZED) - If the
+	 * user trying to perform the action has not logged in.
+	 * 
+	 * This handler method should map to the URL "/stats/pool" using HTTP GET method
+	 */
+	@RequestMapping(path = "/stats/pool", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Map<String, Object>>> getPoolStatistics(HttpSession session) {
+		if (session.getAttribute(LOGGED_IN_USER_ID) == null) {
+			return new ResponseEntity<Map<String, Map<String, Object>>>(HttpStatus.UNAUTHORIZED);
+		}
+		return new ResponseEntity<Map<String, Map<String, Object>>>(connectionPoolMetrics.getStatistics(),
+				HttpStatus.OK);
+	}
+
+}
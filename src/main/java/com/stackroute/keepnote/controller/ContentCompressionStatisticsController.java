@@ -0,0 +1,52 @@
+package com.stackroute.keepnote.controller;
+
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.stackroute.keepnote.config.ContentCompressionMetrics;
+
+/*
+ * Exposes how much the compression of note content saves and what it costs in
+ * CPU time.
+ */
+@RestController
+public class ContentCompressionStatisticsController {
+
+	private ContentCompressionMetrics contentCompressionMetrics;
+
+	@Autowired
+	public ContentCompressionStatisticsController(ContentCompressionMetrics contentCompressionMetrics) {
+		this.contentCompressionMetrics = contentCompressionMetrics;
+	}
+
+	/*
+	 * Define a handler method which will return the number of values stored
+	 * plain and compressed, the bytes before and after compression with their
+	 * ratio, and histograms of the CPU time per compression and decompression.
+	 * This handler method should return any one of the status messages basis on
+	 * different situations: 1. 200(OK) - with the statistics. 2.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/stats/compression" using HTTP
+	 * GET method
+	 */
+	@RequestMapping(path = "/stats/compression", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Object>> getCompressionStatistics(HttpSession session) {
+		if (session.getAttribute(LOGGED_IN_USER_ID) == null) {
+			return new ResponseEntity<Map<String, Object>>(HttpStatus.UNAUTHORIZED);
+		}
+		return new ResponseEntity<Map<String, Object>>(contentCompressionMetrics.getStatistics(), HttpStatus.OK);
+	}
+
+}
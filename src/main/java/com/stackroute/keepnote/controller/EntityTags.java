@@ -0,0 +1,41 @@
+package com.stackroute.keepnote.controller;
+
+/*
+ * Entity tags of the versioned resources (notes, categories and reminders). The
+ * tag of a resource is its row version in double quotes, e.g. "3"; a client
+ * sends it back in If-Match to have its update applied only to that version.
+ */
+final class EntityTags {
+
+	private EntityTags() {
+	}
+
+	static String of(int version) {
+		return "\"" + version + "\"";
+	}
+
+	/*
+	 * True when the If-Match header asks for a version check, i.e. it is present
+	 * and not the wildcard "*".
+	 */
+	static boolean isConditional(String ifMatch) {
+		return ifMatch != null && !"*".equals(ifMatch.trim());
+	}
+
+	/*
+	 * Returns the version carried by an If-Match header. Weak tags are accepted
+	 * as the version is the only thing compared. Throws IllegalArgumentException
+	 * if the value is not a tag handed out by this service.
+	 */
+	static int parseVersion(String ifMatch) {
+		String tag = ifMatch.trim();
+		if (tag.startsWith("W/")) {
+			tag = tag.substring(2);
+		}
+		if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+			throw new IllegalArgumentException("Malformed entity tag: " + ifMatch);
+		}
+		return Integer.parseInt(tag.substring(1, tag.length() - 1));
+	}
+
+}
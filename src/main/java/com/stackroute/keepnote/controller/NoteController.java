@@ -1,22 +1,42 @@
 package com.stackroute.keepnote.controller;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
 import com.stackroute.keepnote.exception.NoteNotFoundException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBatchResult;
+import com.stackroute.keepnote.model.NoteCriteria;
+import com.stackroute.keepnote.model.NotePage;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.NoteSummary;
 import com.stackroute.keepnote.service.NoteService;
 import com.stackroute.keepnote.util.KeepNoteUtil;
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /*
  * As in this assignment, we are working with creating RESTful web service, hence annotate
@@ -32,14 +52,17 @@ public class NoteController {
 	
 	
 	private NoteService noteService;
+
+	private ObjectMapper objectMapper;
 	/*
 	 * Autowiring should be implemented for the NoteService. (Use Constructor-based
 	 * autowiring) Please note that we should not create any object using the new
 	 * keyword
 	 */
     @Autowired
-	public NoteController(NoteService noteService) {
+	public NoteController(NoteService noteService, ObjectMapper objectMapper) {
 		this.noteService = noteService;
+		this.objectMapper = objectMapper;
 
 	}
 
@@ -54,33 +77,62 @@ public class NoteController {
 	 * noteId conflicts with any existing user3. 401(UNAUTHORIZED) - If the user
 	 * trying to perform the action has not logged in.
 	 * 
+	 * A client may send an "Idempotency-Key" header; retrying with the same key
+	 * and note returns 201 again without creating a second note.
+	 * 
 	 * This handler method should map to the URL "/note" using HTTP POST method
 	 */
     @RequestMapping(path="/note", method=RequestMethod.POST)
-     public ResponseEntity<Note> createNote(@RequestBody final Note note, HttpSession session){
-    	 Note existingNote = null;
+     public ResponseEntity<Note> createNote(@RequestBody final Note note,
+    		 @RequestHeader(value="Idempotency-Key", required=false) final String idempotencyKey, HttpSession session){
     	 boolean isNoteCreated =false;
-    	 if(KeepNoteUtil.isUserLoggedIn(session)) {
-    		 try {
-    			 existingNote = noteService.getNoteById(note.getNoteId());
-    		 } catch (NoteNotFoundException e) {
-    			 e.printStackTrace();
-    		 }
-    		 if(existingNote != null) {
-    			 return new ResponseEntity<Note>(HttpStatus.CONFLICT);
-    		 }
+    	 String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	 if(userId != null) {
+    		 note.setNoteCreatedAt(new Date());
+    		 note.setCreatedBy(userId);
     		 try {
-    			 isNoteCreated = noteService.createNote(note);
-    			 return new ResponseEntity<Note>(HttpStatus.CREATED);
+    			 if(idempotencyKey == null) {
+    				 isNoteCreated = noteService.createNote(note);
+    			 } else {
+    				 isNoteCreated = noteService.createNote(note, idempotencyKey);
+    			 }
     		 } catch (ReminderNotFoundException | CategoryNotFoundException e) {
     			 e.printStackTrace();
     		     return new ResponseEntity<Note>(HttpStatus.INTERNAL_SERVER_ERROR);
-    	 }
+    		 }
+    		 if(isNoteCreated)
+    			 return new ResponseEntity<Note>(HttpStatus.CREATED);
+    		 else
+    			 return new ResponseEntity<Note>(HttpStatus.CONFLICT);
      } else {
     	 return new ResponseEntity<Note>(HttpStatus.UNAUTHORIZED);
      }
      }
      
+	/*
+	 * Define a handler method which will create many notes at once by reading a
+	 * list of serialized notes from the request body. The loggedIn userID is taken
+	 * as the createdBy of every note. This handler method should return any one of
+	 * the status messages basis on different situations: 1. 200(OK) - with one
+	 * result per note telling whether it was created, conflicted with an existing
+	 * noteId or referenced a missing category/reminder. 2. 401(UNAUTHORIZED) - If
+	 * the user trying to perform the action has not logged in.
+	 * 
+	 * This handler method should map to the URL "/note/batch" using HTTP POST method
+	 */
+    @RequestMapping(path="/note/batch", method=RequestMethod.POST)
+    public ResponseEntity<List<NoteBatchResult>> createNotes(@RequestBody final List<Note> notes, HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<List<NoteBatchResult>>(HttpStatus.UNAUTHORIZED);
+    	}
+    	for(Note note : notes) {
+    		note.setNoteCreatedAt(new Date());
+    		note.setCreatedBy(userId);
+    	}
+    	return new ResponseEntity<List<NoteBatchResult>>(noteService.createNotes(notes), HttpStatus.OK);
+    }
+
 	/*
 	 * Define a handler method which will delete a note from a database.
 	 * 
@@ -116,8 +168,61 @@ public class NoteController {
    		 return new ResponseEntity<Note>(HttpStatus.UNAUTHORIZED);
    	 }
   }
+
+	/*
+	 * Define a handler method which will undo the deletion of a note of the
+	 * logged in user. Deleted notes can be restored until they are purged
+	 * (purge.retention_minutes after the deletion at the earliest). This handler
+	 * method should return any one of the status messages basis on different
+	 * situations: 1. 200(OK) - If the note was restored. 2. 404(NOT FOUND) - If
+	 * the user has no such deleted note. 3. 401(UNAUTHORIZED) - If the user
+	 * trying to perform the action has not logged in.
+	 * 
+	 * This handler method should map to the URL "/note/{id}/restore" using HTTP
+	 * POST method
+	 */
+    @RequestMapping(path="/note/{id}/restore", method=RequestMethod.POST)
+    public ResponseEntity<Note> restoreNote(@PathVariable("id") final int noteId, HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<Note>(HttpStatus.UNAUTHORIZED);
+    	}
+    	if(noteService.restoreNote(userId, noteId)) {
+    		return new ResponseEntity<Note>(HttpStatus.OK);
+    	}
+    	return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+    }
    		
     
+	/*
+	 * Define a handler method which will delete, in one go, all the notes of the
+	 * logged in user matching the given criteria: "status", "categoryId",
+	 * "reminderId" and "createdBefore" (ISO date-time). At least one criterion must
+	 * be given. This handler method should return any one of the status messages
+	 * basis on different situations: 1. 200(OK) - with the number of notes deleted.
+	 * 2. 400(BAD REQUEST) - If no criterion is given. 3. 401(UNAUTHORIZED) - If the
+	 * user trying to perform the action has not logged in.
+	 * 
+	 * This handler method should map to the URL "/note" using HTTP Delete method
+	 */
+    @RequestMapping(path="/note", method=RequestMethod.DELETE)
+    public ResponseEntity<Integer> deleteNotes(@RequestParam(value="status", required=false) final String status,
+    		@RequestParam(value="categoryId", required=false) final Integer categoryId,
+    		@RequestParam(value="reminderId", required=false) final Integer reminderId,
+    		@RequestParam(value="createdBefore", required=false) @DateTimeFormat(iso=DateTimeFormat.ISO.DATE_TIME) final Date createdBefore,
+    		HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<Integer>(HttpStatus.UNAUTHORIZED);
+    	}
+    	try {
+    		int deleted = noteService.deleteNotes(userId, new NoteCriteria(status, categoryId, reminderId, createdBefore));
+    		return new ResponseEntity<Integer>(deleted, HttpStatus.OK);
+    	} catch (IllegalArgumentException e) {
+    		return new ResponseEntity<Integer>(HttpStatus.BAD_REQUEST);
+    	}
+    }
+
 	/*
 	 * Define a handler method which will update a specific note by reading the
 	 * Serialized object from request body and save the updated note details in a
@@ -130,18 +235,47 @@ public class NoteController {
 	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
 	 * in.
 	 * 
+	 * When the request carries an If-Match header with the ETag of the note (its
+	 * version), the note is only updated if it still has that version, without
+	 * being read first: 412(PRECONDITION FAILED) - If the note has been changed
+	 * since. 400(BAD REQUEST) - If the If-Match value is not a valid tag. The
+	 * response carries the ETag of the updated note.
+	 * 
+	 * With autosave=true the note is only kept as its pending state, read back
+	 * by the other requests, and written later together with the autosaves that
+	 * follow (see NoteAutosaveServiceImpl): 202(ACCEPTED) - If the note was
+	 * autosaved. Without it the request is an explicit save which replaces the
+	 * pending state.
+	 * 
 	 * This handler method should map to the URL "/note/{id}" using HTTP PUT method.
 	 */
     @RequestMapping(path="/note", method=RequestMethod.PUT)
-    public ResponseEntity<Note> updateNote(@RequestBody final Note note, HttpSession session){
+    public ResponseEntity<Note> updateNote(@RequestBody final Note note,
+   		 @RequestHeader(value = "If-Match", required = false) String ifMatch,
+   		 @RequestParam(value = "autosave", defaultValue = "false") boolean autosave, HttpSession session){
    	 Note updateNote = null;
    	 if(KeepNoteUtil.isUserLoggedIn(session)) {
    		 try {
-   			 updateNote = noteService.updateNote(note, note.getNoteId());
-   			 return new ResponseEntity<Note>(HttpStatus.OK);
+   			 if (autosave) {
+   				 noteService.autosaveNote((String) session.getAttribute(LOGGED_IN_USER_ID), note);
+   				 return new ResponseEntity<Note>(HttpStatus.ACCEPTED);
+   			 }
+   			 if (EntityTags.isConditional(ifMatch)) {
+   				 updateNote = noteService.updateNote(note, note.getNoteId(), EntityTags.parseVersion(ifMatch));
+   			 } else {
+   				 updateNote = noteService.updateNote(note, note.getNoteId());
+   			 }
+   			 if (updateNote == null) {
+   				 return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+   			 }
+   			 return ResponseEntity.ok().eTag(EntityTags.of(updateNote.getVersion())).build();
    		 } catch (NoteNotFoundException | ReminderNotFoundException | CategoryNotFoundException e) {
    			 e.printStackTrace();
    			 return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+   		 } catch (VersionConflictException e) {
+   			 return new ResponseEntity<Note>(HttpStatus.PRECONDITION_FAILED);
+   		 } catch (IllegalArgumentException e) {
+   			 return new ResponseEntity<Note>(HttpStatus.BAD_REQUEST);
    		 } catch (Exception e) {
    			 e.printStackTrace();
    			return new ResponseEntity<Note>(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -150,6 +284,77 @@ public class NoteController {
    	 return new ResponseEntity<Note>(HttpStatus.UNAUTHORIZED);
     }
   }
+
+	/*
+	 * Define a handler method which will write the autosaved state of a note of
+	 * the logged in user now, when the user saves explicitly. This handler method
+	 * should return any one of the status messages basis on different situations:
+	 * 1. 200(OK) - If the note was written or had nothing pending. 2. 404(NOT
+	 * FOUND) - If the pending state belongs to another user. 3.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/note/{id}/save" using HTTP POST
+	 * method
+	 */
+    @RequestMapping(path="/note/{id}/save", method=RequestMethod.POST)
+    public ResponseEntity<Note> saveNote(@PathVariable("id") final int noteId, HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<Note>(HttpStatus.UNAUTHORIZED);
+    	}
+    	try {
+    		noteService.saveNote(userId, noteId);
+    		return new ResponseEntity<Note>(HttpStatus.OK);
+    	} catch (NoteNotFoundException e) {
+    		return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+    	}
+    }
+
+	/*
+	 * Define a handler method which will change only some properties of a note,
+	 * read from a JSON merge patch (RFC 7386) in the request body: properties left
+	 * out are kept, properties set to null are cleared. Only noteTitle,
+	 * noteContent, noteStatus, category and reminder may be patched, the last two
+	 * as {"categoryId": ..} / {"reminderId": ..}. Only the changed columns are
+	 * written. An If-Match header makes the update conditional as for PUT. This
+	 * handler method should return any one of the status messages basis on
+	 * different situations: 1. 200(OK) - If the note was patched. 2. 404(NOT
+	 * FOUND) - If the note, or a category or reminder it refers to, is not found,
+	 * or the note belongs to another user.
+	 * 3. 412(PRECONDITION FAILED) - If the note has been changed since. 4.
+	 * 400(BAD REQUEST) - If the patch or If-Match value is invalid. 5.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/note/{id}" using HTTP PATCH
+	 * method.
+	 */
+    @RequestMapping(path="/note/{id}", method=RequestMethod.PATCH,
+    		consumes = { "application/merge-patch+json", "application/json" })
+    public ResponseEntity<Note> patchNote(@PathVariable("id") final int noteId,
+    		@RequestBody final Map<String, Object> patch,
+    		@RequestHeader(value = "If-Match", required = false) String ifMatch, HttpSession session){
+   	 String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+   	 if(userId == null) {
+   		 return new ResponseEntity<Note>(HttpStatus.UNAUTHORIZED);
+   	 }
+   	 try {
+   		 if (EntityTags.isConditional(ifMatch)) {
+   			 int version = EntityTags.parseVersion(ifMatch);
+   			 noteService.patchNote(userId, noteId, patch, version);
+   			 return ResponseEntity.ok().eTag(EntityTags.of(version + 1)).build();
+   		 }
+   		 noteService.patchNote(userId, noteId, patch, null);
+   		 return new ResponseEntity<Note>(HttpStatus.OK);
+   	 } catch (NoteNotFoundException | ReminderNotFoundException | CategoryNotFoundException e) {
+   		 return new ResponseEntity<Note>(HttpStatus.NOT_FOUND);
+   	 } catch (VersionConflictException e) {
+   		 return new ResponseEntity<Note>(HttpStatus.PRECONDITION_FAILED);
+   	 } catch (IllegalArgumentException e) {
+   		 return new ResponseEntity<Note>(HttpStatus.BAD_REQUEST);
+   	 }
+  }
   
 	/*
 	 * Define a handler method which will get us the notes by a userId.
@@ -181,4 +386,164 @@ public class NoteController {
     }
   }
 
+
+	/*
+	 * Define a handler method which will get us one page of the notes of the
+	 * logged in user, newest first. The "cursor" parameter is the nextCursor
+	 * returned with the previous page and is left out for the first page; "limit"
+	 * is the page size. This handler method should return any one of the status
+	 * messages basis on different situations: 1. 200(OK) - with the page of notes.
+	 * 2. 400(BAD REQUEST) - If the cursor is not valid. 3. 401(UNAUTHORIZED) - If
+	 * the user trying to perform the action has not logged in.
+	 *
+	 * This handler method should map to the URL "/note?limit={limit}&cursor={cursor}"
+	 * using HTTP GET method
+	 */
+    @RequestMapping(path="/note", method=RequestMethod.GET, params="limit")
+    public ResponseEntity<NotePage> getNotePageByUser(@RequestParam("limit") final int limit,
+    		@RequestParam(value="cursor", required=false) final String cursor, HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<NotePage>(HttpStatus.UNAUTHORIZED);
+    	}
+    	try {
+    		return new ResponseEntity<NotePage>(noteService.getNotesByUserId(userId, cursor, limit), HttpStatus.OK);
+    	} catch (IllegalArgumentException e) {
+    		return new ResponseEntity<NotePage>(HttpStatus.BAD_REQUEST);
+    	}
+    }
+
+	/*
+	 * Define a handler method which will get us the summaries (noteId, noteTitle,
+	 * noteStatus, noteCreatedAt) of the notes of the logged in user, for list views
+	 * that do not show the note content, category or reminder. This handler method
+	 * should return any one of the status messages basis on different situations:
+	 * 1. 200(OK) - with the summaries. 2. 401(UNAUTHORIZED) - If the user trying to
+	 * perform the action has not logged in.
+	 *
+	 * This handler method should map to the URL "/note?view=summary" using HTTP GET
+	 * method
+	 */
+    @RequestMapping(path="/note", method=RequestMethod.GET, params="view=summary")
+    public ResponseEntity<List<NoteSummary>> getNoteSummariesByUser(HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<List<NoteSummary>>(HttpStatus.UNAUTHORIZED);
+    	}
+    	return new ResponseEntity<List<NoteSummary>>(noteService.getNoteSummariesByUserId(userId), HttpStatus.OK);
+    }
+
+	/*
+	 * Define a handler method which will list the revisions (revision, snapshot,
+	 * createdAt) of the content of a note of the logged in user, newest first.
+	 * This handler method should return any one of the status messages basis on
+	 * different situations: 1. 200(OK) - with the revisions. 2. 404(NOT FOUND) -
+	 * If the user has no such note. 3. 401(UNAUTHORIZED) - If the user trying to
+	 * perform the action has not logged in.
+	 *
+	 * This handler method should map to the URL "/note/{id}/revisions" using HTTP
+	 * GET method
+	 */
+    @RequestMapping(path="/note/{id}/revisions", method=RequestMethod.GET)
+    public ResponseEntity<List<NoteRevision>> getNoteRevisions(@PathVariable("id") final int noteId, HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<List<NoteRevision>>(HttpStatus.UNAUTHORIZED);
+    	}
+    	try {
+    		return new ResponseEntity<List<NoteRevision>>(noteService.getNoteRevisions(userId, noteId), HttpStatus.OK);
+    	} catch (NoteNotFoundException e) {
+    		return new ResponseEntity<List<NoteRevision>>(HttpStatus.NOT_FOUND);
+    	}
+    }
+
+	/*
+	 * Define a handler method which will get a revision of a note of the logged in
+	 * user, with the content the note had at that revision. This handler method
+	 * should return any one of the status messages basis on different situations:
+	 * 1. 200(OK) - with the revision. 2. 404(NOT FOUND) - If the user has no such
+	 * note or the note no such revision. 3. 401(UNAUTHORIZED) - If the user trying
+	 * to perform the action has not logged in.
+	 *
+	 * This handler method should map to the URL "/note/{id}/revisions/{revision}"
+	 * using HTTP GET method
+	 */
+    @RequestMapping(path="/note/{id}/revisions/{revision}", method=RequestMethod.GET)
+    public ResponseEntity<NoteRevision> getNoteRevision(@PathVariable("id") final int noteId,
+    		@PathVariable("revision") final int revision, HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<NoteRevision>(HttpStatus.UNAUTHORIZED);
+    	}
+    	try {
+    		NoteRevision noteRevision = noteService.getNoteRevision(userId, noteId, revision);
+    		if(noteRevision == null) {
+    			return new ResponseEntity<NoteRevision>(HttpStatus.NOT_FOUND);
+    		}
+    		return new ResponseEntity<NoteRevision>(noteRevision, HttpStatus.OK);
+    	} catch (NoteNotFoundException e) {
+    		return new ResponseEntity<NoteRevision>(HttpStatus.NOT_FOUND);
+    	}
+    }
+
+	/*
+	 * Define a handler method which will get us the number of notes of the logged
+	 * in user in total and per status, category id and reminder id, e.g. for
+	 * dashboards; an empty key counts the notes without status, category or
+	 * reminder. The numbers are read from counters, not by counting the notes.
+	 * This handler method should return any one of the status messages basis on
+	 * different situations: 1. 200(OK) - with the numbers. 2. 401(UNAUTHORIZED) -
+	 * If the user trying to perform the action has not logged in.
+	 *
+	 * This handler method should map to the URL "/note/stats" using HTTP GET
+	 * method
+	 */
+    @RequestMapping(path="/note/stats", method=RequestMethod.GET)
+    public ResponseEntity<Map<String, Object>> getNoteStatistics(HttpSession session){
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		return new ResponseEntity<Map<String, Object>>(HttpStatus.UNAUTHORIZED);
+    	}
+    	return new ResponseEntity<Map<String, Object>>(noteService.getNoteStatistics(userId), HttpStatus.OK);
+    }
+
+	/*
+	 * Define a handler method which will export all the notes of the logged in
+	 * user as newline delimited JSON, one note per line, oldest first. The notes
+	 * are written to the response as they are read from the database, so memory
+	 * use does not depend on the size of the export. This handler method should
+	 * return any one of the status messages basis on different situations: 1.
+	 * 200(OK) - with the notes. 2. 401(UNAUTHORIZED) - If the user trying to
+	 * perform the action has not logged in.
+	 *
+	 * This handler method should map to the URL "/note/export" using HTTP GET method
+	 */
+    @RequestMapping(path="/note/export", method=RequestMethod.GET)
+    public void exportNotes(HttpSession session, HttpServletResponse response) throws IOException {
+    	String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	if(userId == null) {
+    		response.setStatus(HttpStatus.UNAUTHORIZED.value());
+    		return;
+    	}
+    	response.setStatus(HttpStatus.OK.value());
+    	response.setContentType("application/x-ndjson");
+    	response.setCharacterEncoding("UTF-8");
+    	OutputStream out = response.getOutputStream();
+    	try (SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+    		int exported = noteService.exportNotesByUserId(userId, note -> {
+    			try {
+    				writer.write(note);
+    			} catch (IOException e) {
+    				throw new UncheckedIOException(e);
+    			}
+    		});
+    		writer.flush();
+    		if(exported > 0) {
+    			out.write('\n');
+    		}
+    	} catch (UncheckedIOException e) {
+    		throw e.getCause();
+    	}
+    }
+
 }
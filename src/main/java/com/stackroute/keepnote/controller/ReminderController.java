@@ -2,6 +2,7 @@ package com.stackroute.keepnote.controller;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.http.HttpSession;
 
@@ -11,11 +12,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Reminder;
 import com.stackroute.keepnote.service.ReminderService;
 import com.stackroute.keepnote.util.KeepNoteUtil;
@@ -133,11 +136,18 @@ public class ReminderController {
 	 * is not found. 3. 401(UNAUTHORIZED) - If the user trying to perform the action
 	 * has not logged in.
 	 * 
+	 * When the request carries an If-Match header with the ETag of the reminder
+	 * (its version), the reminder is only updated if it still has that version,
+	 * without being read first: 412(PRECONDITION FAILED) - If the reminder has
+	 * been changed since. 400(BAD REQUEST) - If the If-Match value is not a valid
+	 * tag. The response carries the ETag of the updated reminder.
+	 * 
 	 * This handler method should map to the URL "/reminder/{id}" using HTTP PUT
 	 * method.
 	 */
      @RequestMapping(path="/reminder/{id}", method=RequestMethod.PUT)
-     public ResponseEntity<Reminder> updateReminder(@RequestBody final Reminder reminder,@PathVariable("id") final int categoryId, HttpSession session){
+     public ResponseEntity<Reminder> updateReminder(@RequestBody final Reminder reminder,@PathVariable("id") final int categoryId,
+    		 @RequestHeader(value = "If-Match", required = false) String ifMatch, HttpSession session){
     	 Reminder updateReminder = null;
     	 String userName = (String) session.getAttribute(LOGGED_IN_USER_ID);
 		  
@@ -147,15 +157,61 @@ public class ReminderController {
     			 try {
     				  reminder.setReminderCreationDate(new Date());
     				  reminder.setReminderCreatedBy(userName);
-    				  updateReminder = reminderService.updateReminder(reminder, reminder.getReminderId());
+    				  if (EntityTags.isConditional(ifMatch)) {
+    					  updateReminder = reminderService.updateReminder(reminder, reminder.getReminderId(),
+    							  EntityTags.parseVersion(ifMatch));
+    				  } else {
+    					  updateReminder = reminderService.updateReminder(reminder, reminder.getReminderId());
+    				  }
     		} catch (ReminderNotFoundException e) {
     			e.printStackTrace();
     			return new ResponseEntity<Reminder>(HttpStatus.NOT_FOUND);
+    		} catch (VersionConflictException e) {
+    			return new ResponseEntity<Reminder>(HttpStatus.PRECONDITION_FAILED);
+    		} catch (IllegalArgumentException e) {
+    			return new ResponseEntity<Reminder>(HttpStatus.BAD_REQUEST);
     		}
     			 if(updateReminder == null)
     				 return new ResponseEntity<Reminder>(HttpStatus.NOT_FOUND);
-    			 return new ResponseEntity<Reminder>(HttpStatus.OK);
+    			 return ResponseEntity.ok().eTag(EntityTags.of(updateReminder.getVersion())).build();
     	  }
+
+	/*
+	 * Define a handler method which will change only the name, description and/or
+	 * type of a reminder, read from a JSON merge patch (RFC 7386) in the request
+	 * body. Only the changed columns are written. An If-Match header makes the
+	 * update conditional as for PUT. This handler method should return any one of
+	 * the status messages basis on different situations: 1. 200(OK) - If the
+	 * reminder was patched. 2. 404(NOT FOUND) - If the reminder is not found or
+	 * belongs to another user. 3.
+	 * 412(PRECONDITION FAILED) - If the reminder has been changed since. 4.
+	 * 400(BAD REQUEST) - If the patch or If-Match value is invalid. 5.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/reminder/{id}" using HTTP PATCH
+	 * method.
+	 */
+     @RequestMapping(path="/reminder/{id}", method=RequestMethod.PATCH,
+    		 consumes = { "application/merge-patch+json", "application/json" })
+     public ResponseEntity<Reminder> patchReminder(@PathVariable("id") final int reminderId, @RequestBody final Map<String, Object> patch,
+    		 @RequestHeader(value = "If-Match", required = false) String ifMatch, HttpSession session){
+    	 String userId = (String) session.getAttribute(LOGGED_IN_USER_ID);
+    	 if (userId == null) {
+    		 return new ResponseEntity<Reminder>(HttpStatus.UNAUTHORIZED);
+    	 }
+    	 try {
+    		 Integer version = EntityTags.isConditional(ifMatch) ? EntityTags.parseVersion(ifMatch) : null;
+    		 Reminder reminder = reminderService.patchReminder(userId, reminderId, patch, version);
+    		 return ResponseEntity.ok().eTag(EntityTags.of(reminder.getVersion())).build();
+    	 } catch (ReminderNotFoundException e) {
+    		 return new ResponseEntity<Reminder>(HttpStatus.NOT_FOUND);
+    	 } catch (VersionConflictException e) {
+    		 return new ResponseEntity<Reminder>(HttpStatus.PRECONDITION_FAILED);
+    	 } catch (IllegalArgumentException e) {
+    		 return new ResponseEntity<Reminder>(HttpStatus.BAD_REQUEST);
+    	 }
+     }
 	/*
 	 * Define a handler method which will get us the reminders by a userId.
 	 * 
@@ -1,5 +1,7 @@
 package com.stackroute.keepnote.controller;
 
+import static com.stackroute.keepnote.util.KeepNoteUtil.LOGGED_IN_USER_ID;
+
 import java.util.Date;
 import java.util.List;
 
@@ -15,10 +17,12 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
+import com.stackroute.keepnote.model.EraseJob;
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.model.Note;
 import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.service.UserEraseService;
 import com.stackroute.keepnote.service.UserService;
 
 /*
@@ -39,10 +43,13 @@ public class UserController {
 	 */
     
 	private UserService userService;
+
+	private UserEraseService userEraseService;
 	
 	@Autowired
-	public UserController(UserService userService) {
+	public UserController(UserService userService, UserEraseService userEraseService) {
 	  this.userService = userService;
+	  this.userEraseService = userEraseService;
 	}
 
 	/*
@@ -143,6 +150,54 @@ public class UserController {
             		  }
             		   
             	  }
+	/*
+	 * Define a handler method which will start erasing the logged in user together
+	 * with all their notes, categories and reminders. The work is done in the
+	 * background in small chunks; the returned job can be polled for progress.
+	 * This handler method should return any one of the status messages basis on
+	 * different situations: 1. 202(ACCEPTED) - with the erase job. 2.
+	 * 403(FORBIDDEN) - If the user to erase is not the logged in user. 3.
+	 * 401(UNAUTHORIZED) - If the user trying to perform the action has not logged
+	 * in.
+	 * 
+	 * This handler method should map to the URL "/user/{id}/erase" using HTTP POST
+	 * method
+	 */
+        	  @RequestMapping(path="/user/{id}/erase", method=RequestMethod.POST)
+        	  public ResponseEntity<EraseJob> eraseUser(@PathVariable("id") final String userId, HttpSession session){
+        		  String userName = (String) session.getAttribute(LOGGED_IN_USER_ID);
+        		  if(userName == null) {
+        			  return new ResponseEntity<EraseJob>(HttpStatus.UNAUTHORIZED);
+        		  }
+        		  if(!userName.equals(userId)) {
+        			  return new ResponseEntity<EraseJob>(HttpStatus.FORBIDDEN);
+        		  }
+        		  return new ResponseEntity<EraseJob>(userEraseService.eraseUser(userId), HttpStatus.ACCEPTED);
+        	  }
+
+	/*
+	 * Define a handler method which will show the status of an erase job. This
+	 * handler method should return any one of the status messages basis on
+	 * different situations: 1. 200(OK) - with the erase job. 2. 404(NOT FOUND) - If
+	 * there is no such job for the logged in user. 3. 401(UNAUTHORIZED) - If the
+	 * user trying to perform the action has not logged in.
+	 * 
+	 * This handler method should map to the URL "/user/erase/{jobId}" using HTTP GET
+	 * method
+	 */
+        	  @RequestMapping(path="/user/erase/{jobId}", method=RequestMethod.GET)
+        	  public ResponseEntity<EraseJob> getEraseJob(@PathVariable("jobId") final String jobId, HttpSession session){
+        		  String userName = (String) session.getAttribute(LOGGED_IN_USER_ID);
+        		  if(userName == null) {
+        			  return new ResponseEntity<EraseJob>(HttpStatus.UNAUTHORIZED);
+        		  }
+        		  EraseJob job = userEraseService.getEraseJob(jobId);
+        		  if(job == null || !userName.equals(job.getUserId())) {
+        			  return new ResponseEntity<EraseJob>(HttpStatus.NOT_FOUND);
+        		  }
+        		  return new ResponseEntity<EraseJob>(job, HttpStatus.OK);
+        	  }
+
 	/*
 	 * Define a handler method which will show details of a specific user handle
 	 * UserNotFoundException as well. This handler method should return any one of
@@ -0,0 +1,19 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface BulkImportDAO {
+
+	public long getCheckpoint(String userId, String importName);
+
+	public Set<Integer> getCategoryIds();
+
+	public Set<Integer> getReminderIds();
+
+	public List<Integer> getExistingNoteIds(Collection<Integer> noteIds);
+
+	public void insertChunk(String userId, String importName, List<Object> entities, long linesDone);
+
+}
@@ -0,0 +1,185 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.model.ChangeRecord;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBody;
+import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.model.UnmappedTableQueries;
+
+/*
+ * Writes bulk imports through a StatelessSession: rows are inserted with JDBC
+ * batching and never enter a persistence context or the second level cache,
+ * so memory stays flat however large the import. Stateless sessions are not
+ * bound to Spring transactions, hence the transactions are handled here and
+ * the class is not @Transactional. When sharded, the stateless sessions are
+ * opened on the shard of the user selected in ShardContext, the user importing,
+ * who owns every row imported.
+ */
+@Repository
+public class BulkImportDAOImpl implements BulkImportDAO {
+
+	private SessionFactory sessionFactory;
+
+	@Autowired
+	public BulkImportDAOImpl(@Qualifier("shardedSessionFactory") SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	/*
+	 * Number of lines of the import of the user already committed, 0 if it never
+	 * ran.
+	 */
+	public long getCheckpoint(String userId, String importName) {
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			Number linesDone = (Number) session.getNamedNativeQuery(UnmappedTableQueries.IMPORT_CHECKPOINT)
+					.setParameter("userId", userId, StandardBasicTypes.STRING)
+					.setParameter("importName", importName, StandardBasicTypes.STRING).uniqueResult();
+			return linesDone == null ? 0 : linesDone.longValue();
+		} finally {
+			session.close();
+		}
+	}
+
+	/*
+	 * Ids of all existing categories, to resolve the references of imported
+	 * notes in memory instead of one lookup per note.
+	 */
+	public Set<Integer> getCategoryIds() {
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			return new HashSet<Integer>(
+					session.createNamedQuery(Category.IDS, Integer.class).list());
+		} finally {
+			session.close();
+		}
+	}
+
+	/*
+	 * Ids of all existing reminders, see getCategoryIds.
+	 */
+	public Set<Integer> getReminderIds() {
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			return new HashSet<Integer>(
+					session.createNamedQuery(Reminder.IDS, Integer.class).list());
+		} finally {
+			session.close();
+		}
+	}
+
+	/*
+	 * Which of the given noteIds are already taken by a note, deleted or
+	 * archived or not, so imported notes can be checked before their chunk is
+	 * inserted.
+	 */
+	public List<Integer> getExistingNoteIds(Collection<Integer> noteIds) {
+		List<Integer> existing = new ArrayList<Integer>();
+		if (noteIds.isEmpty()) {
+			return existing;
+		}
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			List<?> rows = session.getNamedNativeQuery(Note.EXISTING_IDS)
+					.setParameterList("noteIds", noteIds, StandardBasicTypes.INTEGER).list();
+			for (Object row : rows) {
+				existing.add(((Number) row).intValue());
+			}
+			return existing;
+		} finally {
+			session.close();
+		}
+	}
+
+	/*
+	 * Insert the entities in the given order and record linesDone as the
+	 * checkpoint of the import of the user, all in one transaction. Notes take a
+	 * reference to the shared body of their content and get their first
+	 * revision, JDBC batch size notes per statement; the note counters of their
+	 * users are updated once per chunk. Every inserted entity is
+	 * recorded in the change outbox, with one statement per type. The per-user category and
+	 * reminder query caches are dropped, as the stateless inserts bypass their
+	 * invalidation.
+	 */
+	public void insertChunk(String userId, String importName, List<Object> entities, long linesDone) {
+		boolean cachedListsChanged = false;
+		int batchSize = Math.max(1, sessionFactory.getSessionFactoryOptions().getJdbcBatchSize());
+		StatelessSession session = sessionFactory.openStatelessSession();
+		try {
+			Transaction transaction = session.beginTransaction();
+			try {
+				NoteCounterStore.Deltas counters = new NoteCounterStore.Deltas();
+				List<Integer> categoryIds = new ArrayList<Integer>();
+				List<Integer> reminderIds = new ArrayList<Integer>();
+				List<Integer> noteIds = new ArrayList<Integer>();
+				List<List<Note>> noteBatches = new ArrayList<List<Note>>();
+				List<Note> notes = new ArrayList<Note>();
+				for (Object entity : entities) {
+					if (entity instanceof Note) {
+						notes.add((Note) entity);
+					}
+				}
+				for (int from = 0; from < notes.size(); from += batchSize) {
+					List<Note> batch = notes.subList(from, Math.min(notes.size(), from + batchSize));
+					List<String> hashes = NoteBodyStore.acquire(session, batch);
+					for (int i = 0; i < batch.size(); i++) {
+						batch.get(i).setBody(hashes.get(i) == null ? null : new NoteBody(hashes.get(i)));
+					}
+					noteBatches.add(batch);
+				}
+				for (Object entity : entities) {
+					session.insert(entity);
+					if (entity instanceof Note) {
+						Note note = (Note) entity;
+						counters.add(note, 1);
+						noteIds.add(note.getNoteId());
+					} else if (entity instanceof Category) {
+						categoryIds.add(((Category) entity).getCategoryId());
+					} else if (entity instanceof Reminder) {
+						reminderIds.add(((Reminder) entity).getReminderId());
+					}
+					cachedListsChanged |= entity instanceof Category || entity instanceof Reminder;
+				}
+				for (List<Note> batch : noteBatches) {
+					NoteRevisionStore.recordFirst(session, batch);
+				}
+				counters.apply(session);
+				ChangeOutboxStore.categories(session, categoryIds, ChangeRecord.CREATE);
+				ChangeOutboxStore.reminders(session, reminderIds, ChangeRecord.CREATE);
+				ChangeOutboxStore.notes(session, noteIds, ChangeRecord.CREATE);
+				session.getNamedNativeQuery(UnmappedTableQueries.SAVE_IMPORT_CHECKPOINT).addSynchronizedQuerySpace("ImportCheckpoint")
+						.setParameter("userId", userId, StandardBasicTypes.STRING)
+						.setParameter("importName", importName, StandardBasicTypes.STRING)
+						.setParameter("linesDone", linesDone, StandardBasicTypes.LONG)
+						.setParameter("updatedAt", new Date(), StandardBasicTypes.TIMESTAMP).executeUpdate();
+				transaction.commit();
+			} catch (RuntimeException e) {
+				transaction.rollback();
+				throw e;
+			}
+		} finally {
+			session.close();
+		}
+		if (cachedListsChanged) {
+			sessionFactory.getCache().evictQueryRegion("category.byUser");
+			sessionFactory.getCache().evictQueryRegion("reminder.byUser");
+		}
+	}
+
+}
@@ -1,9 +1,19 @@
 package com.stackroute.keepnote.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
 import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.model.ChangeRecord;
 
 /*
  * This class is implementing the UserDAO interface. This class has to be annotated with 
@@ -14,22 +24,29 @@ import com.stackroute.keepnote.model.Category;
  * 					transaction. The database transaction happens inside the scope of a persistence 
  * 					context.  
  * */
+@Repository
+@Transactional
 public class CategoryDAOImpl implements CategoryDAO {
 
 	/*
 	 * Autowiring should be implemented for the SessionFactory.(Use
 	 * constructor-based autowiring.
 	 */
-	
-	public CategoryDAOImpl(SessionFactory sessionFactory) {
+	private SessionFactory sessionFactory;
 
+	@Autowired
+	public CategoryDAOImpl(@Qualifier("shardedSessionFactory") SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
 	}
 
 	/*
 	 * Create a new category
 	 */
 	public boolean createCategory(Category category) {
-		return false;
+		sessionFactory.getCurrentSession().save(category);
+		sessionFactory.getCurrentSession().flush();
+		ChangeOutboxStore.category(sessionFactory.getCurrentSession(), category.getCategoryId(), ChangeRecord.CREATE);
+		return true;
 
 	}
 
@@ -37,32 +54,86 @@ public class CategoryDAOImpl implements CategoryDAO {
 	 * Remove an existing category
 	 */
 	public boolean deleteCategory(int categoryId) {
-		return false;
+		Category category = sessionFactory.getCurrentSession().get(Category.class, categoryId);
+		if (category == null) {
+			return false;
+		}
+		ChangeOutboxStore.category(sessionFactory.getCurrentSession(), categoryId, ChangeRecord.DELETE);
+		sessionFactory.getCurrentSession().delete(category);
+		sessionFactory.getCurrentSession().flush();
+		return true;
 
 	}
 	/*
-	 * Update an existing category
+	 * Update an existing category. The row is written with a single UPDATE guarded by
+	 * the version the category carries; if the row has another version (or is gone)
+	 * an OptimisticLockException is thrown and nothing is written.
 	 */
 
 	public boolean updateCategory(Category category) {
-		return false;
+		sessionFactory.getCurrentSession().update(category);
+		sessionFactory.getCurrentSession().flush();
+		ChangeOutboxStore.category(sessionFactory.getCurrentSession(), category.getCategoryId(), ChangeRecord.UPDATE);
+		return true;
 
 	}
 	/*
-	 * Retrieve details of a specific category
+	 * Retrieve details of a specific category. Served from the "category" second
+	 * level cache region when the row has been read before.
 	 */
 
 	public Category getCategoryById(int categoryId) throws CategoryNotFoundException {
-		return null;
+		Category category = sessionFactory.getCurrentSession().get(Category.class, categoryId);
+		if (category == null) {
+			throw new CategoryNotFoundException("Category Not Found");
+		}
+		return category;
+
+	}
 
+	/*
+	 * Retrieve which of the given categoryIds exist, with one query, to check the
+	 * references of many notes at once.
+	 */
+	public List<Integer> getExistingCategoryIds(Collection<Integer> categoryIds) {
+		if (categoryIds.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+		return sessionFactory.getCurrentSession().createNamedQuery(Category.EXISTING_IDS, Integer.class)
+				.setParameterList("categoryIds", categoryIds, StandardBasicTypes.INTEGER).getResultList();
 	}
 
 	/*
-	 * Retrieve details of all categories by userId
+	 * Retrieve details of all categories by userId. The result is kept in the
+	 * query cache, which Hibernate invalidates whenever the Category table is
+	 * written.
 	 */
 	public List<Category> getAllCategoryByUserId(String userId) {
-		return null;
+		return sessionFactory.getCurrentSession()
+				.createNamedQuery(Category.BY_USER, Category.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).setCacheable(true).setCacheRegion("category.byUser")
+				.getResultList();
 
 	}
 
+	/*
+	 * Remove at most limit categories of a user, returning how many were removed.
+	 * Only the "category" cache regions are invalidated.
+	 */
+	public int deleteCategoriesByUserId(String userId, int limit) {
+		Session session = sessionFactory.getCurrentSession();
+		List<Integer> categoryIds = new ArrayList<Integer>();
+		for (Object categoryId : session.getNamedNativeQuery(Category.IDS_BY_USER_FOR_UPDATE)
+				.addSynchronizedEntityClass(Category.class).setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setParameter("limit", limit, StandardBasicTypes.INTEGER).getResultList()) {
+			categoryIds.add(((Number) categoryId).intValue());
+		}
+		if (categoryIds.isEmpty()) {
+			return 0;
+		}
+		ChangeOutboxStore.categories(session, categoryIds, ChangeRecord.DELETE);
+		return session.getNamedNativeQuery(Category.DELETE_BY_IDS).addSynchronizedEntityClass(Category.class)
+				.setParameterList("categoryIds", categoryIds, StandardBasicTypes.INTEGER).executeUpdate();
+	}
+
 }
@@ -0,0 +1,13 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.List;
+
+import com.stackroute.keepnote.model.ChangeRecord;
+
+public interface ChangeOutboxDAO {
+
+	public List<ChangeRecord> getOldestChanges(int limit);
+
+	public int deleteChanges(List<Long> changeIds);
+
+}
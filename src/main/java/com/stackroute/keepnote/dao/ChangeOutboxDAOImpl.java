@@ -0,0 +1,53 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.model.ChangeRecord;
+
+/*
+ * Reads and removes the records of the change outbox for the change relay. The
+ * records are appended by the note, category and reminder DAOs (see
+ * ChangeOutboxStore); like theirs, the session works on the shard selected in
+ * ShardContext.
+ */
+@Repository
+@Transactional
+public class ChangeOutboxDAOImpl implements ChangeOutboxDAO {
+
+	private SessionFactory sessionFactory;
+
+	@Autowired
+	public ChangeOutboxDAOImpl(@Qualifier("shardedSessionFactory") SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
+	}
+
+	/*
+	 * The oldest limit records of the outbox, in change id order.
+	 */
+	public List<ChangeRecord> getOldestChanges(int limit) {
+		return sessionFactory.getCurrentSession().createNamedQuery(ChangeRecord.OLDEST, ChangeRecord.class)
+				.setMaxResults(limit).setReadOnly(true).getResultList();
+	}
+
+	/*
+	 * Remove the records with the given change ids, once published. Removing by
+	 * id rather than up to the last id published keeps a record whose
+	 * transaction committed after the read, with a lower id, in the outbox.
+	 */
+	public int deleteChanges(List<Long> changeIds) {
+		if (changeIds.isEmpty()) {
+			return 0;
+		}
+		return sessionFactory.getCurrentSession().getNamedNativeQuery(ChangeRecord.DELETE_BY_IDS)
+				.addSynchronizedEntityClass(ChangeRecord.class)
+				.setParameterList("changeIds", changeIds, StandardBasicTypes.LONG).executeUpdate();
+	}
+
+}
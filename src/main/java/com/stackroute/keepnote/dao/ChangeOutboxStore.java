@@ -0,0 +1,75 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.SharedSessionContract;
+import org.hibernate.type.StandardBasicTypes;
+
+import com.stackroute.keepnote.model.ChangeRecord;
+
+/*
+ * Appends change records to the outbox, for the DAOs writing notes,
+ * categories and reminders, in the transaction of the change. A record copies
+ * the owner and version from the row it is about, so it is appended once the
+ * change is flushed, or before the row is removed. The statements only name
+ * the ChangeOutbox table, so the second level cache is left alone; ids are
+ * sent in slices, so the IN lists of large removals stay bounded. Moving
+ * notes to or from the archive and purging deleted notes change nothing a
+ * consumer can read, so they are not recorded.
+ */
+final class ChangeOutboxStore {
+
+	private static final String TABLE = "ChangeOutbox";
+
+	private static final int SLICE_SIZE = 500;
+
+	private ChangeOutboxStore() {
+	}
+
+	static void note(SharedSessionContract session, int noteId, String operation) {
+		notes(session, Collections.singletonList(noteId), operation);
+	}
+
+	static void notes(SharedSessionContract session, Collection<Integer> noteIds, String operation) {
+		append(session, ChangeRecord.APPEND_NOTES, noteIds, operation);
+	}
+
+	static void archivedNotes(SharedSessionContract session, Collection<Integer> noteIds, String operation) {
+		append(session, ChangeRecord.APPEND_ARCHIVED_NOTES, noteIds, operation);
+	}
+
+	static void category(SharedSessionContract session, int categoryId, String operation) {
+		categories(session, Collections.singletonList(categoryId), operation);
+	}
+
+	static void categories(SharedSessionContract session, Collection<Integer> categoryIds, String operation) {
+		append(session, ChangeRecord.APPEND_CATEGORIES, categoryIds, operation);
+	}
+
+	static void reminder(SharedSessionContract session, int reminderId, String operation) {
+		reminders(session, Collections.singletonList(reminderId), operation);
+	}
+
+	static void reminders(SharedSessionContract session, Collection<Integer> reminderIds, String operation) {
+		append(session, ChangeRecord.APPEND_REMINDERS, reminderIds, operation);
+	}
+
+	private static void append(SharedSessionContract session, String statement, Collection<Integer> ids,
+			String operation) {
+		List<Integer> all = new ArrayList<Integer>(ids);
+		Date changedAt = new Date();
+		for (int from = 0; from < all.size(); from += SLICE_SIZE) {
+			session.getNamedNativeQuery(statement).addSynchronizedQuerySpace(TABLE)
+					.setParameter("operation", operation, StandardBasicTypes.STRING)
+					.setParameter("changedAt", changedAt, StandardBasicTypes.TIMESTAMP)
+					.setParameterList("ids", all.subList(from, Math.min(all.size(), from + SLICE_SIZE)),
+							StandardBasicTypes.INTEGER)
+					.executeUpdate();
+		}
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBody;
+import com.stackroute.keepnote.model.NoteContentType;
+
+/*
+ * Reference counting of the shared note bodies, for the DAOs writing notes.
+ * Every note row holds one reference to the body of its content: acquire
+ * before a row points at a body, release once rows stopped pointing at their
+ * bodies (or before they are removed). Bodies whose count dropped to zero are
+ * left for the purger, so a concurrent acquire of the same content never races
+ * a delete. The statements only name the NoteBody (and Note) tables, so the
+ * second level cache regions of categories and reminders are left alone.
+ */
+final class NoteBodyStore {
+
+	private NoteBodyStore() {
+	}
+
+	/*
+	 * The key of the body holding the content, null for null content.
+	 */
+	static String hashOf(String content) {
+		return content == null ? null : NoteBody.hashOf(content);
+	}
+
+	/*
+	 * Takes a reference to the body with the given hash and content, storing the
+	 * body if it is new; nothing for a null hash. The content is only sent to the
+	 * database when no note has it yet.
+	 */
+	static void acquire(SharedSessionContract session, String hash, String content) {
+		if (hash == null) {
+			return;
+		}
+		int updated = session.getNamedNativeQuery(NoteBody.ADD_REFERENCES).addSynchronizedEntityClass(NoteBody.class)
+				.setParameter("refs", 1, StandardBasicTypes.INTEGER).setParameter("hash", hash, StandardBasicTypes.STRING)
+				.executeUpdate();
+		if (updated == 0) {
+			session.getNamedNativeQuery(NoteBody.INSERT).addSynchronizedEntityClass(NoteBody.class)
+					.setParameter("hash", hash, StandardBasicTypes.STRING)
+					.setParameter("content", content, NoteContentType.of(session))
+					.executeUpdate();
+		}
+	}
+
+	/*
+	 * Takes a reference to the body of each of the given notes, like acquire, in
+	 * two statements however many notes: the bodies which exist are locked, so
+	 * they stay until the end of the transaction, then all references are added
+	 * with one multi-row upsert sending the content of the new bodies only.
+	 * Returns the hashes of the notes' contents, in order.
+	 */
+	static List<String> acquire(SharedSessionContract session, List<Note> notes) {
+		List<String> hashes = new ArrayList<String>(notes.size());
+		// sorted, so that concurrent transactions lock the bodies in the same order
+		Map<String, String> contents = new TreeMap<String, String>();
+		Map<String, Integer> references = new TreeMap<String, Integer>();
+		for (Note note : notes) {
+			String hash = hashOf(note.getNoteContent());
+			hashes.add(hash);
+			if (hash != null) {
+				contents.putIfAbsent(hash, note.getNoteContent());
+				references.merge(hash, 1, Integer::sum);
+			}
+		}
+		if (references.isEmpty()) {
+			return hashes;
+		}
+		Set<String> existing = new HashSet<String>();
+		for (Object hash : session.getNamedNativeQuery(NoteBody.LOCK_EXISTING).addSynchronizedEntityClass(NoteBody.class)
+				.setParameterList("hashes", references.keySet(), StandardBasicTypes.STRING).getResultList()) {
+			existing.add((String) hash);
+		}
+		StringBuilder sql = new StringBuilder("INSERT INTO NoteBody (content_hash, content, ref_count) VALUES ");
+		for (int i = 0; i < references.size(); i++) {
+			sql.append(i == 0 ? "" : ", ").append("(?, ?, ?)");
+		}
+		sql.append(" ON DUPLICATE KEY UPDATE ref_count = ref_count + VALUES(ref_count)");
+		NativeQuery<?> query = session.createNativeQuery(sql.toString()).addSynchronizedEntityClass(NoteBody.class);
+		Type contentType = NoteContentType.of(session);
+		int position = 1;
+		for (Map.Entry<String, Integer> reference : references.entrySet()) {
+			String hash = reference.getKey();
+			query.setParameter(position++, hash, StandardBasicTypes.STRING)
+					.setParameter(position++, existing.contains(hash) ? null : contents.get(hash), contentType)
+					.setParameter(position++, reference.getValue(), StandardBasicTypes.INTEGER);
+		}
+		query.executeUpdate();
+		return hashes;
+	}
+
+	/*
+	 * Drops one reference to the body with the given hash; nothing for null.
+	 */
+	static void release(SharedSessionContract session, String hash) {
+		if (hash != null) {
+			release(session, hash, 1);
+		}
+	}
+
+	/*
+	 * Drops the references held by the given notes, one statement per distinct
+	 * body.
+	 */
+	static void release(Session session, Collection<Integer> noteIds) {
+		if (noteIds.isEmpty()) {
+			return;
+		}
+		List<?> references = session.getNamedNativeQuery(NoteBody.REFERENCES_OF_NOTES)
+				.addSynchronizedEntityClass(Note.class)
+				.setParameterList("noteIds", noteIds, StandardBasicTypes.INTEGER).getResultList();
+		for (Object reference : references) {
+			Object[] row = (Object[]) reference;
+			release(session, (String) row[0], ((Number) row[1]).intValue());
+		}
+	}
+
+	private static void release(SharedSessionContract session, String hash, int refs) {
+		session.getNamedNativeQuery(NoteBody.ADD_REFERENCES).addSynchronizedEntityClass(NoteBody.class)
+				.setParameter("refs", -refs, StandardBasicTypes.INTEGER).setParameter("hash", hash, StandardBasicTypes.STRING)
+				.executeUpdate();
+	}
+
+	/*
+	 * A reference to the body with the given hash, for a note to point at.
+	 */
+	static NoteBody body(Session session, String hash) {
+		return hash == null ? null : session.load(NoteBody.class, hash);
+	}
+
+	/*
+	 * The content of the body with the given hash, null for null.
+	 */
+	static String content(Session session, String hash) {
+		return hash == null ? null : session.get(NoteBody.class, hash).getContent();
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+
+import com.stackroute.keepnote.model.ArchivedNote;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.UnmappedTableQueries;
+
+/*
+ * The per-user note counters: for each user the number of notes (not deleted,
+ * archived ones included) in total, per status, per category and per reminder.
+ * The DAOs writing notes collect the changes of a statement in a Deltas and
+ * apply them in the same transaction, with one upsert. Notes without a status,
+ * category or reminder are counted under the empty key. Counters are left at
+ * zero rather than removed; recompute rebuilds those of a user from the notes.
+ */
+final class NoteCounterStore {
+
+	static final String TOTAL = "total";
+	static final String STATUS = "status";
+	static final String CATEGORY = "category";
+	static final String REMINDER = "reminder";
+
+	/*
+	 * The query space of the counter statements, so that they leave the second
+	 * level cache alone.
+	 */
+	private static final String TABLE = "NoteCounter";
+
+	private static final String SEPARATOR = "\u0000";
+
+	private NoteCounterStore() {
+	}
+
+	/*
+	 * The changes to apply to the counters, sorted so that concurrent
+	 * transactions lock the counter rows in the same order.
+	 */
+	static final class Deltas {
+
+		private final Map<String, Integer> deltas = new TreeMap<String, Integer>();
+
+		/*
+		 * Counts a note with the given properties delta times (1 for a note added,
+		 * -1 for one removed). Notes without owner are not counted.
+		 */
+		Deltas add(String userId, Object status, Object categoryId, Object reminderId, int delta) {
+			if (userId == null) {
+				return this;
+			}
+			add(userId, TOTAL, "", delta);
+			add(userId, STATUS, status, delta);
+			add(userId, CATEGORY, categoryId, delta);
+			add(userId, REMINDER, reminderId, delta);
+			return this;
+		}
+
+		/*
+		 * Counts the note delta times.
+		 */
+		Deltas add(Note note, int delta) {
+			return add(note.getCreatedBy(), note.getNoteStatus(),
+					note.getCategory() == null ? null : note.getCategory().getCategoryId(),
+					note.getReminder() == null ? null : note.getReminder().getReminderId(), delta);
+		}
+
+		/*
+		 * Counts a note of the given row, as selected by lockRow or a grouped
+		 * select: created_by, note_status, category_id, reminder_id.
+		 */
+		Deltas add(Object[] row, int delta) {
+			return add((String) row[0], row[1], row[2], row[3], delta);
+		}
+
+		private void add(String userId, String dimension, Object key, int delta) {
+			String counter = userId + SEPARATOR + dimension + SEPARATOR + (key == null ? "" : key.toString());
+			deltas.merge(counter, delta, Integer::sum);
+		}
+
+		/*
+		 * Applies the changes; nothing when they cancel out.
+		 */
+		void apply(SharedSessionContract session) {
+			StringBuilder sql = new StringBuilder(
+					"INSERT INTO NoteCounter (user_id, dimension, counter_key, note_count) VALUES ");
+			List<Map.Entry<String, Integer>> changes = new ArrayList<Map.Entry<String, Integer>>();
+			for (Map.Entry<String, Integer> change : deltas.entrySet()) {
+				if (change.getValue() != 0) {
+					sql.append(changes.isEmpty() ? "" : ", ").append("(?, ?, ?, ?)");
+					changes.add(change);
+				}
+			}
+			if (changes.isEmpty()) {
+				return;
+			}
+			sql.append(" ON DUPLICATE KEY UPDATE note_count = note_count + VALUES(note_count)");
+			NativeQuery<?> query = session.createNativeQuery(sql.toString()).addSynchronizedQuerySpace(TABLE);
+			int position = 1;
+			for (Map.Entry<String, Integer> change : changes) {
+				String[] counter = change.getKey().split(SEPARATOR, -1);
+				query.setParameter(position++, counter[0], StandardBasicTypes.STRING)
+						.setParameter(position++, counter[1], StandardBasicTypes.STRING)
+						.setParameter(position++, counter[2], StandardBasicTypes.STRING)
+						.setParameter(position++, change.getValue(), StandardBasicTypes.INTEGER);
+			}
+			query.executeUpdate();
+			deltas.clear();
+		}
+	}
+
+	/*
+	 * The counters of a user: "total" and maps from status, category id and
+	 * reminder id to the number of notes. Counters at zero are left out.
+	 */
+	static Map<String, Object> read(Session session, String userId) {
+		Map<String, Object> counters = new LinkedHashMap<String, Object>();
+		counters.put(TOTAL, 0);
+		counters.put(STATUS, new TreeMap<String, Integer>());
+		counters.put(CATEGORY, new TreeMap<String, Integer>());
+		counters.put(REMINDER, new TreeMap<String, Integer>());
+		List<?> rows = session.getNamedNativeQuery(UnmappedTableQueries.COUNTERS_BY_USER).addSynchronizedQuerySpace(TABLE)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).getResultList();
+		for (Object result : rows) {
+			Object[] row = (Object[]) result;
+			int count = ((Number) row[2]).intValue();
+			if (TOTAL.equals(row[0])) {
+				counters.put(TOTAL, count);
+			} else if (counters.get(row[0]) instanceof Map) {
+				@SuppressWarnings("unchecked")
+				Map<String, Integer> dimension = (Map<String, Integer>) counters.get(row[0]);
+				dimension.put((String) row[1], count);
+			}
+		}
+		return counters;
+	}
+
+	/*
+	 * Rebuilds the counters of a user from the notes and the archive. The notes
+	 * read are locked until the end of the transaction, so no write of the user
+	 * slips in between.
+	 */
+	static void recompute(Session session, String userId) {
+		remove(session, userId);
+		Deltas deltas = new Deltas();
+		for (String counts : new String[] { Note.COUNTS_BY_USER_FOR_UPDATE, ArchivedNote.COUNTS_BY_USER_FOR_UPDATE }) {
+			List<?> rows = session.getNamedNativeQuery(counts).addSynchronizedEntityClass(Note.class)
+					.addSynchronizedEntityClass(ArchivedNote.class).setParameter("userId", userId, StandardBasicTypes.STRING)
+					.getResultList();
+			for (Object row : rows) {
+				deltas.add((Object[]) row, ((Number) ((Object[]) row)[4]).intValue());
+			}
+		}
+		deltas.apply(session);
+	}
+
+	/*
+	 * Removes the counters of a user.
+	 */
+	static void remove(Session session, String userId) {
+		session.getNamedNativeQuery(UnmappedTableQueries.DELETE_COUNTERS_BY_USER).addSynchronizedQuerySpace(TABLE)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).executeUpdate();
+	}
+
+}
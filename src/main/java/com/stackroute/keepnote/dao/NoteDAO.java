@@ -1,9 +1,17 @@
 package com.stackroute.keepnote.dao;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import com.stackroute.keepnote.exception.NoteNotFoundException;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteCriteria;
+import com.stackroute.keepnote.model.NoteCursor;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.NoteSummary;
 
 public interface NoteDAO {
 
@@ -14,12 +22,53 @@ public interface NoteDAO {
 
 	public boolean createNote(Note note);
 
+	public int createNotes(List<Note> notes);
+
+	public boolean registerIdempotencyKey(String userId, String idempotencyKey, int noteId);
+
+	public Integer getNoteIdByIdempotencyKey(String userId, String idempotencyKey);
+
+	public List<Integer> getExistingNoteIds(List<Integer> noteIds);
+
 	public boolean deleteNote(int noteId);
 
+	public boolean restoreNote(String userId, int noteId);
+
+	public int deleteNotes(String userId, NoteCriteria criteria);
+
 	public List<Note> getAllNotesByUserId(String userId);
 
+	public List<NoteSummary> getNoteSummariesByUserId(String userId);
+
+	public List<Note> getNotesByUserIdAfter(String userId, NoteCursor cursor, int limit);
+
+	public int exportNotesByUserId(String userId, Consumer<Note> consumer);
+
 	public Note getNoteById(int noteId) throws NoteNotFoundException;
 
 	public boolean UpdateNote(Note note);
 
+	public int patchNote(int noteId, String userId, Map<String, Object> changes, Integer version);
+
+	public int deleteNotesByUserId(String userId, int limit);
+
+	public int purgeDeletedNotes(Date deletedBefore, int limit);
+
+	public int purgeUnreferencedBodies(int limit);
+
+	public List<NoteRevision> getNoteRevisions(int noteId);
+
+	public NoteRevision getNoteRevision(int noteId, int revision);
+
+	public Map<String, Object> getNoteCounters(String userId);
+
+	public List<String> getCountedUserIds();
+
+	public void recomputeNoteCounters(String userId);
+
+	public int archiveNotes(Date createdBefore, Collection<String> statuses, int limit);
+
+	public boolean promoteNote(int noteId);
+
+	public int deleteArchivedNotesByUserId(String userId, int limit);
 }
@@ -1,9 +1,44 @@
 package com.stackroute.keepnote.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import javax.persistence.EntityGraph;
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
 import com.stackroute.keepnote.exception.NoteNotFoundException;
+import com.stackroute.keepnote.model.ArchivedNote;
+import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.model.ChangeRecord;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBody;
+import com.stackroute.keepnote.model.NoteCriteria;
+import com.stackroute.keepnote.model.NoteCursor;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.NoteSummary;
+import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.model.UnmappedTableQueries;
 
 /*
  * This class is implementing the UserDAO interface. This class has to be annotated with 
@@ -14,60 +49,802 @@ import com.stackroute.keepnote.model.Note;
  * 					transaction. The database transaction happens inside the scope of a persistence 
  * 					context.  
  * */
-
+@Repository
+@Transactional
 public class NoteDAOImpl implements NoteDAO {
 
+	/*
+	 * JPA hint under which an entity graph is passed to a query or a find; as a
+	 * fetch graph, attributes outside of the graph are loaded lazily.
+	 */
+	private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+	/*
+	 * The order of the lists of notes: newest first, notes without a creation
+	 * date last, by noteId.
+	 */
+	private static final Comparator<Note> NEWEST_FIRST = Comparator
+			.comparing(Note::getNoteCreatedAt, Comparator.nullsLast(Comparator.<Date>reverseOrder()))
+			.thenComparing(Note::getNoteId, Comparator.reverseOrder());
+
+	/*
+	 * Rows per round trip when scrolling through an export. MySQL only honours
+	 * it with useCursorFetch=true, which every MySQL pool sets.
+	 */
+	private static final int EXPORT_FETCH_SIZE = 500;
+
 	/*
 	 * Autowiring should be implemented for the SessionFactory.(Use
 	 * constructor-based autowiring.
 	 */
+	private SessionFactory sessionFactory;
 
-	public NoteDAOImpl(SessionFactory sessionFactory) {
+	@Value("${revision.snapshot_interval:20}")
+	private int snapshotInterval = 20;
 
+	@Autowired
+	public NoteDAOImpl(@Qualifier("shardedSessionFactory") SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
 	}
 
 	/*
-	 * Create a new note
+	 * Create a new note, pointing at the shared body of its content. Returns
+	 * false, without writing anything, when the noteId is already taken by a
+	 * note, deleted or not, or by an archived note. A duplicate key error is not
+	 * caught here: it would leave the caller's transaction rollback-only.
 	 */
-	
+
 	public boolean createNote(Note note) {
-		return false;
+		Session session = sessionFactory.getCurrentSession();
+		if (!getExistingNoteIds(Collections.singletonList(note.getNoteId())).isEmpty()) {
+			return false;
+		}
+		String hash = NoteBodyStore.hashOf(note.getNoteContent());
+		NoteBodyStore.acquire(session, hash, note.getNoteContent());
+		note.setBody(NoteBodyStore.body(session, hash));
+		session.save(note);
+		session.flush();
+		NoteRevisionStore.record(session, note.getNoteId(), null, note.getNoteContent(), snapshotInterval);
+		new NoteCounterStore.Deltas().add(note, 1).apply(session);
+		ChangeOutboxStore.note(session, note.getNoteId(), ChangeRecord.CREATE);
+		return true;
+
+	}
+
+	/*
+	 * Create many notes at once, JDBC batch size notes at a time: the bodies of a
+	 * batch are acquired together, its notes flushed as one JDBC batch and their
+	 * first revisions inserted with one statement, then the session is cleared so
+	 * the persistence context does not grow with the number of notes.
+	 */
+
+	public int createNotes(List<Note> notes) {
+		Session session = sessionFactory.getCurrentSession();
+		int batchSize = Math.max(1, sessionFactory.getSessionFactoryOptions().getJdbcBatchSize());
+		NoteCounterStore.Deltas counters = new NoteCounterStore.Deltas();
+		List<Integer> noteIds = new ArrayList<Integer>();
+		for (int from = 0; from < notes.size(); from += batchSize) {
+			List<Note> batch = notes.subList(from, Math.min(notes.size(), from + batchSize));
+			List<String> hashes = NoteBodyStore.acquire(session, batch);
+			for (int i = 0; i < batch.size(); i++) {
+				Note note = batch.get(i);
+				counters.add(note, 1);
+				noteIds.add(note.getNoteId());
+				note.setBody(NoteBodyStore.body(session, hashes.get(i)));
+				session.save(note);
+			}
+			session.flush();
+			NoteRevisionStore.recordFirst(session, batch);
+			session.clear();
+		}
+		counters.apply(session);
+		ChangeOutboxStore.notes(session, noteIds, ChangeRecord.CREATE);
+		return notes.size();
+	}
+
+	/*
+	 * Record that the user's Idempotency-Key was used to create noteId. Returns
+	 * false when the key had already been recorded for the user: the insert skips
+	 * the duplicate row instead of failing, so the transaction stays usable.
+	 */
+
+	public boolean registerIdempotencyKey(String userId, String idempotencyKey, int noteId) {
+		return sessionFactory.getCurrentSession().getNamedNativeQuery(UnmappedTableQueries.ADD_IDEMPOTENCY_KEY)
+				.setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setParameter("idempotencyKey", idempotencyKey, StandardBasicTypes.STRING)
+				.setParameter("noteId", noteId, StandardBasicTypes.INTEGER)
+				.setParameter("createdAt", new Date(), StandardBasicTypes.TIMESTAMP).executeUpdate() == 1;
+	}
 
+	/*
+	 * Retrieve the noteId created with the user's Idempotency-Key, or null
+	 */
+
+	public Integer getNoteIdByIdempotencyKey(String userId, String idempotencyKey) {
+		List<?> noteIds = sessionFactory.getCurrentSession().getNamedNativeQuery(UnmappedTableQueries.ID_BY_IDEMPOTENCY_KEY)
+				.setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setParameter("idempotencyKey", idempotencyKey, StandardBasicTypes.STRING).getResultList();
+		return noteIds.isEmpty() ? null : ((Number) noteIds.get(0)).intValue();
 	}
 
 	/*
-	 * Remove an existing note
+	 * Retrieve which of the given noteIds are already taken. Deleted notes keep
+	 * their id until purged, so this is a native query which sees them; archived
+	 * notes keep theirs too.
 	 */
-	
+
+	public List<Integer> getExistingNoteIds(List<Integer> noteIds) {
+		List<Integer> existing = new ArrayList<Integer>();
+		if (noteIds.isEmpty()) {
+			return existing;
+		}
+		List<?> rows = sessionFactory.getCurrentSession().getNamedNativeQuery(Note.EXISTING_IDS)
+				.setParameterList("noteIds", noteIds, StandardBasicTypes.INTEGER).getResultList();
+		for (Object row : rows) {
+			existing.add(((Number) row).intValue());
+		}
+		return existing;
+	}
+
+	/*
+	 * Remove an existing note. The note is only marked deleted (with a single
+	 * UPDATE, bumping its version), so it can be restored until the purger
+	 * removes it. An archived note is moved back to Note first.
+	 */
+
 	public boolean deleteNote(int noteId) {
-		return false;
+		Session session = sessionFactory.getCurrentSession();
+		Object[] row = lockRow(noteId);
+		if (row == null && promoteNote(noteId)) {
+			row = lockRow(noteId);
+		}
+		if (row == null || isDeleted(row)) {
+			return false;
+		}
+		session.createNamedQuery(Note.MARK_DELETED).setParameter("deletedAt", new Date(), StandardBasicTypes.TIMESTAMP)
+				.setParameter("noteId", noteId, StandardBasicTypes.INTEGER).executeUpdate();
+		new NoteCounterStore.Deltas().add(row, -1).apply(session);
+		ChangeOutboxStore.note(session, noteId, ChangeRecord.DELETE);
+		return true;
 	}
 
 	/*
-	 * Retrieve details of all notes by userId
+	 * Restore a deleted note of the user which has not been purged yet. Returns
+	 * false if there is no such note.
 	 */
-	
+
+	public boolean restoreNote(String userId, int noteId) {
+		Session session = sessionFactory.getCurrentSession();
+		Object[] row = lockRow(noteId);
+		if (row == null || !isDeleted(row) || !userId.equals(row[0])) {
+			return false;
+		}
+		session.getNamedNativeQuery(Note.RESTORE).addSynchronizedEntityClass(Note.class)
+				.setParameter("noteId", noteId, StandardBasicTypes.INTEGER).executeUpdate();
+		new NoteCounterStore.Deltas().add(row, 1).apply(session);
+		ChangeOutboxStore.note(session, noteId, ChangeRecord.CREATE);
+		return true;
+	}
+
+	/*
+	 * Remove all notes of a user matching the criteria with a single UPDATE
+	 * marking them deleted; the notes are not loaded. Archived notes matching
+	 * the criteria are removed at once with a single DELETE, they cannot be
+	 * restored. Every note removed is recorded in the change outbox. Returns the
+	 * number of notes removed.
+	 */
+
+	public int deleteNotes(String userId, NoteCriteria criteria) {
+		Session session = sessionFactory.getCurrentSession();
+		List<Integer> noteIds = new ArrayList<Integer>();
+		for (Object noteId : criteriaQuery("select noteId from Note where createdBy = :userId", userId, criteria)
+				.getResultList()) {
+			noteIds.add((Integer) noteId);
+		}
+		NoteCounterStore.Deltas counters = new NoteCounterStore.Deltas();
+		for (String entity : new String[] { "Note", "NoteArchive" }) {
+			for (Object row : criteriaQuery("select createdBy, noteStatus, category.categoryId, reminder.reminderId,"
+					+ " count(*) from " + entity + " where createdBy = :userId", userId, criteria,
+					" group by createdBy, noteStatus, category.categoryId, reminder.reminderId").getResultList()) {
+				counters.add((Object[]) row, -((Number) ((Object[]) row)[4]).intValue());
+			}
+		}
+		Query<?> query = criteriaQuery("update Note set deleted = true, deletedAt = :deletedAt,"
+				+ " version = version + 1 where createdBy = :userId and deleted = false", userId, criteria);
+		query.setParameter("deletedAt", new Date(), StandardBasicTypes.TIMESTAMP);
+		int deleted = query.executeUpdate();
+		counters.apply(session);
+		ChangeOutboxStore.notes(session, noteIds, ChangeRecord.DELETE);
+		List<Integer> archivedIds = new ArrayList<Integer>();
+		for (Object noteId : criteriaQuery("select noteId from NoteArchive where createdBy = :userId", userId,
+				criteria).getResultList()) {
+			archivedIds.add((Integer) noteId);
+		}
+		NoteRevisionStore.remove(session, archivedIds);
+		ChangeOutboxStore.archivedNotes(session, archivedIds, ChangeRecord.DELETE);
+		return deleted + criteriaQuery("delete from NoteArchive where createdBy = :userId", userId, criteria)
+				.executeUpdate();
+	}
+
+	/*
+	 * Retrieve details of all notes by userId. The archive is only read for a
+	 * user who has archived notes: their count comes from the query cache, which
+	 * drops it whenever the NoteArchive table is written, so most lists cost a
+	 * single query.
+	 */
+
 	public List<Note> getAllNotesByUserId(String userId) {
-		return null;
+		List<Note> notes = sessionFactory.getCurrentSession().createNamedQuery(Note.BY_USER, Note.class)
+				.setHint(FETCH_GRAPH, graph(Note.SUMMARY_GRAPH)).setParameter("userId", userId, StandardBasicTypes.STRING)
+				.getResultList();
+		if (!hasArchivedNotes(userId)) {
+			return notes;
+		}
+		List<ArchivedNote> archived = sessionFactory.getCurrentSession()
+				.createNamedQuery(ArchivedNote.BY_USER, ArchivedNote.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).setReadOnly(true).getResultList();
+		notes = new ArrayList<Note>(notes);
+		for (ArchivedNote archivedNote : archived) {
+			notes.add(archivedNote.toNote());
+		}
+		notes.sort(NEWEST_FIRST);
+		return notes;
 
 	}
 
 	/*
-	 * Retrieve details of a specific note
+	 * Retrieve the id, title, status and creation date of all notes by userId,
+	 * archived ones included, as getAllNotesByUserId does. The constructor
+	 * expression builds plain NoteSummary objects, so nothing is added to the
+	 * persistence context or dirty checked on flush, and the note content is not
+	 * read.
 	 */
-	
+
+	public List<NoteSummary> getNoteSummariesByUserId(String userId) {
+		List<NoteSummary> summaries = sessionFactory.getCurrentSession()
+				.createNamedQuery(Note.SUMMARIES_BY_USER, NoteSummary.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).getResultList();
+		if (!hasArchivedNotes(userId)) {
+			return summaries;
+		}
+		summaries = new ArrayList<NoteSummary>(summaries);
+		summaries.addAll(sessionFactory.getCurrentSession()
+				.createNamedQuery(ArchivedNote.SUMMARIES_BY_USER, NoteSummary.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).getResultList());
+		summaries.sort(Comparator
+				.comparing(NoteSummary::getNoteCreatedAt, Comparator.nullsLast(Comparator.<Date>reverseOrder()))
+				.thenComparing(NoteSummary::getNoteId, Comparator.reverseOrder()));
+		return summaries;
+	}
+
+	/*
+	 * Retrieve one page of a user's notes, newest first, seeking past the
+	 * (noteCreatedAt, noteId) position of the last note of the previous page. A
+	 * null cursor starts from the newest note. Unlike an offset, the seek
+	 * predicate lets the database start reading at the right place, so the cost
+	 * of a page does not grow with the number of notes in front of it. Notes
+	 * without a creation date follow the dated ones, by noteId: they are read by
+	 * a query of their own once the dated notes run out, rather than leaving
+	 * their place to how the database sorts a NULL. Archived notes take their
+	 * place in the same order: for a user who has some, the archive is paged the
+	 * same way and both pages are merged.
+	 */
+
+	public List<Note> getNotesByUserIdAfter(String userId, NoteCursor cursor, int limit) {
+		List<Note> notes = page(Note.class, Note.FIRST_PAGE_BY_USER, Note.PAGE_BY_USER_AFTER,
+				Note.UNDATED_PAGE_BY_USER_AFTER, userId, cursor, limit);
+		if (!hasArchivedNotes(userId)) {
+			return notes;
+		}
+		for (ArchivedNote archivedNote : page(ArchivedNote.class, ArchivedNote.FIRST_PAGE_BY_USER,
+				ArchivedNote.PAGE_BY_USER_AFTER, ArchivedNote.UNDATED_PAGE_BY_USER_AFTER, userId, cursor, limit)) {
+			notes.add(archivedNote.toNote());
+		}
+		notes.sort(NEWEST_FIRST);
+		return notes.size() > limit ? new ArrayList<Note>(notes.subList(0, limit)) : notes;
+	}
+
+	/*
+	 * One page of the notes or archived notes of a user: the dated ones past the
+	 * cursor, then, while the page is not full, the ones without a date.
+	 */
+	private <T> List<T> page(Class<T> entity, String firstPage, String pageAfter, String undatedPageAfter,
+			String userId, NoteCursor cursor, int limit) {
+		Session session = sessionFactory.getCurrentSession();
+		List<T> notes = new ArrayList<T>();
+		int undatedAfter = Integer.MAX_VALUE;
+		if (cursor == null) {
+			notes.addAll(pageQuery(session.createNamedQuery(firstPage, entity), entity, userId).setMaxResults(limit)
+					.getResultList());
+		} else if (cursor.getNoteCreatedAt() != null) {
+			notes.addAll(pageQuery(session.createNamedQuery(pageAfter, entity), entity, userId)
+					.setParameter("createdAt", cursor.getNoteCreatedAt(), StandardBasicTypes.TIMESTAMP)
+					.setParameter("noteId", cursor.getNoteId(), StandardBasicTypes.INTEGER).setMaxResults(limit)
+					.getResultList());
+		} else {
+			undatedAfter = cursor.getNoteId();
+		}
+		if (notes.size() < limit) {
+			notes.addAll(pageQuery(session.createNamedQuery(undatedPageAfter, entity), entity, userId)
+					.setParameter("noteId", undatedAfter, StandardBasicTypes.INTEGER).setMaxResults(limit - notes.size())
+					.getResultList());
+		}
+		return notes;
+	}
+
+	private <T> Query<T> pageQuery(Query<T> query, Class<T> entity, String userId) {
+		if (entity == Note.class) {
+			query.setHint(FETCH_GRAPH, graph(Note.SUMMARY_GRAPH));
+		} else {
+			query.setReadOnly(true);
+		}
+		return query.setParameter("userId", userId, StandardBasicTypes.STRING);
+	}
+
+	/*
+	 * Hand every note of a user to the consumer, oldest first, through a forward
+	 * only cursor, followed by the archived notes of the user. Each note is
+	 * evicted once consumed, so neither the result set nor the persistence
+	 * context grows with the number of notes.
+	 */
+
+	public int exportNotesByUserId(String userId, Consumer<Note> consumer) {
+		Session session = sessionFactory.getCurrentSession();
+		ScrollableResults results = session.createNamedQuery(Note.EXPORT_BY_USER, Note.class)
+				.setHint(FETCH_GRAPH, graph(Note.SUMMARY_GRAPH)).setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setFetchSize(EXPORT_FETCH_SIZE).setReadOnly(true).setCacheMode(CacheMode.IGNORE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		int count = 0;
+		try {
+			while (results.next()) {
+				Note note = (Note) results.get(0);
+				consumer.accept(note);
+				session.evict(note);
+				count++;
+			}
+		} finally {
+			results.close();
+		}
+		ScrollableResults archived = session.createNamedQuery(ArchivedNote.EXPORT_BY_USER, ArchivedNote.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).setFetchSize(EXPORT_FETCH_SIZE).setReadOnly(true)
+				.setCacheMode(CacheMode.IGNORE).scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (archived.next()) {
+				ArchivedNote archivedNote = (ArchivedNote) archived.get(0);
+				consumer.accept(archivedNote.toNote());
+				session.evict(archivedNote);
+				count++;
+			}
+		} finally {
+			archived.close();
+		}
+		return count;
+	}
+
+	/*
+	 * Retrieve details of a specific note, from the archive if it is not in Note
+	 */
+
 	public Note getNoteById(int noteId) throws NoteNotFoundException {
-		return null;
+		Map<String, Object> hints = Collections.<String, Object>singletonMap(FETCH_GRAPH, graph(Note.FULL_GRAPH));
+		Note note = sessionFactory.getCurrentSession().find(Note.class, noteId, hints);
+		if (note == null) {
+			List<ArchivedNote> archived = sessionFactory.getCurrentSession()
+					.createNamedQuery(ArchivedNote.WITH_REFERENCES, ArchivedNote.class)
+					.setParameter("noteId", noteId, StandardBasicTypes.INTEGER).setReadOnly(true).getResultList();
+			note = archived.isEmpty() ? null : archived.get(0).toNote();
+		}
+		if (note == null) {
+			throw new NoteNotFoundException("Note Not Found");
+		}
+		return note;
 
 	}
 
 	/*
-	 * Update an existing note
+	 * Update an existing note. The row is written with a single UPDATE guarded by
+	 * the version the note carries (@Version), without locking it first. The
+	 * state being replaced (owner, status, category, reminder, content hash and
+	 * deleted flag) is read beforehand by a plain SELECT, which only holds for
+	 * that version: if the row has another version, is gone or is a deleted
+	 * note, an OptimisticLockException is thrown and nothing is written, and if
+	 * it changes before the UPDATE, the version check fails the same way. So an
+	 * update never brings a deleted note back, and the body references and
+	 * counters are moved from the state that was actually overwritten. When the
+	 * content changed the note moves to the body of the new content and a
+	 * revision is recorded. The counters of the user follow the note.
 	 */
 
 	public boolean UpdateNote(Note note) {
-		return false;
+		Session session = sessionFactory.getCurrentSession();
+		List<?> rows = session.getNamedNativeQuery(Note.CURRENT_STATE).addSynchronizedEntityClass(Note.class)
+				.setParameter("noteId", note.getNoteId(), StandardBasicTypes.INTEGER).getResultList();
+		if (rows.isEmpty()) {
+			throw new OptimisticLockException("Note not found");
+		}
+		Object[] row = (Object[]) rows.get(0);
+		if (isDeleted(row) || ((Number) row[6]).intValue() != note.getVersion()) {
+			throw new OptimisticLockException("Note has been modified or deleted");
+		}
+		String oldHash = (String) row[4];
+		String hash = NoteBodyStore.hashOf(note.getNoteContent());
+		boolean contentChanged = !Objects.equals(oldHash, hash);
+		String oldContent = null;
+		if (contentChanged) {
+			oldContent = NoteBodyStore.content(session, oldHash);
+			NoteBodyStore.acquire(session, hash, note.getNoteContent());
+		}
+		note.setBody(NoteBodyStore.body(session, hash));
+		session.update(note);
+		session.flush();
+		if (contentChanged) {
+			NoteBodyStore.release(session, oldHash);
+			NoteRevisionStore.record(session, note.getNoteId(), oldContent, note.getNoteContent(), snapshotInterval);
+		}
+		new NoteCounterStore.Deltas().add(row, -1).add(note, 1).apply(session);
+		ChangeOutboxStore.note(session, note.getNoteId(), ChangeRecord.UPDATE);
+		return true;
+
+	}
+
+	/*
+	 * Change only the given properties of a note of the user, with a single
+	 * UPDATE that sets just those columns (and bumps the version); the note is not
+	 * loaded. A note of another user is not matched. When a version is given the
+	 * row is only updated if it still has that version. An
+	 * archived note is moved back to Note first. A new content moves the note to
+	 * the body of that content and records a revision, the body references being
+	 * adjusted only if the note was updated; a new status, category or reminder
+	 * moves the note between the counters of the user. Returns the number of
+	 * notes updated, 0 if none matched. Only the names of patchable properties go
+	 * into the statement, and each value is bound with the Hibernate type of its
+	 * property rather than one guessed from the value.
+	 */
+
+	public int patchNote(int noteId, String userId, Map<String, Object> changes, Integer version) {
+		Session session = sessionFactory.getCurrentSession();
+		boolean contentChanged = changes.containsKey("noteContent");
+		String content = (String) changes.get("noteContent");
+		String hash = NoteBodyStore.hashOf(content);
+		StringBuilder hql = new StringBuilder("update Note set version = version + 1");
+		for (String property : changes.keySet()) {
+			if (!Note.PATCHABLE_PROPERTIES.contains(property)) {
+				throw new IllegalArgumentException("Property cannot be patched: " + property);
+			}
+			if ("noteContent".equals(property)) {
+				hql.append(", body = :body");
+			} else {
+				hql.append(", ").append(property).append(" = :").append(property);
+			}
+		}
+		hql.append(" where noteId = :noteId and createdBy = :userId and deleted = false");
+		if (version != null) {
+			hql.append(" and version = :version");
+		}
+		EntityPersister persister = ((SharedSessionContractImplementor) session).getFactory().getMetamodel()
+				.entityPersister(Note.class);
+		Query<?> query = session.createQuery(hql.toString());
+		for (Map.Entry<String, Object> change : changes.entrySet()) {
+			if ("noteContent".equals(change.getKey())) {
+				query.setParameter("body", NoteBodyStore.body(session, hash), persister.getPropertyType("body"));
+			} else {
+				query.setParameter(change.getKey(), change.getValue(), persister.getPropertyType(change.getKey()));
+			}
+		}
+		query.setParameter("noteId", noteId, StandardBasicTypes.INTEGER);
+		query.setParameter("userId", userId, StandardBasicTypes.STRING);
+		if (version != null) {
+			query.setParameter("version", version, StandardBasicTypes.INTEGER);
+		}
+		boolean counted = changes.containsKey("noteStatus") || changes.containsKey("category")
+				|| changes.containsKey("reminder");
+		if (!contentChanged && !counted) {
+			int updated = query.executeUpdate();
+			if (updated == 0 && promoteNote(noteId)) {
+				updated = query.executeUpdate();
+			}
+			if (updated > 0) {
+				ChangeOutboxStore.note(session, noteId, ChangeRecord.UPDATE);
+			}
+			return updated;
+		}
+		Object[] row = lockRow(noteId);
+		if (row == null && promoteNote(noteId)) {
+			row = lockRow(noteId);
+		}
+		if (contentChanged) {
+			NoteBodyStore.acquire(session, hash, content);
+		}
+		int updated = row == null ? 0 : query.executeUpdate();
+		if (contentChanged) {
+			String oldHash = row == null ? null : (String) row[4];
+			NoteBodyStore.release(session, updated == 0 ? hash : oldHash);
+			if (updated > 0 && !Objects.equals(oldHash, hash)) {
+				NoteRevisionStore.record(session, noteId, NoteBodyStore.content(session, oldHash), content,
+						snapshotInterval);
+			}
+		}
+		if (updated > 0 && counted) {
+			Category category = (Category) changes.get("category");
+			Reminder reminder = (Reminder) changes.get("reminder");
+			new NoteCounterStore.Deltas().add(row, -1)
+					.add((String) row[0], changes.containsKey("noteStatus") ? changes.get("noteStatus") : row[1],
+							changes.containsKey("category") ? (category == null ? null : category.getCategoryId()) : row[2],
+							changes.containsKey("reminder") ? (reminder == null ? null : reminder.getReminderId()) : row[3],
+							1)
+					.apply(session);
+		}
+		if (updated > 0) {
+			ChangeOutboxStore.note(session, noteId, ChangeRecord.UPDATE);
+		}
+		return updated;
+	}
+
+	/*
+	 * Remove at most limit notes of a user, returning how many were removed.
+	 * Called repeatedly, each call in its own short transaction, to erase a user
+	 * without holding locks on a large range of rows.
+	 */
+
+	public int deleteNotesByUserId(String userId, int limit) {
+		NoteCounterStore.remove(sessionFactory.getCurrentSession(), userId);
+		return removeNotes(sessionFactory.getCurrentSession().getNamedNativeQuery(Note.IDS_BY_USER_FOR_UPDATE)
+				.addSynchronizedEntityClass(Note.class).setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setParameter("limit", limit, StandardBasicTypes.INTEGER).getResultList(), true);
+	}
+
+	/*
+	 * Physically remove at most limit notes which were deleted before the given
+	 * time, returning how many were removed. Called repeatedly by the purger,
+	 * each call in its own short transaction.
+	 */
+
+	public int purgeDeletedNotes(Date deletedBefore, int limit) {
+		return removeNotes(sessionFactory.getCurrentSession().getNamedNativeQuery(Note.PURGEABLE_IDS_FOR_UPDATE)
+				.addSynchronizedEntityClass(Note.class)
+				.setParameter("deletedBefore", deletedBefore, StandardBasicTypes.TIMESTAMP)
+				.setParameter("limit", limit, StandardBasicTypes.INTEGER).getResultList(), false);
+	}
+
+	/*
+	 * Remove at most limit note bodies no note refers to any more, returning how
+	 * many were removed. Called repeatedly by the purger.
+	 */
+
+	public int purgeUnreferencedBodies(int limit) {
+		return sessionFactory.getCurrentSession().getNamedNativeQuery(NoteBody.PURGE_UNREFERENCED)
+				.addSynchronizedEntityClass(NoteBody.class).setParameter("limit", limit, StandardBasicTypes.INTEGER)
+				.executeUpdate();
+	}
+
+	/*
+	 * Move at most limit notes created before createdBefore (if not null) or
+	 * having one of the statuses to the archive, returning how many were moved.
+	 * Called repeatedly by the archiver, each call in its own transaction. A note
+	 * changed meanwhile makes its versioned DELETE fail and the whole batch roll
+	 * back, so nothing is archived over a concurrent update.
+	 */
+
+	public int archiveNotes(Date createdBefore, Collection<String> statuses, int limit) {
+		if (createdBefore == null && statuses.isEmpty()) {
+			return 0;
+		}
+		Session session = sessionFactory.getCurrentSession();
+		StringBuilder hql = new StringBuilder("from Note n left join fetch n.body where ");
+		if (createdBefore != null) {
+			hql.append("n.noteCreatedAt < :createdBefore");
+		}
+		if (!statuses.isEmpty()) {
+			hql.append(createdBefore != null ? " or " : "").append("n.noteStatus in (:statuses)");
+		}
+		Query<Note> query = session.createQuery(hql.toString(), Note.class).setMaxResults(limit);
+		if (createdBefore != null) {
+			query.setParameter("createdBefore", createdBefore, StandardBasicTypes.TIMESTAMP);
+		}
+		if (!statuses.isEmpty()) {
+			query.setParameterList("statuses", statuses, StandardBasicTypes.STRING);
+		}
+		List<Note> notes = query.getResultList();
+		List<Integer> noteIds = new ArrayList<Integer>();
+		for (Note note : notes) {
+			noteIds.add(note.getNoteId());
+		}
+		NoteBodyStore.release(session, noteIds);
+		Date archivedAt = new Date();
+		for (Note note : notes) {
+			session.persist(new ArchivedNote(note, archivedAt));
+			session.delete(note);
+		}
+		session.flush();
+		session.clear();
+		return notes.size();
+	}
+
+	/*
+	 * Move an archived note back to Note, keeping its version. Returns false if
+	 * the note is not archived.
+	 */
+
+	public boolean promoteNote(int noteId) {
+		Session session = sessionFactory.getCurrentSession();
+		ArchivedNote archived = session.get(ArchivedNote.class, noteId);
+		if (archived == null) {
+			return false;
+		}
+		Note note = archived.toNote();
+		String hash = NoteBodyStore.hashOf(note.getNoteContent());
+		NoteBodyStore.acquire(session, hash, note.getNoteContent());
+		note.setBody(NoteBodyStore.body(session, hash));
+		session.save(note);
+		session.delete(archived);
+		session.flush();
+		return true;
+	}
+
+	/*
+	 * Remove at most limit archived notes of a user, returning how many were
+	 * removed. Used, like deleteNotesByUserId, to erase a user.
+	 */
+
+	public int deleteArchivedNotesByUserId(String userId, int limit) {
+		Session session = sessionFactory.getCurrentSession();
+		List<Integer> noteIds = new ArrayList<Integer>();
+		for (Object noteId : session.getNamedNativeQuery(ArchivedNote.IDS_BY_USER_FOR_UPDATE)
+				.addSynchronizedEntityClass(ArchivedNote.class).setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setParameter("limit", limit, StandardBasicTypes.INTEGER).getResultList()) {
+			noteIds.add(((Number) noteId).intValue());
+		}
+		if (noteIds.isEmpty()) {
+			return 0;
+		}
+		NoteRevisionStore.remove(session, noteIds);
+		ChangeOutboxStore.archivedNotes(session, noteIds, ChangeRecord.DELETE);
+		return session.getNamedNativeQuery(ArchivedNote.DELETE_BY_IDS).addSynchronizedEntityClass(ArchivedNote.class)
+				.setParameterList("noteIds", noteIds, StandardBasicTypes.INTEGER).executeUpdate();
+	}
+
+	/*
+	 * The revisions of the content of a note, newest first, without content.
+	 */
+
+	public List<NoteRevision> getNoteRevisions(int noteId) {
+		return NoteRevisionStore.list(sessionFactory.getCurrentSession(), noteId);
+	}
+
+	/*
+	 * A revision of the content of a note with the content it had, or null if
+	 * there is no such revision.
+	 */
+
+	public NoteRevision getNoteRevision(int noteId, int revision) {
+		return NoteRevisionStore.rebuild(sessionFactory.getCurrentSession(), noteId, revision);
+	}
+
+	/*
+	 * The note counters of a user (see NoteCounterStore), read from the counter
+	 * rows of the user only.
+	 */
+
+	public Map<String, Object> getNoteCounters(String userId) {
+		return NoteCounterStore.read(sessionFactory.getCurrentSession(), userId);
+	}
+
+	/*
+	 * The users having notes, archived notes or counters.
+	 */
+
+	public List<String> getCountedUserIds() {
+		List<String> userIds = new ArrayList<String>();
+		for (Object userId : sessionFactory.getCurrentSession().getNamedNativeQuery(Note.COUNTED_USER_IDS)
+				.addSynchronizedEntityClass(Note.class).addSynchronizedEntityClass(ArchivedNote.class)
+				.addSynchronizedQuerySpace("NoteCounter").getResultList()) {
+			userIds.add((String) userId);
+		}
+		return userIds;
+	}
+
+	/*
+	 * Rebuild the note counters of a user from the notes, to repair counters
+	 * that drifted.
+	 */
+
+	public void recomputeNoteCounters(String userId) {
+		NoteCounterStore.recompute(sessionFactory.getCurrentSession(), userId);
+	}
+
+	/*
+	 * The statement followed by the conditions of the criteria, with all
+	 * parameters but those of the statement itself set.
+	 */
+	private Query<?> criteriaQuery(String statement, String userId, NoteCriteria criteria) {
+		return criteriaQuery(statement, userId, criteria, "");
+	}
+
+	private Query<?> criteriaQuery(String statement, String userId, NoteCriteria criteria, String suffix) {
+		StringBuilder hql = new StringBuilder(statement);
+		if (criteria.getNoteStatus() != null) {
+			hql.append(" and noteStatus = :noteStatus");
+		}
+		if (criteria.getCategoryId() != null) {
+			hql.append(" and category.categoryId = :categoryId");
+		}
+		if (criteria.getReminderId() != null) {
+			hql.append(" and reminder.reminderId = :reminderId");
+		}
+		if (criteria.getCreatedBefore() != null) {
+			hql.append(" and noteCreatedAt < :createdBefore");
+		}
+		hql.append(suffix);
+		Query<?> query = sessionFactory.getCurrentSession().createQuery(hql.toString());
+		query.setParameter("userId", userId, StandardBasicTypes.STRING);
+		if (criteria.getNoteStatus() != null) {
+			query.setParameter("noteStatus", criteria.getNoteStatus(), StandardBasicTypes.STRING);
+		}
+		if (criteria.getCategoryId() != null) {
+			query.setParameter("categoryId", criteria.getCategoryId(), StandardBasicTypes.INTEGER);
+		}
+		if (criteria.getReminderId() != null) {
+			query.setParameter("reminderId", criteria.getReminderId(), StandardBasicTypes.INTEGER);
+		}
+		if (criteria.getCreatedBefore() != null) {
+			query.setParameter("createdBefore", criteria.getCreatedBefore(), StandardBasicTypes.TIMESTAMP);
+		}
+		return query;
+	}
+
+	/*
+	 * Remove the notes with the ids of the given rows, giving their body
+	 * references back and removing their revisions first, recording their
+	 * removal in the outbox if asked to (purged notes were recorded when they
+	 * were deleted). Returns how many were removed.
+	 */
+	private int removeNotes(List<?> rows, boolean recorded) {
+		List<Integer> noteIds = new ArrayList<Integer>();
+		for (Object row : rows) {
+			noteIds.add(((Number) row).intValue());
+		}
+		if (noteIds.isEmpty()) {
+			return 0;
+		}
+		Session session = sessionFactory.getCurrentSession();
+		NoteBodyStore.release(session, noteIds);
+		NoteRevisionStore.remove(session, noteIds);
+		if (recorded) {
+			ChangeOutboxStore.notes(session, noteIds, ChangeRecord.DELETE);
+		}
+		return session.getNamedNativeQuery(Note.DELETE_BY_IDS).addSynchronizedEntityClass(Note.class)
+				.setParameterList("noteIds", noteIds, StandardBasicTypes.INTEGER).executeUpdate();
+	}
+
+	/*
+	 * Locks the row of a note, deleted or not, until the end of the transaction
+	 * and returns created_by, note_status, category_id, reminder_id, content_hash
+	 * and deleted; null if there is no such row.
+	 */
+	private Object[] lockRow(int noteId) {
+		List<?> rows = sessionFactory.getCurrentSession().getNamedNativeQuery(Note.LOCK_ROW)
+				.addSynchronizedEntityClass(Note.class).setParameter("noteId", noteId, StandardBasicTypes.INTEGER)
+				.getResultList();
+		return rows.isEmpty() ? null : (Object[]) rows.get(0);
+	}
+
+	private static boolean isDeleted(Object[] row) {
+		Object deleted = row[5];
+		return Boolean.TRUE.equals(deleted) || (deleted instanceof Number && ((Number) deleted).intValue() != 0);
+	}
+
+	/*
+	 * Whether the user has archived notes. The count comes from the query cache,
+	 * which drops it whenever the NoteArchive table is written.
+	 */
+	private boolean hasArchivedNotes(String userId) {
+		return sessionFactory.getCurrentSession().createNamedQuery(ArchivedNote.COUNT_BY_USER, Long.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).setCacheable(true)
+				.setCacheRegion("noteArchive.countByUser").getSingleResult() > 0;
+	}
 
+	private EntityGraph<?> graph(String name) {
+		return sessionFactory.getCurrentSession().getEntityGraph(name);
 	}
 
 }
@@ -0,0 +1,137 @@
+package com.stackroute.keepnote.dao;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.SharedSessionContract;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteContentType;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.TextDelta;
+
+/*
+ * Writes and rebuilds the revisions of note contents, for the DAOs writing
+ * notes. A revision is recorded in the transaction changing the content, while
+ * the note row is locked (or new), so the revision numbers of a note never
+ * collide. The delta of a revision is taken from the content the note had
+ * before, which is the content of its previous revision.
+ */
+final class NoteRevisionStore {
+
+	private NoteRevisionStore() {
+	}
+
+	/*
+	 * Records the next revision of a note whose content went from oldContent to
+	 * newContent. It is a snapshot when it is the first revision of the note, when
+	 * snapshotInterval revisions were written since the last snapshot, when either
+	 * content is null or when the delta would not be smaller than the content. A
+	 * note written before its revisions were kept has none yet: its oldContent is
+	 * first recorded as a snapshot, so the content it had is not lost.
+	 */
+	static void record(SharedSessionContract session, int noteId, String oldContent, String newContent,
+			int snapshotInterval) {
+		Object[] last = (Object[]) session.getNamedNativeQuery(NoteRevision.LAST)
+				.addSynchronizedEntityClass(NoteRevision.class).setParameter("noteId", noteId, StandardBasicTypes.INTEGER)
+				.getSingleResult();
+		Integer lastRevision = last[0] == null ? null : ((Number) last[0]).intValue();
+		Integer lastSnapshot = last[1] == null ? null : ((Number) last[1]).intValue();
+		if (lastRevision == null && oldContent != null) {
+			insert(session, noteId, 1, true, oldContent);
+			lastRevision = 1;
+			lastSnapshot = 1;
+		}
+		int revision = lastRevision == null ? 1 : lastRevision + 1;
+		String payload = newContent;
+		boolean snapshot = lastRevision == null || lastSnapshot == null || oldContent == null || newContent == null
+				|| revision - lastSnapshot >= snapshotInterval;
+		if (!snapshot) {
+			String delta = TextDelta.diff(oldContent, newContent);
+			snapshot = delta.length() >= newContent.length();
+			payload = snapshot ? newContent : delta;
+		}
+		insert(session, noteId, revision, snapshot, payload);
+	}
+
+	/*
+	 * Records the first revision, a snapshot of their content, of new notes with
+	 * one multi-row insert. Unlike record it does not look for the last revision:
+	 * new notes have none.
+	 */
+	static void recordFirst(SharedSessionContract session, List<Note> notes) {
+		if (notes.isEmpty()) {
+			return;
+		}
+		StringBuilder sql = new StringBuilder(
+				"INSERT INTO NoteRevision (note_id, revision, snapshot, payload, created_at) VALUES ");
+		for (int i = 0; i < notes.size(); i++) {
+			sql.append(i == 0 ? "" : ", ").append("(?, 1, ?, ?, ?)");
+		}
+		NativeQuery<?> query = session.createNativeQuery(sql.toString()).addSynchronizedEntityClass(NoteRevision.class);
+		Type payloadType = NoteContentType.of(session);
+		Date createdAt = new Date();
+		int position = 1;
+		for (Note note : notes) {
+			query.setParameter(position++, note.getNoteId(), StandardBasicTypes.INTEGER)
+					.setParameter(position++, true, StandardBasicTypes.BOOLEAN)
+					.setParameter(position++, note.getNoteContent(), payloadType)
+					.setParameter(position++, createdAt, StandardBasicTypes.TIMESTAMP);
+		}
+		query.executeUpdate();
+	}
+
+	private static void insert(SharedSessionContract session, int noteId, int revision, boolean snapshot,
+			String payload) {
+		session.getNamedNativeQuery(NoteRevision.INSERT).addSynchronizedEntityClass(NoteRevision.class)
+				.setParameter("noteId", noteId, StandardBasicTypes.INTEGER)
+				.setParameter("revision", revision, StandardBasicTypes.INTEGER)
+				.setParameter("snapshot", snapshot, StandardBasicTypes.BOOLEAN)
+				.setParameter("payload", payload, NoteContentType.of(session))
+				.setParameter("createdAt", new Date(), StandardBasicTypes.TIMESTAMP).executeUpdate();
+	}
+
+	/*
+	 * The revisions of a note, newest first, without their content.
+	 */
+	static List<NoteRevision> list(Session session, int noteId) {
+		return session.createNamedQuery(NoteRevision.BY_NOTE, NoteRevision.class)
+				.setParameter("noteId", noteId, StandardBasicTypes.INTEGER).setReadOnly(true).getResultList();
+	}
+
+	/*
+	 * A revision of a note with its content rebuilt, or null if there is no such
+	 * revision. Reads the revisions from the last snapshot up to it.
+	 */
+	static NoteRevision rebuild(Session session, int noteId, int revision) {
+		List<NoteRevision> chain = session.createNamedQuery(NoteRevision.CHAIN, NoteRevision.class)
+				.setParameter("noteId", noteId, StandardBasicTypes.INTEGER)
+				.setParameter("revision", revision, StandardBasicTypes.INTEGER).setReadOnly(true).getResultList();
+		if (chain.isEmpty() || chain.get(chain.size() - 1).getRevision() != revision) {
+			return null;
+		}
+		String content = null;
+		for (NoteRevision link : chain) {
+			content = link.isSnapshot() ? link.getPayload() : TextDelta.apply(content, link.getPayload());
+		}
+		NoteRevision result = chain.get(chain.size() - 1);
+		result.setContent(content);
+		return result;
+	}
+
+	/*
+	 * Removes the revisions of the given notes.
+	 */
+	static void remove(Session session, Collection<Integer> noteIds) {
+		if (!noteIds.isEmpty()) {
+			session.getNamedNativeQuery(NoteRevision.DELETE_BY_NOTES).addSynchronizedEntityClass(NoteRevision.class)
+					.setParameterList("noteIds", noteIds, StandardBasicTypes.INTEGER).executeUpdate();
+		}
+	}
+
+}
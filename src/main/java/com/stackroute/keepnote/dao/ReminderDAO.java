@@ -1,5 +1,6 @@
 package com.stackroute.keepnote.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
@@ -20,4 +21,8 @@ public interface ReminderDAO {
 	public Reminder getReminderById(int reminderId) throws ReminderNotFoundException;
 
 	public List<Reminder> getAllReminderByUserId(String userId);
+
+	public List<Integer> getExistingReminderIds(Collection<Integer> reminderIds);
+
+	public int deleteRemindersByUserId(String userId, int limit);
 }
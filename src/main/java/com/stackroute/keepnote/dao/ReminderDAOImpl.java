@@ -1,8 +1,18 @@
 package com.stackroute.keepnote.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.type.StandardBasicTypes;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.model.ChangeRecord;
 import com.stackroute.keepnote.model.Reminder;
 
 /*
@@ -15,15 +25,19 @@ import com.stackroute.keepnote.model.Reminder;
  * 					context.  
  * */
 
+@Repository
+@Transactional
 public class ReminderDAOImpl implements ReminderDAO {
 	
 	/*
 	 * Autowiring should be implemented for the SessionFactory.(Use
 	 * constructor-based autowiring.
 	 */
+	private SessionFactory sessionFactory;
 
-	public ReminderDAOImpl(SessionFactory sessionFactory) {
-
+	@Autowired
+	public ReminderDAOImpl(@Qualifier("shardedSessionFactory") SessionFactory sessionFactory) {
+		this.sessionFactory = sessionFactory;
 	}
 
 	/*
@@ -31,16 +45,24 @@ public class ReminderDAOImpl implements ReminderDAO {
 	 */
 
 	public boolean createReminder(Reminder reminder) {
-		return false;
+		sessionFactory.getCurrentSession().save(reminder);
+		sessionFactory.getCurrentSession().flush();
+		ChangeOutboxStore.reminder(sessionFactory.getCurrentSession(), reminder.getReminderId(), ChangeRecord.CREATE);
+		return true;
 
 	}
 	
 	/*
-	 * Update an existing reminder
+	 * Update an existing reminder. The row is written with a single UPDATE guarded by
+	 * the version the reminder carries; if the row has another version (or is gone)
+	 * an OptimisticLockException is thrown and nothing is written.
 	 */
 
 	public boolean updateReminder(Reminder reminder) {
-		return false;
+		sessionFactory.getCurrentSession().update(reminder);
+		sessionFactory.getCurrentSession().flush();
+		ChangeOutboxStore.reminder(sessionFactory.getCurrentSession(), reminder.getReminderId(), ChangeRecord.UPDATE);
+		return true;
 
 	}
 
@@ -49,26 +71,75 @@ public class ReminderDAOImpl implements ReminderDAO {
 	 */
 	
 	public boolean deleteReminder(int reminderId) {
-		return false;
+		Reminder reminder = sessionFactory.getCurrentSession().get(Reminder.class, reminderId);
+		if (reminder == null) {
+			return false;
+		}
+		ChangeOutboxStore.reminder(sessionFactory.getCurrentSession(), reminderId, ChangeRecord.DELETE);
+		sessionFactory.getCurrentSession().delete(reminder);
+		sessionFactory.getCurrentSession().flush();
+		return true;
 
 	}
 
 	/*
-	 * Retrieve details of a specific reminder
+	 * Retrieve details of a specific reminder. Served from the "reminder" second
+	 * level cache region when the row has been read before.
 	 */
 	
 	public Reminder getReminderById(int reminderId) throws ReminderNotFoundException {
-		return null;
+		Reminder reminder = sessionFactory.getCurrentSession().get(Reminder.class, reminderId);
+		if (reminder == null) {
+			throw new ReminderNotFoundException("Reminder Not Found");
+		}
+		return reminder;
 
 	}
 
 	/*
-	 * Retrieve details of all reminders by userId
+	 * Retrieve which of the given reminderIds exist, with one query, to check the
+	 * references of many notes at once.
+	 */
+	public List<Integer> getExistingReminderIds(Collection<Integer> reminderIds) {
+		if (reminderIds.isEmpty()) {
+			return new ArrayList<Integer>();
+		}
+		return sessionFactory.getCurrentSession().createNamedQuery(Reminder.EXISTING_IDS, Integer.class)
+				.setParameterList("reminderIds", reminderIds, StandardBasicTypes.INTEGER).getResultList();
+	}
+
+	/*
+	 * Retrieve details of all reminders by userId. The result is kept in the
+	 * query cache, which Hibernate invalidates whenever the Reminder table is
+	 * written.
 	 */
 	
 	public List<Reminder> getAllReminderByUserId(String userId) {
-		return null;
+		return sessionFactory.getCurrentSession()
+				.createNamedQuery(Reminder.BY_USER, Reminder.class)
+				.setParameter("userId", userId, StandardBasicTypes.STRING).setCacheable(true).setCacheRegion("reminder.byUser")
+				.getResultList();
+
+	}
 
+	/*
+	 * Remove at most limit reminders of a user, returning how many were removed.
+	 * Only the "reminder" cache regions are invalidated.
+	 */
+	public int deleteRemindersByUserId(String userId, int limit) {
+		Session session = sessionFactory.getCurrentSession();
+		List<Integer> reminderIds = new ArrayList<Integer>();
+		for (Object reminderId : session.getNamedNativeQuery(Reminder.IDS_BY_USER_FOR_UPDATE)
+				.addSynchronizedEntityClass(Reminder.class).setParameter("userId", userId, StandardBasicTypes.STRING)
+				.setParameter("limit", limit, StandardBasicTypes.INTEGER).getResultList()) {
+			reminderIds.add(((Number) reminderId).intValue());
+		}
+		if (reminderIds.isEmpty()) {
+			return 0;
+		}
+		ChangeOutboxStore.reminders(session, reminderIds, ChangeRecord.DELETE);
+		return session.getNamedNativeQuery(Reminder.DELETE_BY_IDS).addSynchronizedEntityClass(Reminder.class)
+				.setParameterList("reminderIds", reminderIds, StandardBasicTypes.INTEGER).executeUpdate();
 	}
 
 }
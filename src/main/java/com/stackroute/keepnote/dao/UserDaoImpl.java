@@ -1,6 +1,10 @@
 package com.stackroute.keepnote.dao;
 
 import org.hibernate.SessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
 
@@ -13,15 +17,19 @@ import com.stackroute.keepnote.model.User;
  * 					transaction. The database transaction happens inside the scope of a persistence 
  * 					context.  
  * */
+@Repository
+@Transactional("directoryTransactionManager")
 public class UserDaoImpl implements UserDAO {
 
 	/*
 	 * Autowiring should be implemented for the SessionFactory.(Use
 	 * constructor-based autowiring.
 	 */
+	private SessionFactory sessionFactory;
 
+	@Autowired
 	public UserDaoImpl(SessionFactory sessionFactory) {
-
+		this.sessionFactory = sessionFactory;
 	}
 
 	/*
@@ -29,8 +37,9 @@ public class UserDaoImpl implements UserDAO {
 	 */
 
 	public boolean registerUser(User user) {
-
-		return false;
+		sessionFactory.getCurrentSession().save(user);
+		sessionFactory.getCurrentSession().flush();
+		return true;
 	}
 
 	/*
@@ -38,8 +47,9 @@ public class UserDaoImpl implements UserDAO {
 	 */
 
 	public boolean updateUser(User user) {
-
-		return false;
+		sessionFactory.getCurrentSession().merge(user);
+		sessionFactory.getCurrentSession().flush();
+		return true;
 
 	}
 
@@ -47,8 +57,7 @@ public class UserDaoImpl implements UserDAO {
 	 * Retrieve details of a specific user
 	 */
 	public User getUserById(String UserId) {
-
-		return null;
+		return sessionFactory.getCurrentSession().get(User.class, UserId);
 	}
 
 	/*
@@ -56,7 +65,11 @@ public class UserDaoImpl implements UserDAO {
 	 */
 
 	public boolean validateUser(String userId, String password) throws UserNotFoundException {
-		return false;
+		User user = getUserById(userId);
+		if (user == null) {
+			throw new UserNotFoundException("User Not Found");
+		}
+		return password != null && password.equals(user.getUserPassword());
 
 	}
 
@@ -64,7 +77,13 @@ public class UserDaoImpl implements UserDAO {
 	 * Remove an existing user
 	 */
 	public boolean deleteUser(String userId) {
-		return false;
+		User user = getUserById(userId);
+		if (user == null) {
+			return false;
+		}
+		sessionFactory.getCurrentSession().delete(user);
+		sessionFactory.getCurrentSession().flush();
+		return true;
 
 	}
 
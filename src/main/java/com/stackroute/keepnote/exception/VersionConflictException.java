@@ -0,0 +1,15 @@
+package com.stackroute.keepnote.exception;
+
+public class VersionConflictException extends Exception {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	public VersionConflictException(String message) {
+		super(message);
+
+	}
+
+}
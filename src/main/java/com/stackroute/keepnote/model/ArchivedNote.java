@@ -0,0 +1,217 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.ManyToOne;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+
+import org.hibernate.annotations.Type;
+
+/*
+ * A note moved to cold storage (the NoteArchive table) by the archiver. It has
+ * the columns of Note, with the content stored like a note body (compressed
+ * when large); NoteDAO turns it back into a Note when it is read and moves it
+ * back to the Note table when it is changed. The row keeps the note's
+ * version, so entity tags stay valid.
+ */
+@Entity(name = "NoteArchive")
+@NamedQueries({
+	@NamedQuery(name = ArchivedNote.BY_USER, query = "from NoteArchive where createdBy = :userId"),
+	@NamedQuery(name = ArchivedNote.SUMMARIES_BY_USER, query = "select new com.stackroute.keepnote.model.NoteSummary("
+			+ "noteId, noteTitle, noteStatus, noteCreatedAt) from NoteArchive where createdBy = :userId"),
+	@NamedQuery(name = ArchivedNote.FIRST_PAGE_BY_USER, query = "from NoteArchive where createdBy = :userId"
+			+ " and noteCreatedAt is not null order by noteCreatedAt desc, noteId desc"),
+	@NamedQuery(name = ArchivedNote.PAGE_BY_USER_AFTER, query = "from NoteArchive where createdBy = :userId"
+			+ " and (noteCreatedAt < :createdAt or (noteCreatedAt = :createdAt and noteId < :noteId))"
+			+ " order by noteCreatedAt desc, noteId desc"),
+	@NamedQuery(name = ArchivedNote.UNDATED_PAGE_BY_USER_AFTER, query = "from NoteArchive where createdBy = :userId"
+			+ " and noteCreatedAt is null and noteId < :noteId order by noteId desc"),
+	@NamedQuery(name = ArchivedNote.COUNT_BY_USER, query = "select count(*) from NoteArchive"
+			+ " where createdBy = :userId"),
+	@NamedQuery(name = ArchivedNote.EXPORT_BY_USER, query = "from NoteArchive where createdBy = :userId"
+			+ " order by noteCreatedAt, noteId"),
+	@NamedQuery(name = ArchivedNote.WITH_REFERENCES, query = "from NoteArchive a left join fetch a.category"
+			+ " left join fetch a.reminder where a.noteId = :noteId")
+})
+@NamedNativeQueries({
+	@NamedNativeQuery(name = ArchivedNote.IDS_BY_USER_FOR_UPDATE, query = "SELECT note_id FROM NoteArchive"
+			+ " WHERE created_by = :userId LIMIT :limit FOR UPDATE"),
+	@NamedNativeQuery(name = ArchivedNote.DELETE_BY_IDS, query = "DELETE FROM NoteArchive WHERE note_id IN (:noteIds)"),
+	@NamedNativeQuery(name = ArchivedNote.COUNTS_BY_USER_FOR_UPDATE, query = "SELECT created_by, note_status,"
+			+ " category_id, reminder_id, COUNT(*) FROM NoteArchive WHERE created_by = :userId"
+			+ " GROUP BY created_by, note_status, category_id, reminder_id FOR UPDATE")
+})
+public class ArchivedNote {
+
+	/*
+	 * Named queries of NoteDAO on the archive. As for Note, the HQL ones are
+	 * compiled when the SessionFactory is built and the native ones are not.
+	 */
+	public static final String BY_USER = "NoteArchive.byUser";
+	public static final String SUMMARIES_BY_USER = "NoteArchive.summariesByUser";
+	public static final String FIRST_PAGE_BY_USER = "NoteArchive.firstPageByUser";
+	public static final String PAGE_BY_USER_AFTER = "NoteArchive.pageByUserAfter";
+	public static final String UNDATED_PAGE_BY_USER_AFTER = "NoteArchive.undatedPageByUserAfter";
+	public static final String COUNT_BY_USER = "NoteArchive.countByUser";
+	public static final String EXPORT_BY_USER = "NoteArchive.exportByUser";
+	public static final String WITH_REFERENCES = "NoteArchive.withReferences";
+	public static final String IDS_BY_USER_FOR_UPDATE = "NoteArchive.idsByUserForUpdate";
+	public static final String DELETE_BY_IDS = "NoteArchive.deleteByIds";
+	public static final String COUNTS_BY_USER_FOR_UPDATE = "NoteArchive.countsByUserForUpdate";
+
+	@Id
+	@Column(name = "note_id")
+	private int noteId;
+
+	@Column(name = "note_title")
+	private String noteTitle;
+
+	@Type(type = NoteContentType.NAME)
+	@Column(name = "note_content", columnDefinition = "MEDIUMBLOB")
+	private String noteContent;
+
+	@Column(name = "note_status")
+	private String noteStatus;
+
+	@Column(name = "note_creation_date")
+	private Date noteCreatedAt;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "category_id")
+	private Category category;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name = "reminder_id")
+	private Reminder reminder;
+
+	@Column(name = "created_by", nullable = false)
+	private String createdBy;
+
+	@Column(name = "version", nullable = false)
+	private int version;
+
+	@Column(name = "archived_at", nullable = false)
+	private Date archivedAt;
+
+	public ArchivedNote() {
+
+	}
+
+	public ArchivedNote(Note note, Date archivedAt) {
+		this.noteId = note.getNoteId();
+		this.noteTitle = note.getNoteTitle();
+		this.noteContent = note.getNoteContent();
+		this.noteStatus = note.getNoteStatus();
+		this.noteCreatedAt = note.getNoteCreatedAt();
+		this.category = note.getCategory();
+		this.reminder = note.getReminder();
+		this.createdBy = note.getCreatedBy();
+		this.version = note.getVersion();
+		this.archivedAt = archivedAt;
+	}
+
+	/*
+	 * The archived note as a (new, unmanaged) Note.
+	 */
+	public Note toNote() {
+		Note note = new Note(noteId, noteTitle, noteContent, noteStatus, noteCreatedAt, category, reminder, createdBy);
+		note.setVersion(version);
+		return note;
+	}
+
+	public int getNoteId() {
+		return noteId;
+	}
+
+	public void setNoteId(int noteId) {
+		this.noteId = noteId;
+	}
+
+	public String getNoteTitle() {
+		return noteTitle;
+	}
+
+	public void setNoteTitle(String noteTitle) {
+		this.noteTitle = noteTitle;
+	}
+
+	public String getNoteContent() {
+		return noteContent;
+	}
+
+	public void setNoteContent(String noteContent) {
+		this.noteContent = noteContent;
+	}
+
+	public String getNoteStatus() {
+		return noteStatus;
+	}
+
+	public void setNoteStatus(String noteStatus) {
+		this.noteStatus = noteStatus;
+	}
+
+	public Date getNoteCreatedAt() {
+		return noteCreatedAt;
+	}
+
+	public void setNoteCreatedAt(Date noteCreatedAt) {
+		this.noteCreatedAt = noteCreatedAt;
+	}
+
+	public Category getCategory() {
+		return category;
+	}
+
+	public void setCategory(Category category) {
+		this.category = category;
+	}
+
+	public Reminder getReminder() {
+		return reminder;
+	}
+
+	public void setReminder(Reminder reminder) {
+		this.reminder = reminder;
+	}
+
+	public String getCreatedBy() {
+		return createdBy;
+	}
+
+	public void setCreatedBy(String createdBy) {
+		this.createdBy = createdBy;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public Date getArchivedAt() {
+		return archivedAt;
+	}
+
+	public void setArchivedAt(Date archivedAt) {
+		this.archivedAt = archivedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "ArchivedNote [noteId=" + noteId + ", noteTitle=" + noteTitle + ", noteStatus=" + noteStatus
+				+ ", noteCreatedAt=" + noteCreatedAt + ", createdBy=" + createdBy + ", version=" + version
+				+ ", archivedAt=" + archivedAt + "]";
+	}
+
+}
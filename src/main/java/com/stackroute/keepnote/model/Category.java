@@ -3,10 +3,20 @@ package com.stackroute.keepnote.model;
 import java.util.Date;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -18,7 +28,32 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  * Java object to recreate it as a table in your database.
  */
 @Entity(name ="Category")
+@Cacheable
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "category")
+@NamedQueries({
+	@NamedQuery(name = Category.BY_USER, query = "from Category where categoryCreatedBy = :userId"),
+	@NamedQuery(name = Category.IDS, query = "select c.categoryId from Category c"),
+	@NamedQuery(name = Category.EXISTING_IDS, query = "select c.categoryId from Category c"
+			+ " where c.categoryId in (:categoryIds)")
+})
+@NamedNativeQueries({
+	@NamedNativeQuery(name = Category.IDS_BY_USER_FOR_UPDATE, query = "SELECT category_id FROM Category"
+			+ " WHERE category_creator = :userId LIMIT :limit FOR UPDATE"),
+	@NamedNativeQuery(name = Category.DELETE_BY_IDS, query = "DELETE FROM Category WHERE category_id IN (:categoryIds)")
+})
 public class Category {
+
+	/*
+	 * Named queries of the category DAOs. The HQL ones are compiled when the
+	 * SessionFactory is built, the native ones (FOR UPDATE, DELETE) are not.
+	 */
+	public static final String BY_USER = "Category.byUser";
+	public static final String IDS = "Category.ids";
+	public static final String EXISTING_IDS = "Category.existingIds";
+	public static final String IDS_BY_USER_FOR_UPDATE = "Category.idsByUserForUpdate";
+	public static final String DELETE_BY_IDS = "Category.deleteByIds";
+
 	/*
 	 * This class should have six fields
 	 * (categoryId,categoryName,categoryDescription,
@@ -46,6 +81,10 @@ public class Category {
 	
 	@Column(name="category_creation_date")
 	private Date categoryCreationDate;
+
+	@Version
+	@Column(name="version")
+	private int version;
 	
 	@OneToMany(mappedBy="category")
 	@JsonIgnore
@@ -122,4 +161,12 @@ public class Category {
      this.notes = notes;
 	}
 
-}
\ No newline at end of file
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+}
@@ -0,0 +1,188 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQuery;
+import javax.persistence.Transient;
+
+import org.hibernate.annotations.Immutable;
+
+/*
+ * A change of a note, category or reminder, appended to the ChangeOutbox table
+ * by the DAOs in the transaction making the change, and published by the
+ * change relay to the consumers following changes (search, analytics,
+ * notifications). A record only names what changed: consumers read the
+ * current state themselves. The change id grows with every record of a
+ * database, so records of one entity are published in the order they were
+ * made; when sharded the relay adds the shard, the change id being unique per
+ * shard only. Records may be published more than once, consumers drop those
+ * whose (shard, change id) they have seen.
+ */
+@Entity(name = "ChangeOutbox")
+@Immutable
+@NamedQuery(name = ChangeRecord.OLDEST, query = "from ChangeOutbox order by changeId")
+@NamedNativeQueries({
+	@NamedNativeQuery(name = ChangeRecord.APPEND_NOTES, query = "INSERT INTO ChangeOutbox"
+			+ " (entity_type, entity_id, operation, user_id, version, changed_at)"
+			+ " SELECT 'Note', note_id, :operation, created_by, version, :changedAt FROM Note"
+			+ " WHERE note_id IN (:ids) ORDER BY note_id"),
+	@NamedNativeQuery(name = ChangeRecord.APPEND_ARCHIVED_NOTES, query = "INSERT INTO ChangeOutbox"
+			+ " (entity_type, entity_id, operation, user_id, version, changed_at)"
+			+ " SELECT 'Note', note_id, :operation, created_by, version, :changedAt FROM NoteArchive"
+			+ " WHERE note_id IN (:ids) ORDER BY note_id"),
+	@NamedNativeQuery(name = ChangeRecord.APPEND_CATEGORIES, query = "INSERT INTO ChangeOutbox"
+			+ " (entity_type, entity_id, operation, user_id, version, changed_at)"
+			+ " SELECT 'Category', category_id, :operation, category_creator, version, :changedAt FROM Category"
+			+ " WHERE category_id IN (:ids) ORDER BY category_id"),
+	@NamedNativeQuery(name = ChangeRecord.APPEND_REMINDERS, query = "INSERT INTO ChangeOutbox"
+			+ " (entity_type, entity_id, operation, user_id, version, changed_at)"
+			+ " SELECT 'Reminder', reminder_id, :operation, reminder_creator, version, :changedAt FROM Reminder"
+			+ " WHERE reminder_id IN (:ids) ORDER BY reminder_id"),
+	@NamedNativeQuery(name = ChangeRecord.DELETE_BY_IDS, query = "DELETE FROM ChangeOutbox"
+			+ " WHERE change_id IN (:changeIds)")
+})
+public class ChangeRecord {
+
+	public static final String NOTE = "Note";
+	public static final String CATEGORY = "Category";
+	public static final String REMINDER = "Reminder";
+
+	public static final String CREATE = "CREATE";
+	public static final String UPDATE = "UPDATE";
+	public static final String DELETE = "DELETE";
+
+	/*
+	 * Named queries of the outbox. The APPEND ones copy the owner and version
+	 * from the rows changed, so they run after the change is flushed (before it
+	 * for a removal).
+	 */
+	public static final String OLDEST = "ChangeOutbox.oldest";
+	public static final String APPEND_NOTES = "ChangeOutbox.appendNotes";
+	public static final String APPEND_ARCHIVED_NOTES = "ChangeOutbox.appendArchivedNotes";
+	public static final String APPEND_CATEGORIES = "ChangeOutbox.appendCategories";
+	public static final String APPEND_REMINDERS = "ChangeOutbox.appendReminders";
+	public static final String DELETE_BY_IDS = "ChangeOutbox.deleteByIds";
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "change_id")
+	private long changeId;
+
+	@Column(name = "entity_type", nullable = false)
+	private String entityType;
+
+	@Column(name = "entity_id", nullable = false)
+	private int entityId;
+
+	@Column(name = "operation", nullable = false)
+	private String operation;
+
+	@Column(name = "user_id")
+	private String userId;
+
+	@Column(name = "version", nullable = false)
+	private int version;
+
+	@Column(name = "changed_at", nullable = false)
+	private Date changedAt;
+
+	/*
+	 * The shard the record was read from, null when not sharded.
+	 */
+	@Transient
+	private Integer shard;
+
+	public ChangeRecord() {
+
+	}
+
+	public ChangeRecord(long changeId, String entityType, int entityId, String operation, String userId,
+			int version, Date changedAt) {
+		this.changeId = changeId;
+		this.entityType = entityType;
+		this.entityId = entityId;
+		this.operation = operation;
+		this.userId = userId;
+		this.version = version;
+		this.changedAt = changedAt;
+	}
+
+	public long getChangeId() {
+		return changeId;
+	}
+
+	public void setChangeId(long changeId) {
+		this.changeId = changeId;
+	}
+
+	public String getEntityType() {
+		return entityType;
+	}
+
+	public void setEntityType(String entityType) {
+		this.entityType = entityType;
+	}
+
+	public int getEntityId() {
+		return entityId;
+	}
+
+	public void setEntityId(int entityId) {
+		this.entityId = entityId;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	public void setOperation(String operation) {
+		this.operation = operation;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public Date getChangedAt() {
+		return changedAt;
+	}
+
+	public void setChangedAt(Date changedAt) {
+		this.changedAt = changedAt;
+	}
+
+	public Integer getShard() {
+		return shard;
+	}
+
+	public void setShard(Integer shard) {
+		this.shard = shard;
+	}
+
+	@Override
+	public String toString() {
+		return "ChangeRecord [changeId=" + changeId + ", entityType=" + entityType + ", entityId=" + entityId
+				+ ", operation=" + operation + ", userId=" + userId + ", version=" + version + ", changedAt="
+				+ changedAt + ", shard=" + shard + "]";
+	}
+
+}
@@ -0,0 +1,125 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+/*
+ * The class "EraseJob" tracks the background removal of a user and of all the
+ * notes, categories and reminders they created. The counters are updated after
+ * every chunk, so polling the job shows its progress.
+ */
+public class EraseJob {
+
+	public static final String PENDING = "PENDING";
+	public static final String RUNNING = "RUNNING";
+	public static final String COMPLETED = "COMPLETED";
+	public static final String FAILED = "FAILED";
+
+	private String jobId;
+
+	private String userId;
+
+	private volatile String status;
+
+	private volatile int notesDeleted;
+
+	private volatile int categoriesDeleted;
+
+	private volatile int remindersDeleted;
+
+	private Date submittedAt;
+
+	private volatile Date finishedAt;
+
+	private volatile String error;
+
+	public EraseJob() {
+
+	}
+
+	public EraseJob(String jobId, String userId) {
+		this.jobId = jobId;
+		this.userId = userId;
+		this.status = PENDING;
+		this.submittedAt = new Date();
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public String getUserId() {
+		return userId;
+	}
+
+	public void setUserId(String userId) {
+		this.userId = userId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public int getNotesDeleted() {
+		return notesDeleted;
+	}
+
+	public void setNotesDeleted(int notesDeleted) {
+		this.notesDeleted = notesDeleted;
+	}
+
+	public int getCategoriesDeleted() {
+		return categoriesDeleted;
+	}
+
+	public void setCategoriesDeleted(int categoriesDeleted) {
+		this.categoriesDeleted = categoriesDeleted;
+	}
+
+	public int getRemindersDeleted() {
+		return remindersDeleted;
+	}
+
+	public void setRemindersDeleted(int remindersDeleted) {
+		this.remindersDeleted = remindersDeleted;
+	}
+
+	public Date getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public void setSubmittedAt(Date submittedAt) {
+		this.submittedAt = submittedAt;
+	}
+
+	public Date getFinishedAt() {
+		return finishedAt;
+	}
+
+	public void setFinishedAt(Date finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		return "EraseJob [jobId=" + jobId + ", userId=" + userId + ", status=" + status + ", notesDeleted="
+				+ notesDeleted + ", categoriesDeleted=" + categoriesDeleted + ", remindersDeleted="
+				+ remindersDeleted + ", submittedAt=" + submittedAt + ", finishedAt=" + finishedAt + ", error="
+				+ error + "]";
+	}
+}
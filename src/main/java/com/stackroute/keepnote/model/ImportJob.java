@@ -0,0 +1,207 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * The class "ImportJob" tracks the bulk import of a file of categories,
+ * reminders and notes. The counters are updated after every committed chunk,
+ * so polling the job shows its progress and throughput.
+ */
+public class ImportJob {
+
+	public static final String PENDING = "PENDING";
+	public static final String RUNNING = "RUNNING";
+	public static final String COMPLETED = "COMPLETED";
+	public static final String FAILED = "FAILED";
+
+	public static final int MAX_REJECTED_LINES = 100;
+
+	private String jobId;
+
+	private String fileName;
+
+	private String submittedBy;
+
+	private volatile String status;
+
+	private volatile long linesSkipped;
+
+	private volatile long linesRead;
+
+	private volatile long categoriesImported;
+
+	private volatile long remindersImported;
+
+	private volatile long notesImported;
+
+	private volatile long linesRejected;
+
+	/*
+	 * Numbers of the first MAX_REJECTED_LINES rejected lines of the file.
+	 */
+	private List<Long> rejectedLines = new CopyOnWriteArrayList<Long>();
+
+	private Date submittedAt;
+
+	private volatile Date startedAt;
+
+	private volatile Date finishedAt;
+
+	private volatile String error;
+
+	public ImportJob() {
+
+	}
+
+	public ImportJob(String jobId, String fileName, String submittedBy) {
+		this.jobId = jobId;
+		this.fileName = fileName;
+		this.submittedBy = submittedBy;
+		this.status = PENDING;
+		this.submittedAt = new Date();
+	}
+
+	/*
+	 * Rows written per second since the job started (lines skipped because of a
+	 * checkpoint are not counted).
+	 */
+	public long getRowsPerSecond() {
+		if (startedAt == null) {
+			return 0;
+		}
+		long end = finishedAt == null ? System.currentTimeMillis() : finishedAt.getTime();
+		long millis = Math.max(1, end - startedAt.getTime());
+		return (categoriesImported + remindersImported + notesImported) * 1000 / millis;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public void setFileName(String fileName) {
+		this.fileName = fileName;
+	}
+
+	public String getSubmittedBy() {
+		return submittedBy;
+	}
+
+	public void setSubmittedBy(String submittedBy) {
+		this.submittedBy = submittedBy;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public long getLinesSkipped() {
+		return linesSkipped;
+	}
+
+	public void setLinesSkipped(long linesSkipped) {
+		this.linesSkipped = linesSkipped;
+	}
+
+	public long getLinesRead() {
+		return linesRead;
+	}
+
+	public void setLinesRead(long linesRead) {
+		this.linesRead = linesRead;
+	}
+
+	public long getCategoriesImported() {
+		return categoriesImported;
+	}
+
+	public void setCategoriesImported(long categoriesImported) {
+		this.categoriesImported = categoriesImported;
+	}
+
+	public long getRemindersImported() {
+		return remindersImported;
+	}
+
+	public void setRemindersImported(long remindersImported) {
+		this.remindersImported = remindersImported;
+	}
+
+	public long getNotesImported() {
+		return notesImported;
+	}
+
+	public void setNotesImported(long notesImported) {
+		this.notesImported = notesImported;
+	}
+
+	public long getLinesRejected() {
+		return linesRejected;
+	}
+
+	public void setLinesRejected(long linesRejected) {
+		this.linesRejected = linesRejected;
+	}
+
+	public List<Long> getRejectedLines() {
+		return rejectedLines;
+	}
+
+	public void setRejectedLines(List<Long> rejectedLines) {
+		this.rejectedLines = rejectedLines;
+	}
+
+	public Date getSubmittedAt() {
+		return submittedAt;
+	}
+
+	public void setSubmittedAt(Date submittedAt) {
+		this.submittedAt = submittedAt;
+	}
+
+	public Date getStartedAt() {
+		return startedAt;
+	}
+
+	public void setStartedAt(Date startedAt) {
+		this.startedAt = startedAt;
+	}
+
+	public Date getFinishedAt() {
+		return finishedAt;
+	}
+
+	public void setFinishedAt(Date finishedAt) {
+		this.finishedAt = finishedAt;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		return "ImportJob [jobId=" + jobId + ", fileName=" + fileName + ", submittedBy=" + submittedBy + ", status="
+				+ status + ", linesSkipped=" + linesSkipped + ", linesRead=" + linesRead + ", categoriesImported="
+				+ categoriesImported + ", remindersImported=" + remindersImported + ", notesImported="
+				+ notesImported + ", linesRejected=" + linesRejected + ", rejectedLines=" + rejectedLines
+				+ ", submittedAt=" + submittedAt + ", startedAt=" + startedAt + ", finishedAt=" + finishedAt + ", error=" + error + "]";
+	}
+}
@@ -1,12 +1,32 @@
 package com.stackroute.keepnote.model;
 
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.PostLoad;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Where;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
 
 
 /*
@@ -17,8 +37,93 @@ import javax.persistence.ManyToOne;
  * Java object to recreate it as a table in your database.
  */
 @Entity(name="Note")
+@Where(clause = "deleted = 0")
+@NamedEntityGraphs({
+	@NamedEntityGraph(name = Note.SUMMARY_GRAPH, attributeNodes = { @NamedAttributeNode("body") }),
+	@NamedEntityGraph(name = Note.FULL_GRAPH, attributeNodes = { @NamedAttributeNode("body"),
+			@NamedAttributeNode("category"), @NamedAttributeNode("reminder") })
+})
+@NamedQueries({
+	@NamedQuery(name = Note.MARK_DELETED, query = "update Note set deleted = true, deletedAt = :deletedAt,"
+			+ " version = version + 1 where noteId = :noteId"),
+	@NamedQuery(name = Note.BY_USER, query = "from Note where createdBy = :userId order by noteCreatedAt desc"),
+	@NamedQuery(name = Note.SUMMARIES_BY_USER, query = "select new com.stackroute.keepnote.model.NoteSummary("
+			+ "noteId, noteTitle, noteStatus, noteCreatedAt) from Note where createdBy = :userId"
+			+ " order by noteCreatedAt desc"),
+	@NamedQuery(name = Note.FIRST_PAGE_BY_USER, query = "from Note where createdBy = :userId"
+			+ " and noteCreatedAt is not null order by noteCreatedAt desc, noteId desc"),
+	@NamedQuery(name = Note.PAGE_BY_USER_AFTER, query = "from Note where createdBy = :userId"
+			+ " and (noteCreatedAt < :createdAt or (noteCreatedAt = :createdAt and noteId < :noteId))"
+			+ " order by noteCreatedAt desc, noteId desc"),
+	@NamedQuery(name = Note.UNDATED_PAGE_BY_USER_AFTER, query = "from Note where createdBy = :userId"
+			+ " and noteCreatedAt is null and noteId < :noteId order by noteId desc"),
+	@NamedQuery(name = Note.EXPORT_BY_USER, query = "from Note where createdBy = :userId"
+			+ " order by noteCreatedAt, noteId")
+})
+@NamedNativeQueries({
+	@NamedNativeQuery(name = Note.RESTORE, query = "UPDATE Note SET deleted = 0, deleted_at = NULL,"
+			+ " version = version + 1 WHERE note_id = :noteId"),
+	@NamedNativeQuery(name = Note.LOCK_ROW, query = "SELECT created_by, note_status, category_id, reminder_id,"
+			+ " content_hash, deleted FROM Note WHERE note_id = :noteId FOR UPDATE"),
+	@NamedNativeQuery(name = Note.CURRENT_STATE, query = "SELECT created_by, note_status, category_id, reminder_id,"
+			+ " content_hash, deleted, version FROM Note WHERE note_id = :noteId"),
+	@NamedNativeQuery(name = Note.IDS_BY_USER_FOR_UPDATE, query = "SELECT note_id FROM Note"
+			+ " WHERE created_by = :userId LIMIT :limit FOR UPDATE"),
+	@NamedNativeQuery(name = Note.PURGEABLE_IDS_FOR_UPDATE, query = "SELECT note_id FROM Note"
+			+ " WHERE deleted = 1 AND deleted_at < :deletedBefore LIMIT :limit FOR UPDATE"),
+	@NamedNativeQuery(name = Note.DELETE_BY_IDS, query = "DELETE FROM Note WHERE note_id IN (:noteIds)"),
+	@NamedNativeQuery(name = Note.EXISTING_IDS, query = "SELECT note_id FROM Note WHERE note_id IN (:noteIds)"
+			+ " UNION SELECT note_id FROM NoteArchive WHERE note_id IN (:noteIds)"),
+	@NamedNativeQuery(name = Note.COUNTED_USER_IDS, query = "SELECT created_by FROM Note WHERE created_by IS NOT NULL"
+			+ " UNION SELECT created_by FROM NoteArchive WHERE created_by IS NOT NULL"
+			+ " UNION SELECT user_id FROM NoteCounter"),
+	@NamedNativeQuery(name = Note.COUNTS_BY_USER_FOR_UPDATE, query = "SELECT created_by, note_status,"
+			+ " category_id, reminder_id, COUNT(*) FROM Note WHERE deleted = 0 AND created_by = :userId"
+			+ " GROUP BY created_by, note_status, category_id, reminder_id FOR UPDATE")
+})
 public class Note {
 
+	/*
+	 * Entity graphs picked by NoteDAO: the summary graph leaves category and
+	 * reminder as lazy proxies (list views), the full graph fetches both in the
+	 * same select (single note views and updates). Both fetch the body holding
+	 * the content.
+	 */
+	public static final String SUMMARY_GRAPH = "Note.summary";
+	public static final String FULL_GRAPH = "Note.full";
+
+	/*
+	 * Named queries of NoteDAO. The HQL ones are compiled when the
+	 * SessionFactory is built, which fails on one not matching the mappings; the
+	 * native ones are only parsed for their parameters, the database checks
+	 * their SQL when they first run. The queries of the tables without an entity
+	 * of their own are in UnmappedTableQueries.
+	 */
+	public static final String MARK_DELETED = "Note.markDeleted";
+	public static final String BY_USER = "Note.byUser";
+	public static final String SUMMARIES_BY_USER = "Note.summariesByUser";
+	public static final String FIRST_PAGE_BY_USER = "Note.firstPageByUser";
+	public static final String PAGE_BY_USER_AFTER = "Note.pageByUserAfter";
+	public static final String UNDATED_PAGE_BY_USER_AFTER = "Note.undatedPageByUserAfter";
+	public static final String EXPORT_BY_USER = "Note.exportByUser";
+	public static final String RESTORE = "Note.restore";
+	public static final String LOCK_ROW = "Note.lockRow";
+	public static final String CURRENT_STATE = "Note.currentState";
+	public static final String IDS_BY_USER_FOR_UPDATE = "Note.idsByUserForUpdate";
+	public static final String PURGEABLE_IDS_FOR_UPDATE = "Note.purgeableIdsForUpdate";
+	public static final String DELETE_BY_IDS = "Note.deleteByIds";
+	public static final String EXISTING_IDS = "Note.existingIds";
+	public static final String COUNTED_USER_IDS = "Note.countedUserIds";
+	public static final String COUNTS_BY_USER_FOR_UPDATE = "Note.countsByUserForUpdate";
+
+	/*
+	 * Properties a client may change with a partial update (PATCH). The others
+	 * are set by the service (createdBy, noteCreatedAt, version) or identify the
+	 * note.
+	 */
+	public static final Set<String> PATCHABLE_PROPERTIES = Collections.unmodifiableSet(
+			new HashSet<String>(Arrays.asList("noteTitle", "noteContent", "noteStatus", "category", "reminder")));
+
 	@Id
 	@Column(name="note_id")
 	private int noteId;
@@ -26,8 +131,18 @@ public class Note {
 	@Column(name="note_title")   
 	private String noteTitle;
 	
-	@Column(name="note_content")   
+	/*
+	 * The content is kept in a NoteBody shared by all notes with the same text;
+	 * it is copied from the body when the note is loaded and NoteDAO points the
+	 * note at the body of its content when it is written.
+	 */
+	@Transient
 	private String noteContent;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name="content_hash", columnDefinition = "CHAR(64)")
+	@JsonIgnore
+	private NoteBody body;
 	
 	@Column(name="note_status")   
 	private String noteStatus;
@@ -35,17 +150,43 @@ public class Note {
 	@Column(name="note_creation_date")   
 	private Date noteCreatedAt;
 	
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name="category_id")
 	private Category category;
 	
-	@ManyToOne
+	@ManyToOne(fetch = FetchType.LAZY)
+	@JoinColumn(name="reminder_id")
 	private Reminder reminder;
 	
+	@Column(name="created_by", nullable=false)
 	private String createdBy;
+
+	@Version
+	@Column(name="version")
+	private int version;
+
+	/*
+	 * Deleted notes are kept as tombstones until purged, so they can be restored.
+	 * The @Where above hides them from every load and query of Note; only the
+	 * statements of NoteDAO (delete, restore, purge, erase) change the flag,
+	 * never an update of the entity.
+	 */
+	@JsonIgnore
+	@Column(name="deleted", nullable=false, updatable=false)
+	private boolean deleted;
+
+	@JsonIgnore
+	@Column(name="deleted_at", updatable=false)
+	private Date deletedAt;
 	
 	public Note() {
 
 	}
+
+	@PostLoad
+	private void loadContent() {
+		noteContent = body == null ? null : body.getContent();
+	}
 	public Note(int noteId, String noteTitle, String noteContent, String noteStatus, Date noteCreatedAt, Category category, Reminder reminder, String createdBy) {
 		super();
 		this.noteId = noteId;
@@ -131,4 +272,37 @@ public class Note {
 		this.createdBy = createdBy;
 
 	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
+	public NoteBody getBody() {
+		return body;
+	}
+
+	public void setBody(NoteBody body) {
+		this.body = body;
+	}
+
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(boolean deleted) {
+		this.deleted = deleted;
+	}
+
+	public Date getDeletedAt() {
+		return deletedAt;
+	}
+
+	public void setDeletedAt(Date deletedAt) {
+		this.deletedAt = deletedAt;
+	}
+
 }
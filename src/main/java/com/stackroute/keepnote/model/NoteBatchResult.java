@@ -0,0 +1,57 @@
+package com.stackroute.keepnote.model;
+
+/*
+ * The class "NoteBatchResult" reports what happened to one note of a bulk
+ * creation request: the noteId, whether it was created and, if not, why.
+ */
+public class NoteBatchResult {
+
+	public static final String CREATED = "CREATED";
+	public static final String CONFLICT = "CONFLICT";
+	public static final String INVALID = "INVALID";
+
+	private int noteId;
+
+	private String status;
+
+	private String message;
+
+	public NoteBatchResult() {
+
+	}
+
+	public NoteBatchResult(int noteId, String status, String message) {
+		this.noteId = noteId;
+		this.status = status;
+		this.message = message;
+	}
+
+	public int getNoteId() {
+		return noteId;
+	}
+
+	public void setNoteId(int noteId) {
+		this.noteId = noteId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public void setStatus(String status) {
+		this.status = status;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(String message) {
+		this.message = message;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteBatchResult [noteId=" + noteId + ", status=" + status + ", message=" + message + "]";
+	}
+}
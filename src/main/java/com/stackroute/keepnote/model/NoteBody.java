@@ -0,0 +1,115 @@
+package com.stackroute.keepnote.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Type;
+
+/*
+ * The content of notes, stored once per distinct text and shared by every note
+ * with that content. A body is keyed by the SHA-256 of its UTF-8 text and
+ * counts the notes referring to it; NoteDAO keeps the count up to date and the
+ * purger removes bodies no longer referenced. The content never changes: a
+ * note whose content changes refers to another body.
+ */
+@Entity(name = "NoteBody")
+@Immutable
+@NamedNativeQueries({
+	@NamedNativeQuery(name = NoteBody.ADD_REFERENCES, query = "UPDATE NoteBody SET ref_count = ref_count + :refs"
+			+ " WHERE content_hash = :hash"),
+	@NamedNativeQuery(name = NoteBody.INSERT, query = "INSERT INTO NoteBody (content_hash, content, ref_count)"
+			+ " VALUES (:hash, :content, 1) ON DUPLICATE KEY UPDATE ref_count = ref_count + 1"),
+	@NamedNativeQuery(name = NoteBody.LOCK_EXISTING, query = "SELECT content_hash FROM NoteBody"
+			+ " WHERE content_hash IN (:hashes) FOR UPDATE"),
+	@NamedNativeQuery(name = NoteBody.REFERENCES_OF_NOTES, query = "SELECT content_hash, COUNT(*) FROM Note"
+			+ " WHERE note_id IN (:noteIds) AND content_hash IS NOT NULL GROUP BY content_hash"),
+	@NamedNativeQuery(name = NoteBody.PURGE_UNREFERENCED, query = "DELETE FROM NoteBody WHERE ref_count <= 0"
+			+ " LIMIT :limit")
+})
+public class NoteBody {
+
+	/*
+	 * Named queries keeping the reference counts, parsed once when the
+	 * SessionFactory is built. ADD_REFERENCES takes a negative count to release.
+	 * LOCK_EXISTING keeps the bodies found from being purged until the end of the
+	 * transaction.
+	 */
+	public static final String ADD_REFERENCES = "NoteBody.addReferences";
+	public static final String INSERT = "NoteBody.insert";
+	public static final String LOCK_EXISTING = "NoteBody.lockExisting";
+	public static final String REFERENCES_OF_NOTES = "NoteBody.referencesOfNotes";
+	public static final String PURGE_UNREFERENCED = "NoteBody.purgeUnreferenced";
+
+	@Id
+	@Column(name = "content_hash", columnDefinition = "CHAR(64)")
+	private String contentHash;
+
+	@Type(type = NoteContentType.NAME)
+	@Column(name = "content", columnDefinition = "MEDIUMBLOB")
+	private String content;
+
+	@Column(name = "ref_count", nullable = false)
+	private int refCount;
+
+	public NoteBody() {
+
+	}
+
+	public NoteBody(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	/*
+	 * The key of the body holding the given content, as 64 lowercase hex digits.
+	 */
+	public static String hashOf(String content) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hash = new StringBuilder(64);
+			for (byte b : digest) {
+				hash.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hash.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	public String getContentHash() {
+		return contentHash;
+	}
+
+	public void setContentHash(String contentHash) {
+		this.contentHash = contentHash;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public void setContent(String content) {
+		this.content = content;
+	}
+
+	public int getRefCount() {
+		return refCount;
+	}
+
+	public void setRefCount(int refCount) {
+		this.refCount = refCount;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteBody [contentHash=" + contentHash + ", refCount=" + refCount + "]";
+	}
+
+}
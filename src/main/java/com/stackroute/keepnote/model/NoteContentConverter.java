@@ -0,0 +1,139 @@
+package com.stackroute.keepnote.model;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.persistence.AttributeConverter;
+
+import com.stackroute.keepnote.config.ContentCompressionMetrics;
+
+/*
+ * Stores note content as bytes starting with a format marker: FORMAT_PLAIN
+ * followed by the UTF-8 text, or FORMAT_DEFLATE followed by the text deflated
+ * at the fastest level. Values of at least the compression threshold (in UTF-8
+ * bytes) are compressed, unless that does not make them smaller. A value with
+ * neither marker is a row written before the column held bytes, read as plain
+ * UTF-8 (text never starts with these control characters).
+ *
+ * Used for the note bodies, the revisions and the archived notes. Hibernate
+ * does not hand its converters any settings, so the mappings go through
+ * NoteContentType, registered on each SessionFactory with the converter built
+ * from the configuration. The converter made with no arguments uses the
+ * default threshold and metrics nobody reads, which is enough to decode.
+ */
+public class NoteContentConverter implements AttributeConverter<String, byte[]> {
+
+	public static final byte FORMAT_PLAIN = 0;
+	public static final byte FORMAT_DEFLATE = 1;
+
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final int compressionThreshold;
+
+	private final ContentCompressionMetrics metrics;
+
+	public NoteContentConverter() {
+		this(DEFAULT_COMPRESSION_THRESHOLD, new ContentCompressionMetrics());
+	}
+
+	public NoteContentConverter(int compressionThreshold, ContentCompressionMetrics metrics) {
+		this.compressionThreshold = compressionThreshold;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public byte[] convertToDatabaseColumn(String content) {
+		if (content == null) {
+			return null;
+		}
+		byte[] text = content.getBytes(StandardCharsets.UTF_8);
+		if (text.length < compressionThreshold) {
+			metrics.recordPlain();
+			return withMarker(FORMAT_PLAIN, text, text.length);
+		}
+		long start = cpuTime();
+		byte[] compressed = deflate(text);
+		long cpuNanos = cpuTime() - start;
+		if (compressed.length >= text.length) {
+			metrics.recordIncompressible(cpuNanos);
+			return withMarker(FORMAT_PLAIN, text, text.length);
+		}
+		metrics.recordCompression(text.length, compressed.length + 1, cpuNanos);
+		return withMarker(FORMAT_DEFLATE, compressed, compressed.length);
+	}
+
+	@Override
+	public String convertToEntityAttribute(byte[] data) {
+		if (data == null) {
+			return null;
+		}
+		if (data.length == 0 || (data[0] != FORMAT_PLAIN && data[0] != FORMAT_DEFLATE)) {
+			return new String(data, StandardCharsets.UTF_8);
+		}
+		if (data[0] == FORMAT_PLAIN) {
+			return new String(data, 1, data.length - 1, StandardCharsets.UTF_8);
+		}
+		long start = cpuTime();
+		String content = new String(inflate(data), StandardCharsets.UTF_8);
+		metrics.recordDecompression(cpuTime() - start);
+		return content;
+	}
+
+	private static byte[] withMarker(byte format, byte[] bytes, int length) {
+		byte[] data = new byte[length + 1];
+		data[0] = format;
+		System.arraycopy(bytes, 0, data, 1, length);
+		return data;
+	}
+
+	private static byte[] deflate(byte[] text) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(text);
+			deflater.finish();
+			byte[] buffer = new byte[text.length];
+			int length = 0;
+			while (!deflater.finished() && length < buffer.length) {
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			// not finished means it did not fit in the size of the text: incompressible
+			return deflater.finished() ? Arrays.copyOf(buffer, length) : text;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static byte[] inflate(byte[] data) {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data, 1, data.length - 1);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+			byte[] buffer = new byte[8192];
+			while (!inflater.finished()) {
+				int length = inflater.inflate(buffer);
+				if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IllegalStateException("Truncated note content");
+				}
+				out.write(buffer, 0, length);
+			}
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupt note content", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static long cpuTime() {
+		return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+	}
+
+}
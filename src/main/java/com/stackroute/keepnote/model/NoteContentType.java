@@ -0,0 +1,107 @@
+package com.stackroute.keepnote.model;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+
+import org.hibernate.SharedSessionContract;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.type.Type;
+import org.hibernate.usertype.UserType;
+
+/*
+ * The Hibernate type of the note content columns (@Type(type = NAME)), storing
+ * the text through a NoteContentConverter. Unlike an attribute converter,
+ * which Hibernate instantiates itself, the type is registered on each
+ * SessionFactory with the converter built from the configuration, so the
+ * compression threshold and metrics are those of the application. The native
+ * statements writing content bind it with the type of their session (of).
+ */
+public class NoteContentType implements UserType {
+
+	public static final String NAME = "note_content";
+
+	private static final int[] SQL_TYPES = { Types.VARBINARY };
+
+	private final NoteContentConverter converter;
+
+	public NoteContentType(NoteContentConverter converter) {
+		this.converter = converter;
+	}
+
+	/*
+	 * The type registered on the SessionFactory of the session.
+	 */
+	public static Type of(SharedSessionContract session) {
+		Type type = ((SharedSessionContractImplementor) session).getFactory().getTypeResolver().basic(NAME);
+		if (type == null) {
+			throw new IllegalStateException("The " + NAME + " type is not registered on the SessionFactory");
+		}
+		return type;
+	}
+
+	@Override
+	public int[] sqlTypes() {
+		return SQL_TYPES;
+	}
+
+	@Override
+	public Class<?> returnedClass() {
+		return String.class;
+	}
+
+	@Override
+	public boolean equals(Object x, Object y) {
+		return Objects.equals(x, y);
+	}
+
+	@Override
+	public int hashCode(Object x) {
+		return Objects.hashCode(x);
+	}
+
+	@Override
+	public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner)
+			throws SQLException {
+		return converter.convertToEntityAttribute(rs.getBytes(names[0]));
+	}
+
+	@Override
+	public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session)
+			throws SQLException {
+		if (value == null) {
+			st.setNull(index, Types.VARBINARY);
+		} else {
+			st.setBytes(index, converter.convertToDatabaseColumn((String) value));
+		}
+	}
+
+	@Override
+	public Object deepCopy(Object value) {
+		return value;
+	}
+
+	@Override
+	public boolean isMutable() {
+		return false;
+	}
+
+	@Override
+	public Serializable disassemble(Object value) {
+		return (Serializable) value;
+	}
+
+	@Override
+	public Object assemble(Serializable cached, Object owner) {
+		return cached;
+	}
+
+	@Override
+	public Object replace(Object original, Object target, Object owner) {
+		return original;
+	}
+
+}
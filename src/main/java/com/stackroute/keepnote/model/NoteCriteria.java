@@ -0,0 +1,75 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+/*
+ * The class "NoteCriteria" selects notes of a user for a bulk operation. Every
+ * field that is set narrows the selection; fields left null are ignored.
+ */
+public class NoteCriteria {
+
+	private String noteStatus;
+
+	private Integer categoryId;
+
+	private Integer reminderId;
+
+	private Date createdBefore;
+
+	public NoteCriteria() {
+
+	}
+
+	public NoteCriteria(String noteStatus, Integer categoryId, Integer reminderId, Date createdBefore) {
+		this.noteStatus = noteStatus;
+		this.categoryId = categoryId;
+		this.reminderId = reminderId;
+		this.createdBefore = createdBefore;
+	}
+
+	/*
+	 * True when no criterion is set, i.e. the criteria would select every note of
+	 * the user.
+	 */
+	public boolean isEmpty() {
+		return noteStatus == null && categoryId == null && reminderId == null && createdBefore == null;
+	}
+
+	public String getNoteStatus() {
+		return noteStatus;
+	}
+
+	public void setNoteStatus(String noteStatus) {
+		this.noteStatus = noteStatus;
+	}
+
+	public Integer getCategoryId() {
+		return categoryId;
+	}
+
+	public void setCategoryId(Integer categoryId) {
+		this.categoryId = categoryId;
+	}
+
+	public Integer getReminderId() {
+		return reminderId;
+	}
+
+	public void setReminderId(Integer reminderId) {
+		this.reminderId = reminderId;
+	}
+
+	public Date getCreatedBefore() {
+		return createdBefore;
+	}
+
+	public void setCreatedBefore(Date createdBefore) {
+		this.createdBefore = createdBefore;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteCriteria [noteStatus=" + noteStatus + ", categoryId=" + categoryId + ", reminderId=" + reminderId
+				+ ", createdBefore=" + createdBefore + "]";
+	}
+}
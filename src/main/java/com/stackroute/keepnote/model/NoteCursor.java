@@ -0,0 +1,86 @@
+package com.stackroute.keepnote.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Objects;
+
+/*
+ * The class "NoteCursor" is the position of the last note returned in a page of
+ * notes, i.e. its (noteCreatedAt, noteId) pair. It is handed to clients as an
+ * opaque url-safe token, so they can ask for the next page without knowing how
+ * the position is represented. Notes without a creation date come after all
+ * dated notes, by noteId, so a cursor past such a note has a null date.
+ */
+public class NoteCursor {
+
+	private Date noteCreatedAt;
+
+	private int noteId;
+
+	public NoteCursor(Date noteCreatedAt, int noteId) {
+		this.noteCreatedAt = noteCreatedAt;
+		this.noteId = noteId;
+	}
+
+	/*
+	 * Build the cursor pointing just past the given note.
+	 */
+	public static NoteCursor of(Note note) {
+		return new NoteCursor(note.getNoteCreatedAt(), note.getNoteId());
+	}
+
+	/*
+	 * Decode a token produced by encode(). A malformed token is rejected with an
+	 * IllegalArgumentException.
+	 */
+	public static NoteCursor decode(String token) {
+		try {
+			String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+			int separator = value.indexOf(':');
+			Date noteCreatedAt = separator == 0 ? null : new Date(Long.parseLong(value.substring(0, separator)));
+			return new NoteCursor(noteCreatedAt, Integer.parseInt(value.substring(separator + 1)));
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + token, e);
+		}
+	}
+
+	/*
+	 * The token is "millis:noteId", with nothing before the colon when the note
+	 * has no creation date.
+	 */
+	public String encode() {
+		String value = (noteCreatedAt == null ? "" : String.valueOf(noteCreatedAt.getTime())) + ":" + noteId;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public Date getNoteCreatedAt() {
+		return noteCreatedAt;
+	}
+
+	public int getNoteId() {
+		return noteId;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof NoteCursor)) {
+			return false;
+		}
+		NoteCursor other = (NoteCursor) obj;
+		return noteId == other.noteId && Objects.equals(noteCreatedAt, other.noteCreatedAt);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(noteCreatedAt, noteId);
+	}
+
+	@Override
+	public String toString() {
+		return "NoteCursor [noteCreatedAt=" + noteCreatedAt + ", noteId=" + noteId + "]";
+	}
+}
@@ -0,0 +1,155 @@
+package com.stackroute.keepnote.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Transient;
+
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.Type;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/*
+ * A revision of the content of a note. Every revision.snapshot_interval-th
+ * revision of a note is a snapshot holding the full content; the others hold
+ * a TextDelta from the revision before them. The content of a revision is
+ * rebuilt from the last snapshot up to it, so at most snapshot_interval - 1
+ * deltas are applied. Revisions are written by NoteDAO and never change.
+ */
+@Entity(name = "NoteRevision")
+@IdClass(NoteRevision.Key.class)
+@Immutable
+@NamedQueries({
+	@NamedQuery(name = NoteRevision.BY_NOTE, query = "from NoteRevision where noteId = :noteId"
+			+ " order by revision desc"),
+	@NamedQuery(name = NoteRevision.CHAIN, query = "from NoteRevision r where r.noteId = :noteId"
+			+ " and r.revision <= :revision and r.revision >= (select max(s.revision) from NoteRevision s"
+			+ " where s.noteId = :noteId and s.snapshot = true and s.revision <= :revision)"
+			+ " order by r.revision")
+})
+@NamedNativeQueries({
+	@NamedNativeQuery(name = NoteRevision.LAST, query = "SELECT MAX(revision),"
+			+ " MAX(CASE WHEN snapshot = 1 THEN revision END) FROM NoteRevision WHERE note_id = :noteId"),
+	@NamedNativeQuery(name = NoteRevision.INSERT, query = "INSERT INTO NoteRevision"
+			+ " (note_id, revision, snapshot, payload, created_at)"
+			+ " VALUES (:noteId, :revision, :snapshot, :payload, :createdAt)"),
+	@NamedNativeQuery(name = NoteRevision.DELETE_BY_NOTES, query = "DELETE FROM NoteRevision"
+			+ " WHERE note_id IN (:noteIds)")
+})
+public class NoteRevision {
+
+	/*
+	 * Named queries of the revisions; only BY_NOTE and CHAIN (HQL) are compiled
+	 * when the SessionFactory is built. LAST returns the last revision and the last snapshot of a note, CHAIN the
+	 * revisions from the last snapshot up to a revision.
+	 */
+	public static final String BY_NOTE = "NoteRevision.byNote";
+	public static final String CHAIN = "NoteRevision.chain";
+	public static final String LAST = "NoteRevision.last";
+	public static final String INSERT = "NoteRevision.insert";
+	public static final String DELETE_BY_NOTES = "NoteRevision.deleteByNotes";
+
+	@Id
+	@Column(name = "note_id")
+	private int noteId;
+
+	@Id
+	@Column(name = "revision")
+	private int revision;
+
+	@Column(name = "snapshot", nullable = false)
+	private boolean snapshot;
+
+	@JsonIgnore
+	@Type(type = NoteContentType.NAME)
+	@Column(name = "payload", columnDefinition = "MEDIUMBLOB")
+	private String payload;
+
+	@Column(name = "created_at", nullable = false)
+	private Date createdAt;
+
+	/*
+	 * The rebuilt content, only set on a revision fetched on its own.
+	 */
+	@Transient
+	private String content;
+
+	public NoteRevision() {
+
+	}
+
+	public int getNoteId() {
+		return noteId;
+	}
+
+	public int getRevision() {
+		return revision;
+	}
+
+	public boolean isSnapshot() {
+		return snapshot;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public Date getCreatedAt() {
+		return createdAt;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public void setContent(String content) {
+		this.content = content;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteRevision [noteId=" + noteId + ", revision=" + revision + ", snapshot=" + snapshot
+				+ ", createdAt=" + createdAt + "]";
+	}
+
+	/*
+	 * The identifier of a revision: the note and the revision number.
+	 */
+	public static class Key implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private int noteId;
+
+		private int revision;
+
+		public Key() {
+
+		}
+
+		public Key(int noteId, int revision) {
+			this.noteId = noteId;
+			this.revision = revision;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && ((Key) other).noteId == noteId && ((Key) other).revision == revision;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * noteId + revision;
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package com.stackroute.keepnote.model;
+
+import java.util.Date;
+
+/*
+ * The class "NoteSummary" is the read-only projection of a Note used by list
+ * views. It is built directly by a constructor expression in the query, so it
+ * is never a managed entity and the note content is never read.
+ */
+public class NoteSummary {
+
+	private int noteId;
+
+	private String noteTitle;
+
+	private String noteStatus;
+
+	private Date noteCreatedAt;
+
+	public NoteSummary() {
+
+	}
+
+	public NoteSummary(int noteId, String noteTitle, String noteStatus, Date noteCreatedAt) {
+		this.noteId = noteId;
+		this.noteTitle = noteTitle;
+		this.noteStatus = noteStatus;
+		this.noteCreatedAt = noteCreatedAt;
+	}
+
+	public int getNoteId() {
+		return noteId;
+	}
+
+	public void setNoteId(int noteId) {
+		this.noteId = noteId;
+	}
+
+	public String getNoteTitle() {
+		return noteTitle;
+	}
+
+	public void setNoteTitle(String noteTitle) {
+		this.noteTitle = noteTitle;
+	}
+
+	public String getNoteStatus() {
+		return noteStatus;
+	}
+
+	public void setNoteStatus(String noteStatus) {
+		this.noteStatus = noteStatus;
+	}
+
+	public Date getNoteCreatedAt() {
+		return noteCreatedAt;
+	}
+
+	public void setNoteCreatedAt(Date noteCreatedAt) {
+		this.noteCreatedAt = noteCreatedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "NoteSummary [noteId=" + noteId + ", noteTitle=" + noteTitle + ", noteStatus=" + noteStatus
+				+ ", noteCreatedAt=" + noteCreatedAt + "]";
+	}
+}
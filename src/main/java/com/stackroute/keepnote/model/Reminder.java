@@ -3,10 +3,20 @@ package com.stackroute.keepnote.model;
 import java.util.Date;
 import java.util.List;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -18,7 +28,32 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  * Java object to recreate it as a table in your database.
  */
 @Entity(name ="Reminder")
+@Cacheable
+@DynamicUpdate
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "reminder")
+@NamedQueries({
+	@NamedQuery(name = Reminder.BY_USER, query = "from Reminder where reminderCreatedBy = :userId"),
+	@NamedQuery(name = Reminder.IDS, query = "select r.reminderId from Reminder r"),
+	@NamedQuery(name = Reminder.EXISTING_IDS, query = "select r.reminderId from Reminder r"
+			+ " where r.reminderId in (:reminderIds)")
+})
+@NamedNativeQueries({
+	@NamedNativeQuery(name = Reminder.IDS_BY_USER_FOR_UPDATE, query = "SELECT reminder_id FROM Reminder"
+			+ " WHERE reminder_creator = :userId LIMIT :limit FOR UPDATE"),
+	@NamedNativeQuery(name = Reminder.DELETE_BY_IDS, query = "DELETE FROM Reminder WHERE reminder_id IN (:reminderIds)")
+})
 public class Reminder {
+
+	/*
+	 * Named queries of the reminder DAOs: HQL except IDS_BY_USER_FOR_UPDATE and
+	 * DELETE_BY_IDS, which are native SQL and so not checked at startup.
+	 */
+	public static final String BY_USER = "Reminder.byUser";
+	public static final String IDS = "Reminder.ids";
+	public static final String EXISTING_IDS = "Reminder.existingIds";
+	public static final String IDS_BY_USER_FOR_UPDATE = "Reminder.idsByUserForUpdate";
+	public static final String DELETE_BY_IDS = "Reminder.deleteByIds";
+
 	/*
 	 * This class should have seven fields
 	 * (reminderId,reminderName,reminderDescription,reminderType,
@@ -49,6 +84,10 @@ public class Reminder {
 	
 	@Column(name="reminder_creation_date")
 	private Date reminderCreationDate;
+
+	@Version
+	@Column(name="version")
+	private int version;
 	
 	
 	@OneToMany(mappedBy="reminder")
@@ -132,4 +171,12 @@ public class Reminder {
     this.notes = notes;
 	}
 
+	public int getVersion() {
+		return version;
+	}
+
+	public void setVersion(int version) {
+		this.version = version;
+	}
+
 }
@@ -0,0 +1,60 @@
+package com.stackroute.keepnote.model;
+
+/*
+ * A compact edit turning one text into another: the length of the prefix and
+ * of the suffix both texts share, and the text replacing what lies between.
+ * Edits of a note usually touch one place, so the delta is the changed part
+ * only, not the whole content. Encoded as "<prefix>:<suffix>:<text>".
+ */
+public final class TextDelta {
+
+	private TextDelta() {
+	}
+
+	/*
+	 * The delta turning base into target.
+	 */
+	public static String diff(String base, String target) {
+		int max = Math.min(base.length(), target.length());
+		int prefix = 0;
+		while (prefix < max && base.charAt(prefix) == target.charAt(prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < max - prefix
+				&& base.charAt(base.length() - 1 - suffix) == target.charAt(target.length() - 1 - suffix)) {
+			suffix++;
+		}
+		// never split a surrogate pair between the shared and the replaced text
+		if (prefix > 0 && Character.isHighSurrogate(base.charAt(prefix - 1))) {
+			prefix--;
+		}
+		if (suffix > 0 && Character.isLowSurrogate(base.charAt(base.length() - suffix))) {
+			suffix--;
+		}
+		return prefix + ":" + suffix + ":" + target.substring(prefix, target.length() - suffix);
+	}
+
+	/*
+	 * Applies a delta made by diff to its base. Throws IllegalArgumentException if
+	 * the delta is malformed or does not fit the base.
+	 */
+	public static String apply(String base, String delta) {
+		int first = delta.indexOf(':');
+		int second = first < 0 ? -1 : delta.indexOf(':', first + 1);
+		if (second < 0) {
+			throw new IllegalArgumentException("Malformed text delta");
+		}
+		try {
+			int prefix = Integer.parseInt(delta.substring(0, first));
+			int suffix = Integer.parseInt(delta.substring(first + 1, second));
+			if (prefix < 0 || suffix < 0 || prefix + suffix > base.length()) {
+				throw new IllegalArgumentException("Text delta does not fit its base");
+			}
+			return base.substring(0, prefix) + delta.substring(second + 1) + base.substring(base.length() - suffix);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed text delta", e);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.stackroute.keepnote.model;
+
+import javax.persistence.MappedSuperclass;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+
+/*
+ * Named native queries of the tables written along with notes that have no
+ * entity of their own: IdempotencyKey, NoteCounter and ImportCheckpoint.
+ * Hibernate only reads named queries from mapped classes, hence a mapped
+ * superclass no entity extends. Like every native query their SQL is not
+ * checked when the SessionFactory is built, only parsed for its parameters.
+ */
+@MappedSuperclass
+@NamedNativeQueries({
+	@NamedNativeQuery(name = UnmappedTableQueries.ADD_IDEMPOTENCY_KEY, query = "INSERT IGNORE INTO IdempotencyKey"
+			+ " (user_id, idempotency_key, note_id, created_at) VALUES (:userId, :idempotencyKey, :noteId, :createdAt)"),
+	@NamedNativeQuery(name = UnmappedTableQueries.ID_BY_IDEMPOTENCY_KEY, query = "SELECT note_id FROM IdempotencyKey"
+			+ " WHERE user_id = :userId AND idempotency_key = :idempotencyKey"),
+	@NamedNativeQuery(name = UnmappedTableQueries.COUNTERS_BY_USER, query = "SELECT dimension, counter_key, note_count"
+			+ " FROM NoteCounter WHERE user_id = :userId AND note_count <> 0"),
+	@NamedNativeQuery(name = UnmappedTableQueries.DELETE_COUNTERS_BY_USER, query = "DELETE FROM NoteCounter"
+			+ " WHERE user_id = :userId"),
+	@NamedNativeQuery(name = UnmappedTableQueries.IMPORT_CHECKPOINT, query = "SELECT lines_done FROM ImportCheckpoint"
+			+ " WHERE user_id = :userId AND import_name = :importName"),
+	@NamedNativeQuery(name = UnmappedTableQueries.SAVE_IMPORT_CHECKPOINT, query = "INSERT INTO ImportCheckpoint"
+			+ " (user_id, import_name, lines_done, updated_at) VALUES (:userId, :importName, :linesDone, :updatedAt)"
+			+ " ON DUPLICATE KEY UPDATE lines_done = VALUES(lines_done), updated_at = VALUES(updated_at)")
+})
+public abstract class UnmappedTableQueries {
+
+	public static final String ADD_IDEMPOTENCY_KEY = "IdempotencyKey.add";
+	public static final String ID_BY_IDEMPOTENCY_KEY = "IdempotencyKey.noteId";
+	public static final String COUNTERS_BY_USER = "NoteCounter.byUser";
+	public static final String DELETE_COUNTERS_BY_USER = "NoteCounter.deleteByUser";
+	public static final String IMPORT_CHECKPOINT = "ImportCheckpoint.linesDone";
+	public static final String SAVE_IMPORT_CHECKPOINT = "ImportCheckpoint.save";
+
+	private UnmappedTableQueries() {
+	}
+
+}
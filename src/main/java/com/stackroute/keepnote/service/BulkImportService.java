@@ -0,0 +1,11 @@
+package com.stackroute.keepnote.service;
+
+import com.stackroute.keepnote.model.ImportJob;
+
+public interface BulkImportService {
+
+	public ImportJob startImport(String fileName, String submittedBy);
+
+	public ImportJob getImportJob(String jobId);
+
+}
@@ -0,0 +1,282 @@
+package com.stackroute.keepnote.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.dao.BulkImportDAO;
+import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.model.ImportJob;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.Reminder;
+
+/*
+ * Imports files of categories, reminders and notes in the background. The file
+ * has one JSON object per line whose "type" is "category", "reminder" or
+ * "note"; the other properties are those of the entity, with the category and
+ * reminder of a note given as {"categoryId": ..} / {"reminderId": ..}. Lines
+ * are committed in chunks together with a checkpoint of the user and file, so
+ * the same user importing the same file again continues after the last
+ * committed chunk; an import is refused while one of the same user and file
+ * runs on this server, as both would resume from the same checkpoint. Lines
+ * are rejected, counted
+ * and reported by line number, while the rest of their chunk is committed,
+ * when they cannot be read, belong to another user than the one importing,
+ * reuse the id of an existing or earlier imported entity, or are notes
+ * referring to a category or reminder that neither exists nor was imported
+ * earlier in the file. Only files in import.directory can be imported.
+ * Finished jobs are dropped import.job_retention_ms after they finished.
+ */
+@Service
+public class BulkImportServiceImpl implements BulkImportService {
+
+	private BulkImportDAO bulkImportDAO;
+
+	private ObjectMapper objectMapper;
+
+	private TaskExecutor taskExecutor;
+
+	private final Map<String, ImportJob> jobs = new ConcurrentHashMap<String, ImportJob>();
+
+	/* jobId of the job running for each checkpoint, keyed by user and import name */
+	private final Map<List<String>, String> runningImports = new ConcurrentHashMap<List<String>, String>();
+
+	@Value("${import.directory:/var/lib/keepnote/import}")
+	private String importDirectory = "/var/lib/keepnote/import";
+
+	@Value("${import.commit_interval:5000}")
+	private int commitInterval = 5000;
+
+	@Value("${import.job_retention_ms:3600000}")
+	private long jobRetentionMillis = 3600000;
+
+	@Autowired
+	public BulkImportServiceImpl(BulkImportDAO bulkImportDAO, ObjectMapper objectMapper,
+			@Qualifier("backgroundTaskExecutor") TaskExecutor taskExecutor) {
+		this.bulkImportDAO = bulkImportDAO;
+		this.objectMapper = objectMapper;
+		this.taskExecutor = taskExecutor;
+	}
+
+	/*
+	 * This method should be used to start importing a file of the import
+	 * directory. It returns at once with the job, whose progress can be followed
+	 * with getImportJob. Throws IllegalArgumentException if the name points
+	 * outside of the import directory, IllegalStateException if an import of the
+	 * same file by the same user is still running.
+	 */
+	public ImportJob startImport(String fileName, String submittedBy) {
+		pruneJobs();
+		final Path file = resolve(fileName);
+		final ImportJob job = new ImportJob(UUID.randomUUID().toString(), fileName, submittedBy);
+		// the checkpoint is named after the file in the import directory, however the name was written
+		final List<String> checkpoint = Arrays.asList(submittedBy, importDirectory().relativize(file).toString());
+		if (runningImports.putIfAbsent(checkpoint, job.getJobId()) != null) {
+			throw new IllegalStateException("An import of " + fileName + " by " + submittedBy + " is running");
+		}
+		jobs.put(job.getJobId(), job);
+		try {
+			taskExecutor.execute(() -> run(job, file, checkpoint.get(1)));
+		} catch (RuntimeException e) {
+			jobs.remove(job.getJobId());
+			runningImports.remove(checkpoint, job.getJobId());
+			throw e;
+		}
+		return job;
+	}
+
+	/*
+	 * This method should be used to get an import job by jobId, or null if there
+	 * is no such job.
+	 */
+	public ImportJob getImportJob(String jobId) {
+		pruneJobs();
+		return jobs.get(jobId);
+	}
+
+	private void pruneJobs() {
+		long finishedBefore = System.currentTimeMillis() - jobRetentionMillis;
+		jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().getTime() < finishedBefore);
+	}
+
+	private Path importDirectory() {
+		return Paths.get(importDirectory).toAbsolutePath().normalize();
+	}
+
+	private Path resolve(String fileName) {
+		Path directory = importDirectory();
+		Path file = directory.resolve(fileName).normalize();
+		if (!file.startsWith(directory) || file.equals(directory)) {
+			throw new IllegalArgumentException("Not a file of the import directory: " + fileName);
+		}
+		return file;
+	}
+
+	private void run(ImportJob job, Path file, String importName) {
+		job.setStatus(ImportJob.RUNNING);
+		job.setStartedAt(new Date());
+		// every row imported belongs to the user importing, so the whole file goes to their shard
+		ShardContext.setUserId(job.getSubmittedBy());
+		try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			long linesDone = bulkImportDAO.getCheckpoint(job.getSubmittedBy(), importName);
+			for (long skipped = 0; skipped < linesDone && reader.readLine() != null; skipped++) {
+				job.setLinesSkipped(skipped + 1);
+			}
+			Set<Integer> categoryIds = bulkImportDAO.getCategoryIds();
+			Set<Integer> reminderIds = bulkImportDAO.getReminderIds();
+			List<Object> chunk = new ArrayList<Object>(commitInterval);
+			Map<Integer, Long> noteLines = new HashMap<Integer, Long>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				linesDone++;
+				job.setLinesRead(job.getLinesRead() + 1);
+				Object entity = line.trim().isEmpty() ? null : read(line);
+				boolean accepted;
+				if (!ownedBy(entity, job.getSubmittedBy())) {
+					accepted = false;
+				} else if (entity instanceof Category) {
+					accepted = categoryIds.add(((Category) entity).getCategoryId());
+				} else if (entity instanceof Reminder) {
+					accepted = reminderIds.add(((Reminder) entity).getReminderId());
+				} else {
+					Note note = (Note) entity;
+					accepted = resolves(note, categoryIds, reminderIds)
+							&& noteLines.putIfAbsent(note.getNoteId(), linesDone) == null;
+				}
+				if (accepted) {
+					chunk.add(entity);
+				} else {
+					reject(job, linesDone);
+				}
+				if (chunk.size() == commitInterval) {
+					commit(job, importName, chunk, noteLines, linesDone);
+				}
+			}
+			commit(job, importName, chunk, noteLines, linesDone);
+			job.setStatus(ImportJob.COMPLETED);
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace();
+			job.setError(e.getMessage());
+			job.setStatus(ImportJob.FAILED);
+		} finally {
+			ShardContext.clear();
+			job.setFinishedAt(new Date());
+			runningImports.remove(Arrays.asList(job.getSubmittedBy(), importName), job.getJobId());
+		}
+	}
+
+	/*
+	 * Commits the chunk with linesDone as the checkpoint. Notes whose noteId is
+	 * already taken, by an earlier chunk or before the import, are rejected
+	 * first, so one such line does not fail the whole chunk.
+	 */
+	private void commit(ImportJob job, String importName, List<Object> chunk, Map<Integer, Long> noteLines,
+			long linesDone) {
+		Set<Integer> takenIds = new HashSet<Integer>(bulkImportDAO.getExistingNoteIds(noteLines.keySet()));
+		long categories = 0;
+		long reminders = 0;
+		long notes = 0;
+		for (Iterator<Object> entities = chunk.iterator(); entities.hasNext();) {
+			Object entity = entities.next();
+			if (entity instanceof Category) {
+				categories++;
+			} else if (entity instanceof Reminder) {
+				reminders++;
+			} else if (takenIds.contains(((Note) entity).getNoteId())) {
+				reject(job, noteLines.get(((Note) entity).getNoteId()));
+				entities.remove();
+			} else {
+				notes++;
+			}
+		}
+		bulkImportDAO.insertChunk(job.getSubmittedBy(), importName, chunk, linesDone);
+		chunk.clear();
+		noteLines.clear();
+		job.setCategoriesImported(job.getCategoriesImported() + categories);
+		job.setRemindersImported(job.getRemindersImported() + reminders);
+		job.setNotesImported(job.getNotesImported() + notes);
+	}
+
+	/*
+	 * Counts a rejected line; the first ImportJob.MAX_REJECTED_LINES line numbers
+	 * are kept for the job to report.
+	 */
+	private void reject(ImportJob job, long lineNumber) {
+		job.setLinesRejected(job.getLinesRejected() + 1);
+		if (job.getRejectedLines().size() < ImportJob.MAX_REJECTED_LINES) {
+			job.getRejectedLines().add(lineNumber);
+		}
+	}
+
+	/*
+	 * Users only import their own categories, reminders and notes.
+	 */
+	private boolean ownedBy(Object entity, String userId) {
+		if (entity instanceof Category) {
+			return userId.equals(((Category) entity).getCategoryCreatedBy());
+		}
+		if (entity instanceof Reminder) {
+			return userId.equals(((Reminder) entity).getReminderCreatedBy());
+		}
+		return entity instanceof Note && userId.equals(((Note) entity).getCreatedBy());
+	}
+
+	/*
+	 * The entity on a line of the import file, or null if the line cannot be
+	 * read as one.
+	 */
+	private Object read(String line) {
+		try {
+			JsonNode node = objectMapper.readTree(line);
+			if (!(node instanceof ObjectNode)) {
+				return null;
+			}
+			JsonNode type = ((ObjectNode) node).remove("type");
+			if (type == null) {
+				return null;
+			}
+			switch (type.asText()) {
+			case "category":
+				return objectMapper.treeToValue(node, Category.class);
+			case "reminder":
+				return objectMapper.treeToValue(node, Reminder.class);
+			case "note":
+				return objectMapper.treeToValue(node, Note.class);
+			default:
+				return null;
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private boolean resolves(Note note, Set<Integer> categoryIds, Set<Integer> reminderIds) {
+		return (note.getCategory() == null || categoryIds.contains(note.getCategory().getCategoryId()))
+				&& (note.getReminder() == null || reminderIds.contains(note.getReminder().getReminderId()));
+	}
+
+}
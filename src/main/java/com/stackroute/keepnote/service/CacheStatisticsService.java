@@ -0,0 +1,9 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Map;
+
+public interface CacheStatisticsService {
+
+	public Map<String, Map<String, Long>> getCacheStatistics();
+
+}
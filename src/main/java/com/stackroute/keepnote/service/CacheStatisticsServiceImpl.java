@@ -0,0 +1,70 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardRouter;
+
+/*
+ * Reads the hit/miss counters Hibernate keeps for the Category and Reminder
+ * cache regions (hibernate.generate_statistics has to be on). When sharded,
+ * every shard has its own cache and counters, which are added up.
+ */
+@Service
+public class CacheStatisticsServiceImpl implements CacheStatisticsService {
+
+	/*
+	 * Entity regions of Category and Reminder followed by the query cache regions
+	 * of their per user lists and of the per user count of archived notes.
+	 */
+	private static final String[] REGIONS = { "category", "reminder", "category.byUser", "reminder.byUser",
+			"noteArchive.countByUser" };
+
+	private List<SessionFactory> sessionFactories;
+
+	@Autowired
+	public CacheStatisticsServiceImpl(SessionFactory sessionFactory, ShardRouter shardRouter) {
+		this.sessionFactories = shardRouter.isSharded() ? shardRouter.getShards()
+				: Collections.singletonList(sessionFactory);
+	}
+
+	/*
+	 * This method should be used to get the hit, miss and put counts of the
+	 * second level and query cache regions, keyed by region name.
+	 */
+	public Map<String, Map<String, Long>> getCacheStatistics() {
+		Map<String, Map<String, Long>> regions = new LinkedHashMap<String, Map<String, Long>>();
+		for (SessionFactory sessionFactory : sessionFactories) {
+			Statistics statistics = sessionFactory.getStatistics();
+			String prefix = sessionFactory.getSessionFactoryOptions().getCacheRegionPrefix();
+			for (String region : REGIONS) {
+				SecondLevelCacheStatistics cache = statistics
+						.getSecondLevelCacheStatistics(prefix == null ? region : prefix + "." + region);
+				if (cache != null) {
+					add(regions, region, cache.getHitCount(), cache.getMissCount(), cache.getPutCount());
+				}
+			}
+			add(regions, "secondLevel", statistics.getSecondLevelCacheHitCount(),
+					statistics.getSecondLevelCacheMissCount(), statistics.getSecondLevelCachePutCount());
+			add(regions, "query", statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+					statistics.getQueryCachePutCount());
+		}
+		return regions;
+	}
+
+	private void add(Map<String, Map<String, Long>> regions, String region, long hits, long misses, long puts) {
+		Map<String, Long> counts = regions.computeIfAbsent(region, name -> new LinkedHashMap<String, Long>());
+		counts.merge("hits", hits, Long::sum);
+		counts.merge("misses", misses, Long::sum);
+		counts.merge("puts", puts, Long::sum);
+	}
+
+}
@@ -1,8 +1,10 @@
 package com.stackroute.keepnote.service;
 
 import java.util.List;
+import java.util.Map;
 
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Category;
 
 public interface CategoryService {
@@ -17,6 +19,12 @@ public interface CategoryService {
 
 	public Category updateCategory(Category category, int id) throws CategoryNotFoundException;
 
+	public Category updateCategory(Category category, int id, int version)
+			throws CategoryNotFoundException, VersionConflictException;
+
+	public Category patchCategory(String userId, int id, Map<String, Object> patch, Integer version)
+			throws CategoryNotFoundException, VersionConflictException;
+
 	public Category getCategoryById(int categoryId) throws CategoryNotFoundException;
 
 	public List<Category> getAllCategoryByUserId(String userId);
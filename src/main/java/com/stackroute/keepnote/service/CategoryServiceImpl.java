@@ -1,12 +1,17 @@
 package com.stackroute.keepnote.service;
 
 import java.util.List;
+import java.util.Map;
+
+import javax.persistence.OptimisticLockException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.stackroute.keepnote.dao.CategoryDAO;
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Category;
 
 /*
@@ -55,6 +60,7 @@ public class CategoryServiceImpl implements CategoryService {
 		boolean isCategoryUpdated = false;
 		Category catDetails = categoryDAO.getCategoryById(id);
 		if(catDetails != null) {
+			category.setVersion(catDetails.getVersion());
 			isCategoryUpdated = categoryDAO.updateCategory(category);
 			return category;
 		} else {
@@ -62,9 +68,64 @@ public class CategoryServiceImpl implements CategoryService {
 		}
 	}
 
+	/*
+	 * This method should be used to update a existing category only if it still
+	 * has the version the client read. One versioned UPDATE is issued; the category
+	 * is looked up only when it matched no row.
+	 */
+
+	public Category updateCategory(Category category, int id, int version)
+			throws CategoryNotFoundException, VersionConflictException {
+		category.setVersion(version);
+		try {
+			categoryDAO.updateCategory(category);
+		} catch (OptimisticLockException e) {
+			categoryDAO.getCategoryById(id);
+			throw new VersionConflictException("Category has been modified");
+		}
+		return category;
+	}
+
+	/*
+	 * This method should be used to apply a JSON merge patch to a category: only
+	 * the name and description present in the patch are changed. The category
+	 * is usually served from the second level cache and only the changed columns
+	 * are written (@DynamicUpdate). Throws CategoryNotFoundException if the user
+	 * has no such category, VersionConflictException if it is not at the given
+	 * version or was changed before the write.
+	 */
+
+	@Transactional
+	public Category patchCategory(String userId, int id, Map<String, Object> patch, Integer version)
+			throws CategoryNotFoundException, VersionConflictException {
+		Category category = categoryDAO.getCategoryById(id);
+		if (!userId.equals(category.getCategoryCreatedBy())) {
+			throw new CategoryNotFoundException("Category Not Found");
+		}
+		if (version != null && category.getVersion() != version) {
+			throw new VersionConflictException("Category has been modified");
+		}
+		for (Map.Entry<String, Object> entry : patch.entrySet()) {
+			if ("categoryName".equals(entry.getKey())) {
+				category.setCategoryName(text(entry));
+			} else if ("categoryDescription".equals(entry.getKey())) {
+				category.setCategoryDescription(text(entry));
+			} else {
+				throw new IllegalArgumentException("Property cannot be patched: " + entry.getKey());
+			}
+		}
+		try {
+			categoryDAO.updateCategory(category);
+		} catch (OptimisticLockException e) {
+			throw new VersionConflictException("Category has been modified");
+		}
+		return category;
+	}
+
 	/*
 	 * This method should be used to get a category by categoryId.
 	 */
+	@Transactional(readOnly = true)
 	public Category getCategoryById(int categoryId) throws CategoryNotFoundException {
 		Category category = categoryDAO.getCategoryById(categoryId);
 		if(category != null) 
@@ -79,9 +140,17 @@ public class CategoryServiceImpl implements CategoryService {
 	 * This method should be used to get a category by userId.
 	 */
 
+	@Transactional(readOnly = true)
 	public List<Category> getAllCategoryByUserId(String userId) {
 		return categoryDAO.getAllCategoryByUserId(userId);
 
 	}
 
+	private static String text(Map.Entry<String, Object> entry) {
+		if (entry.getValue() != null && !(entry.getValue() instanceof String)) {
+			throw new IllegalArgumentException(entry.getKey() + " must be a string");
+		}
+		return (String) entry.getValue();
+	}
+
 }
@@ -0,0 +1,11 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Map;
+
+public interface ChangeRelayService {
+
+	public int relayChanges();
+
+	public Map<String, Object> getStatistics();
+
+}
@@ -0,0 +1,118 @@
+package com.stackroute.keepnote.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.ChangeOutboxDAO;
+import com.stackroute.keepnote.model.ChangeRecord;
+
+/*
+ * Relays the change outbox to the ChangeSink: every outbox.relay_interval_ms
+ * it reads the oldest outbox.batch_size records, publishes them and removes
+ * them, until the outbox is empty. Reading, publishing and removing are
+ * separate steps, so no transaction is open while the sink works; a failure in
+ * between publishes the batch again on the next run (at least once). When
+ * sharded the outbox of every shard is relayed in turn, a failing shard not
+ * holding back the others.
+ */
+@Service
+public class ChangeRelayServiceImpl implements ChangeRelayService {
+
+	private ChangeOutboxDAO changeOutboxDAO;
+
+	private ChangeSink changeSink;
+
+	private ShardRouter shardRouter;
+
+	@Value("${outbox.batch_size:500}")
+	private int batchSize = 500;
+
+	private final LongAdder published = new LongAdder();
+
+	private final LongAdder batches = new LongAdder();
+
+	private final LongAdder failures = new LongAdder();
+
+	private volatile Date lastPublishedAt;
+
+	@Autowired
+	public ChangeRelayServiceImpl(ChangeOutboxDAO changeOutboxDAO, ChangeSink changeSink, ShardRouter shardRouter) {
+		this.changeOutboxDAO = changeOutboxDAO;
+		this.changeSink = changeSink;
+		this.shardRouter = shardRouter;
+	}
+
+	/*
+	 * This method should be used to publish and remove the records of the
+	 * change outbox. Returns the number of records published.
+	 */
+	@Scheduled(initialDelayString = "${outbox.relay_interval_ms:1000}", fixedDelayString = "${outbox.relay_interval_ms:1000}")
+	public synchronized int relayChanges() {
+		int shardCount = shardRouter.getShards().size();
+		int relayed = 0;
+		try {
+			for (int shard = 0; shard < Math.max(1, shardCount); shard++) {
+				Integer selected = shardCount == 0 ? null : shard;
+				ShardContext.setShard(selected);
+				relayed += relayShard(selected);
+			}
+		} finally {
+			ShardContext.clear();
+		}
+		return relayed;
+	}
+
+	/*
+	 * This method should be used to get the number of records published, of
+	 * batches and of failed batches, and when records were last published.
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		statistics.put("published", published.sum());
+		statistics.put("batches", batches.sum());
+		statistics.put("failedBatches", failures.sum());
+		statistics.put("lastPublishedAt", lastPublishedAt);
+		return statistics;
+	}
+
+	private int relayShard(Integer shard) {
+		int relayed = 0;
+		try {
+			List<ChangeRecord> changes;
+			do {
+				changes = changeOutboxDAO.getOldestChanges(batchSize);
+				if (changes.isEmpty()) {
+					break;
+				}
+				List<Long> changeIds = new ArrayList<Long>(changes.size());
+				for (ChangeRecord change : changes) {
+					change.setShard(shard);
+					changeIds.add(change.getChangeId());
+				}
+				changeSink.publish(changes);
+				changeOutboxDAO.deleteChanges(changeIds);
+				relayed += changes.size();
+				published.add(changes.size());
+				batches.increment();
+				lastPublishedAt = new Date();
+			} while (changes.size() == batchSize);
+		} catch (IOException | RuntimeException e) {
+			failures.increment();
+			e.printStackTrace();
+		}
+		return relayed;
+	}
+
+}
@@ -0,0 +1,18 @@
+package com.stackroute.keepnote.service;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.stackroute.keepnote.model.ChangeRecord;
+
+/*
+ * Where the change relay publishes the records of the change outbox. A batch
+ * is removed from the outbox only once publish returned, so a sink must have
+ * handed the records on (or made them durable) by then; when it throws, the
+ * batch is published again later.
+ */
+public interface ChangeSink {
+
+	public void publish(List<ChangeRecord> changes) throws IOException;
+
+}
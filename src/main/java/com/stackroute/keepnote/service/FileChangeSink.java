@@ -0,0 +1,53 @@
+package com.stackroute.keepnote.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackroute.keepnote.model.ChangeRecord;
+
+/*
+ * Appends the published changes to a local file, one JSON object per line,
+ * for consumers tailing the file. Each batch is forced to disk before publish
+ * returns.
+ */
+public class FileChangeSink implements ChangeSink {
+
+	private final Path file;
+
+	private final ObjectMapper objectMapper;
+
+	public FileChangeSink(Path file, ObjectMapper objectMapper) {
+		this.file = file;
+		this.objectMapper = objectMapper;
+	}
+
+	public synchronized void publish(List<ChangeRecord> changes) throws IOException {
+		StringBuilder lines = new StringBuilder();
+		for (ChangeRecord change : changes) {
+			lines.append(objectMapper.writeValueAsString(change)).append('\n');
+		}
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND)) {
+			ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+}
@@ -0,0 +1,26 @@
+package com.stackroute.keepnote.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.stackroute.keepnote.model.ChangeRecord;
+
+/*
+ * Keeps the published changes in memory, for consumers in the same process
+ * and for tests; drain hands them over and forgets them.
+ */
+public class InMemoryChangeSink implements ChangeSink {
+
+	private final List<ChangeRecord> changes = new ArrayList<ChangeRecord>();
+
+	public synchronized void publish(List<ChangeRecord> published) {
+		changes.addAll(published);
+	}
+
+	public synchronized List<ChangeRecord> drain() {
+		List<ChangeRecord> drained = new ArrayList<ChangeRecord>(changes);
+		changes.clear();
+		return drained;
+	}
+
+}
@@ -0,0 +1,7 @@
+package com.stackroute.keepnote.service;
+
+public interface NoteArchiveService {
+
+	public int archiveNotes();
+
+}
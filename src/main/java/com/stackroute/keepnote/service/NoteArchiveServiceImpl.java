@@ -0,0 +1,97 @@
+package com.stackroute.keepnote.service;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.NoteDAO;
+
+/*
+ * Moves cold notes to the archive table: notes created more than
+ * archive.age_days ago (0 to not archive by age) and notes whose status is one
+ * of archive.statuses. Like the purger it runs every archive.interval_ms, only
+ * within the off-peak archive.windows, in batches of archive.batch_size notes
+ * with a pause in between, over every shard in turn. Archived notes are still
+ * found by id and listed with the notes of their user, and move back when
+ * changed.
+ */
+@Service
+public class NoteArchiveServiceImpl implements NoteArchiveService {
+
+	private NoteDAO noteDAO;
+
+	private ShardRouter shardRouter;
+
+	@Value("${archive.windows:01:00-05:00}")
+	private String windows = "01:00-05:00";
+
+	@Value("${archive.age_days:365}")
+	private int ageDays = 365;
+
+	@Value("${archive.statuses:}")
+	private String statuses = "";
+
+	@Value("${archive.batch_size:200}")
+	private int batchSize = 200;
+
+	@Value("${archive.pause_ms:200}")
+	private long pauseMillis = 200;
+
+	@Autowired
+	public NoteArchiveServiceImpl(NoteDAO noteDAO, ShardRouter shardRouter) {
+		this.noteDAO = noteDAO;
+		this.shardRouter = shardRouter;
+	}
+
+	/*
+	 * This method should be used to archive the notes past the age or status
+	 * threshold, if the current time is within an off-peak window. Returns the
+	 * number of notes archived.
+	 */
+	@Scheduled(initialDelayString = "${archive.interval_ms:3600000}", fixedDelayString = "${archive.interval_ms:3600000}")
+	public int archiveNotes() {
+		OffPeakWindows offPeak = OffPeakWindows.parse(windows);
+		Date createdBefore = ageDays > 0 ? new Date(System.currentTimeMillis() - ageDays * 86400000L) : null;
+		List<String> archivedStatuses = new ArrayList<String>();
+		for (String status : statuses.split(",")) {
+			if (!status.trim().isEmpty()) {
+				archivedStatuses.add(status.trim());
+			}
+		}
+		int shardCount = shardRouter.getShards().size();
+		int archived = 0;
+		try {
+			for (int shard = 0; shard < Math.max(1, shardCount); shard++) {
+				ShardContext.setShard(shardCount == 0 ? null : shard);
+				int moved;
+				while (offPeak.contains(LocalTime.now())
+						&& (moved = noteDAO.archiveNotes(createdBefore, archivedStatuses, batchSize)) > 0) {
+					archived += moved;
+					pause();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		} finally {
+			ShardContext.clear();
+		}
+		return archived;
+	}
+
+	private void pause() throws InterruptedException {
+		if (pauseMillis > 0) {
+			Thread.sleep(pauseMillis);
+		}
+	}
+
+}
@@ -0,0 +1,23 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Map;
+
+import com.stackroute.keepnote.model.Note;
+
+public interface NoteAutosaveService {
+
+	public void autosave(Note note);
+
+	public Note getPendingNote(int noteId);
+
+	public boolean flush(int noteId);
+
+	public int flush(int noteId, String userId, Map<String, Object> changes, Integer version);
+
+	public void discard(int noteId);
+
+	public int flushDue();
+
+	public Map<String, Object> getStatistics();
+
+}
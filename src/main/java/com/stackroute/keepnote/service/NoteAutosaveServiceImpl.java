@@ -0,0 +1,261 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.model.Note;
+
+/*
+ * Coalesces the autosaves of the editor. An autosave only replaces the pending
+ * state of the note in memory; the latest state is written, with one UPDATE of
+ * the editable properties (NoteDAO.patchNote), once it has been pending for
+ * autosave.max_delay_ms, when the user saves explicitly, or before another
+ * write of the note. Autosaving every few seconds thus costs one write per
+ * max_delay_ms instead of one per request. Writing a note and replacing or
+ * dropping its pending state are serialized per note, so a flush never
+ * overwrites a newer explicit save. Pending states are kept by this server
+ * only: on shutdown they are written, on a crash up to max_delay_ms of typing
+ * is lost.
+ */
+@Service
+public class NoteAutosaveServiceImpl implements NoteAutosaveService {
+
+	private static final Log log = LogFactory.getLog(NoteAutosaveServiceImpl.class);
+
+	private static final int LOCK_STRIPES = 64;
+
+	private NoteDAO noteDAO;
+
+	private final Map<Integer, Pending> pending = new ConcurrentHashMap<Integer, Pending>();
+
+	private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+
+	private final LongAdder autosaves = new LongAdder();
+
+	private final LongAdder writes = new LongAdder();
+
+	private final LongAdder failedWrites = new LongAdder();
+
+	@Value("${autosave.max_delay_ms:30000}")
+	private long maxDelayMillis = 30000;
+
+	@Autowired
+	public NoteAutosaveServiceImpl(NoteDAO noteDAO) {
+		this.noteDAO = noteDAO;
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new ReentrantLock();
+		}
+	}
+
+	/*
+	 * This method should be used to make the note the pending state of its
+	 * noteId. The note must exist, belong to its createdBy and refer to existing
+	 * categories and reminders; that is checked by the caller.
+	 */
+	public void autosave(Note note) {
+		ReentrantLock lock = lockOf(note.getNoteId());
+		lock.lock();
+		try {
+			long now = System.currentTimeMillis();
+			pending.merge(note.getNoteId(), new Pending(note, now),
+					(older, newer) -> new Pending(newer.note, older.since));
+			autosaves.increment();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * This method should be used to get the pending state of a note, or null if
+	 * it has none.
+	 */
+	public Note getPendingNote(int noteId) {
+		Pending state = pending.get(noteId);
+		return state == null ? null : state.note;
+	}
+
+	/*
+	 * This method should be used to write the pending state of a note now, in the
+	 * transaction and on the shard of the caller. Returns false if it had none.
+	 */
+	public boolean flush(int noteId) {
+		ReentrantLock lock = lockOf(noteId);
+		lock.lock();
+		try {
+			Pending state = pending.remove(noteId);
+			if (state == null) {
+				return false;
+			}
+			write(noteId, state.note.getCreatedBy(), state, Collections.<String, Object>emptyMap(), null);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * This method should be used to write the given changes of a note of the user
+	 * together with its pending state, the changes winning, in one UPDATE which
+	 * only matches a note of the user and, when a version is given, that version:
+	 * the pending state does not bump the version ahead of the check. Returns the
+	 * number of notes updated, 0 without writing if the pending state belongs to
+	 * another user, or -1 if there was neither a pending state nor a change to
+	 * write. A pending state which is not written stays pending.
+	 */
+	public int flush(int noteId, String userId, Map<String, Object> changes, Integer version) {
+		ReentrantLock lock = lockOf(noteId);
+		lock.lock();
+		try {
+			Pending state = pending.get(noteId);
+			if (state != null && !userId.equals(state.note.getCreatedBy())) {
+				return 0;
+			}
+			pending.remove(noteId);
+			if (state == null && changes.isEmpty()) {
+				return -1;
+			}
+			return write(noteId, userId, state, changes, version);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * This method should be used to drop the pending state of a note that is
+	 * about to be overwritten or deleted. Waits for a flush of the note in
+	 * progress.
+	 */
+	public void discard(int noteId) {
+		ReentrantLock lock = lockOf(noteId);
+		lock.lock();
+		try {
+			pending.remove(noteId);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * This method should be used to write the pending states older than the
+	 * maximum delay, each on the shard of its owner. Returns the number of notes
+	 * written. A state whose write fails stays pending, with its age, and is
+	 * written again on the next tick.
+	 */
+	@Scheduled(fixedDelayString = "${autosave.tick_ms:1000}")
+	public int flushDue() {
+		return flushOlderThan(System.currentTimeMillis() - maxDelayMillis);
+	}
+
+	/*
+	 * Writes every pending state when the server stops.
+	 */
+	@PreDestroy
+	public int flushAll() {
+		return flushOlderThan(Long.MAX_VALUE);
+	}
+
+	/*
+	 * This method should be used to get the number of autosaves received, of
+	 * notes written and of writes that failed, and how many autosaves one write
+	 * stood for on average.
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> statistics = new LinkedHashMap<String, Object>();
+		long received = autosaves.sum();
+		long written = writes.sum();
+		statistics.put("autosaves", received);
+		statistics.put("writes", written);
+		statistics.put("failedWrites", failedWrites.sum());
+		statistics.put("pending", pending.size());
+		statistics.put("autosavesPerWrite", written == 0 ? 0 : (double) received / written);
+		return statistics;
+	}
+
+	private int flushOlderThan(long since) {
+		int flushed = 0;
+		for (Map.Entry<Integer, Pending> entry : pending.entrySet()) {
+			if (entry.getValue().since > since) {
+				continue;
+			}
+			try {
+				ShardContext.setUserId(entry.getValue().note.getCreatedBy());
+				if (flush(entry.getKey())) {
+					flushed++;
+				}
+			} catch (RuntimeException e) {
+				log.warn("Autosave of note " + entry.getKey() + " not written, retried on the next tick", e);
+			} finally {
+				ShardContext.clear();
+			}
+		}
+		return flushed;
+	}
+
+	/*
+	 * Writes the editable properties of a pending state, if any, overridden by
+	 * the given changes. If the write fails, or the given version no longer
+	 * matches, the state is pending again, unless a newer one arrived meanwhile.
+	 */
+	private int write(int noteId, String userId, Pending state, Map<String, Object> changes, Integer version) {
+		Map<String, Object> written = new LinkedHashMap<String, Object>();
+		if (state != null) {
+			Note note = state.note;
+			written.put("noteTitle", note.getNoteTitle());
+			written.put("noteContent", note.getNoteContent());
+			written.put("noteStatus", note.getNoteStatus());
+			written.put("category", note.getCategory());
+			written.put("reminder", note.getReminder());
+		}
+		written.putAll(changes);
+		try {
+			int updated = noteDAO.patchNote(noteId, userId, written, version);
+			if (updated > 0) {
+				writes.increment();
+			} else if (state != null && version != null) {
+				pending.putIfAbsent(noteId, state);
+			}
+			return updated;
+		} catch (RuntimeException e) {
+			failedWrites.increment();
+			if (state != null) {
+				pending.putIfAbsent(noteId, state);
+			}
+			throw e;
+		}
+	}
+
+	private ReentrantLock lockOf(int noteId) {
+		return locks[Math.floorMod(noteId, LOCK_STRIPES)];
+	}
+
+	/*
+	 * The latest state of a note and since when the note has had a pending state.
+	 */
+	private static class Pending {
+
+		private final Note note;
+
+		private final long since;
+
+		Pending(Note note, long since) {
+			this.note = note;
+			this.since = since;
+		}
+	}
+
+}
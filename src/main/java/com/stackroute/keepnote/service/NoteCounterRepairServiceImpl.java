@@ -0,0 +1,83 @@
+package com.stackroute.keepnote.service;
+
+import java.time.LocalTime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.NoteDAO;
+
+/*
+ * Rebuilds the note counters of every user from the notes, so counters that
+ * drifted (e.g. after rows were changed by hand) are put right. Like the
+ * purger it runs every counters.repair_interval_ms, only within the off-peak
+ * counters.repair_windows, one user per transaction with
+ * counters.repair_pause_ms in between, over every shard in turn; users not
+ * reached before the window closes are repaired in the next run.
+ */
+@Service
+public class NoteCounterRepairServiceImpl implements NoteCounterRepairService {
+
+	private NoteDAO noteDAO;
+
+	private ShardRouter shardRouter;
+
+	@Value("${counters.repair_windows:03:00-04:00}")
+	private String windows = "03:00-04:00";
+
+	@Value("${counters.repair_pause_ms:20}")
+	private long pauseMillis = 20;
+
+	@Autowired
+	public NoteCounterRepairServiceImpl(NoteDAO noteDAO, ShardRouter shardRouter) {
+		this.noteDAO = noteDAO;
+		this.shardRouter = shardRouter;
+	}
+
+	/*
+	 * This method should be used to recompute the counters of all users, if the
+	 * current time is within an off-peak window. Returns the number of users
+	 * whose counters were recomputed.
+	 */
+	@Scheduled(initialDelayString = "${counters.repair_interval_ms:86400000}",
+			fixedDelayString = "${counters.repair_interval_ms:86400000}")
+	public int repairCounters() {
+		OffPeakWindows offPeak = OffPeakWindows.parse(windows);
+		int shardCount = shardRouter.getShards().size();
+		int repaired = 0;
+		try {
+			for (int shard = 0; shard < Math.max(1, shardCount); shard++) {
+				ShardContext.setShard(shardCount == 0 ? null : shard);
+				if (!offPeak.contains(LocalTime.now())) {
+					break;
+				}
+				for (String userId : noteDAO.getCountedUserIds()) {
+					if (!offPeak.contains(LocalTime.now())) {
+						break;
+					}
+					noteDAO.recomputeNoteCounters(userId);
+					repaired++;
+					pause();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		} finally {
+			ShardContext.clear();
+		}
+		return repaired;
+	}
+
+	private void pause() throws InterruptedException {
+		if (pauseMillis > 0) {
+			Thread.sleep(pauseMillis);
+		}
+	}
+
+}
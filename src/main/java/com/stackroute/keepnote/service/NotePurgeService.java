@@ -0,0 +1,7 @@
+package com.stackroute.keepnote.service;
+
+public interface NotePurgeService {
+
+	public int purgeDeletedNotes();
+
+}
@@ -0,0 +1,89 @@
+package com.stackroute.keepnote.service;
+
+import java.time.LocalTime;
+import java.util.Date;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.NoteDAO;
+
+/*
+ * Physically removes deleted notes once they are older than the retention
+ * (until then they can be restored). It runs every purge.interval_ms but only
+ * does work within the off-peak purge.windows, removing purge.batch_size rows
+ * per DELETE ... LIMIT, each in its own transaction, with a pause in between;
+ * it stops as soon as the window closes and continues in the next one. Note
+ * bodies no note refers to any more are removed the same way afterwards. When
+ * sharded every shard is purged in turn.
+ */
+@Service
+public class NotePurgeServiceImpl implements NotePurgeService {
+
+	private NoteDAO noteDAO;
+
+	private ShardRouter shardRouter;
+
+	@Value("${purge.windows:01:00-05:00}")
+	private String windows = "01:00-05:00";
+
+	@Value("${purge.retention_minutes:1440}")
+	private long retentionMinutes = 1440;
+
+	@Value("${purge.batch_size:500}")
+	private int batchSize = 500;
+
+	@Value("${purge.pause_ms:200}")
+	private long pauseMillis = 200;
+
+	@Autowired
+	public NotePurgeServiceImpl(NoteDAO noteDAO, ShardRouter shardRouter) {
+		this.noteDAO = noteDAO;
+		this.shardRouter = shardRouter;
+	}
+
+	/*
+	 * This method should be used to purge the deleted notes past the retention,
+	 * if the current time is within an off-peak window. Returns the number of
+	 * notes removed.
+	 */
+	@Scheduled(initialDelayString = "${purge.interval_ms:600000}", fixedDelayString = "${purge.interval_ms:600000}")
+	public int purgeDeletedNotes() {
+		OffPeakWindows offPeak = OffPeakWindows.parse(windows);
+		Date deletedBefore = new Date(System.currentTimeMillis() - retentionMinutes * 60000L);
+		int shardCount = shardRouter.getShards().size();
+		int purged = 0;
+		try {
+			for (int shard = 0; shard < Math.max(1, shardCount); shard++) {
+				ShardContext.setShard(shardCount == 0 ? null : shard);
+				int deleted;
+				while (offPeak.contains(LocalTime.now())
+						&& (deleted = noteDAO.purgeDeletedNotes(deletedBefore, batchSize)) > 0) {
+					purged += deleted;
+					pause();
+				}
+				while (offPeak.contains(LocalTime.now()) && noteDAO.purgeUnreferencedBodies(batchSize) > 0) {
+					pause();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+		} finally {
+			ShardContext.clear();
+		}
+		return purged;
+	}
+
+	private void pause() throws InterruptedException {
+		if (pauseMillis > 0) {
+			Thread.sleep(pauseMillis);
+		}
+	}
+
+}
@@ -1,11 +1,19 @@
 package com.stackroute.keepnote.service;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
 import com.stackroute.keepnote.exception.NoteNotFoundException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBatchResult;
+import com.stackroute.keepnote.model.NoteCriteria;
+import com.stackroute.keepnote.model.NotePage;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.NoteSummary;
 
 public interface NoteService {
 	/*
@@ -14,12 +22,45 @@ public interface NoteService {
 	 */
 	public boolean createNote(Note note) throws ReminderNotFoundException, CategoryNotFoundException;
 
+	public boolean createNote(Note note, String idempotencyKey)
+			throws ReminderNotFoundException, CategoryNotFoundException;
+
+	public List<NoteBatchResult> createNotes(List<Note> notes);
+
 	public boolean deleteNote(int noteId);
 
+	public boolean restoreNote(String userId, int noteId);
+
+	public int deleteNotes(String userId, NoteCriteria criteria);
+
 	public List<Note> getAllNotesByUserId(String userId);
 
+	public List<NoteSummary> getNoteSummariesByUserId(String userId);
+
+	public Map<String, Object> getNoteStatistics(String userId);
+
+	public NotePage getNotesByUserId(String userId, String cursor, int limit);
+
+	public int exportNotesByUserId(String userId, Consumer<Note> consumer);
+
 	public Note getNoteById(int noteId) throws NoteNotFoundException;
 
+	public List<NoteRevision> getNoteRevisions(String userId, int noteId) throws NoteNotFoundException;
+
+	public NoteRevision getNoteRevision(String userId, int noteId, int revision) throws NoteNotFoundException;
+
+	public void autosaveNote(String userId, Note note)
+			throws ReminderNotFoundException, NoteNotFoundException, CategoryNotFoundException;
+
+	public boolean saveNote(String userId, int noteId) throws NoteNotFoundException;
+
 	public Note updateNote(Note note, int id)
 			throws ReminderNotFoundException, NoteNotFoundException, CategoryNotFoundException;
+
+	public Note updateNote(Note note, int id, int version) throws ReminderNotFoundException,
+			NoteNotFoundException, CategoryNotFoundException, VersionConflictException;
+
+	public void patchNote(String userId, int noteId, Map<String, Object> patch, Integer version)
+			throws ReminderNotFoundException, NoteNotFoundException, CategoryNotFoundException,
+			VersionConflictException;
 }
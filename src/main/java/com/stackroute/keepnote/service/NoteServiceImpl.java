@@ -1,10 +1,34 @@
 package com.stackroute.keepnote.service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import javax.persistence.OptimisticLockException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import com.stackroute.keepnote.dao.CategoryDAO;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.dao.ReminderDAO;
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
 import com.stackroute.keepnote.exception.NoteNotFoundException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBatchResult;
+import com.stackroute.keepnote.model.NoteCriteria;
+import com.stackroute.keepnote.model.NoteCursor;
+import com.stackroute.keepnote.model.NotePage;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.NoteSummary;
 
 /*
 * Service classes are used here to implement additional business logic/validation 
@@ -15,44 +39,294 @@ import com.stackroute.keepnote.model.Note;
 * better. Additionally, tool support and additional behavior might rely on it in the 
 * future.
 * */
+@Service
 public class NoteServiceImpl implements NoteService {
 
+	/*
+	 * Upper bound for the page size a caller may ask for, so that a single page
+	 * request stays cheap whatever limit is sent.
+	 */
+	public static final int MAX_PAGE_SIZE = 100;
+
 	/*
 	 * Autowiring should be implemented for the NoteDAO,CategoryDAO,ReminderDAO.
 	 * (Use Constructor-based autowiring) Please note that we should not create any
 	 * object using the new keyword.
 	 */
+	private NoteDAO noteDAO;
+
+	private CategoryDAO categoryDAO;
+
+	private ReminderDAO reminderDAO;
+
+	private NoteAutosaveService noteAutosaveService;
+
+	@Autowired
+	public NoteServiceImpl(NoteDAO noteDAO, CategoryDAO categoryDAO, ReminderDAO reminderDAO,
+			NoteAutosaveService noteAutosaveService) {
+		this.noteDAO = noteDAO;
+		this.categoryDAO = categoryDAO;
+		this.reminderDAO = reminderDAO;
+		this.noteAutosaveService = noteAutosaveService;
+	}
 
 	/*
-	 * This method should be used to save a new note.
+	 * This method should be used to save a new note. Returns false if the noteId
+	 * is already taken.
 	 */
 
 	public boolean createNote(Note note) throws ReminderNotFoundException, CategoryNotFoundException {
-		return false;
+		validateReferences(note);
+		return noteDAO.createNote(note);
 
 	}
 
-	/* This method should be used to delete an existing note. */
+	/*
+	 * This method should be used to save a new note on behalf of a client which
+	 * may retry the request. The first request with a given idempotency key
+	 * creates the note; a retry with the same key and noteId reports success again
+	 * without inserting. Returns false if the noteId is taken by another request
+	 * or the key was used for another note.
+	 */
+
+	@Transactional
+	public boolean createNote(Note note, String idempotencyKey)
+			throws ReminderNotFoundException, CategoryNotFoundException {
+		validateReferences(note);
+		if (!noteDAO.registerIdempotencyKey(note.getCreatedBy(), idempotencyKey, note.getNoteId())) {
+			Integer noteId = noteDAO.getNoteIdByIdempotencyKey(note.getCreatedBy(), idempotencyKey);
+			return noteId != null && noteId == note.getNoteId();
+		}
+		if (!noteDAO.createNote(note)) {
+			// the key must not stay recorded for a note that was not created
+			TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+			return false;
+		}
+		return true;
+	}
+
+	/*
+	 * This method should be used to save many notes at once. Notes whose noteId
+	 * is already taken (or repeated in the list) or whose category or reminder
+	 * does not exist are reported and skipped; the others are inserted together in
+	 * JDBC batches. The noteIds, categories and reminders are each checked with
+	 * one query.
+	 */
+
+	@Transactional
+	public List<NoteBatchResult> createNotes(List<Note> notes) {
+		List<Integer> noteIds = new ArrayList<Integer>();
+		Set<Integer> categoryIds = new HashSet<Integer>();
+		Set<Integer> reminderIds = new HashSet<Integer>();
+		for (Note note : notes) {
+			noteIds.add(note.getNoteId());
+			if (note.getCategory() != null) {
+				categoryIds.add(note.getCategory().getCategoryId());
+			}
+			if (note.getReminder() != null) {
+				reminderIds.add(note.getReminder().getReminderId());
+			}
+		}
+		Set<Integer> takenIds = new HashSet<Integer>(noteDAO.getExistingNoteIds(noteIds));
+		Set<Integer> categories = new HashSet<Integer>(categoryDAO.getExistingCategoryIds(categoryIds));
+		Set<Integer> reminders = new HashSet<Integer>(reminderDAO.getExistingReminderIds(reminderIds));
+		List<NoteBatchResult> results = new ArrayList<NoteBatchResult>();
+		List<Note> accepted = new ArrayList<Note>();
+		for (Note note : notes) {
+			if (!takenIds.add(note.getNoteId())) {
+				results.add(new NoteBatchResult(note.getNoteId(), NoteBatchResult.CONFLICT, "Note already exists"));
+			} else if (note.getCategory() != null && !categories.contains(note.getCategory().getCategoryId())) {
+				results.add(new NoteBatchResult(note.getNoteId(), NoteBatchResult.INVALID, "Category Not Found"));
+			} else if (note.getReminder() != null && !reminders.contains(note.getReminder().getReminderId())) {
+				results.add(new NoteBatchResult(note.getNoteId(), NoteBatchResult.INVALID, "Reminder Not Found"));
+			} else {
+				accepted.add(note);
+				results.add(new NoteBatchResult(note.getNoteId(), NoteBatchResult.CREATED, null));
+			}
+		}
+		noteDAO.createNotes(accepted);
+		return results;
+	}
+
+	/*
+	 * This method should be used to delete an existing note. The note can be
+	 * restored with restoreNote until it is purged.
+	 */
 
 	public boolean deleteNote(int noteId) {
-		return false;
+		noteAutosaveService.discard(noteId);
+		return noteDAO.deleteNote(noteId);
 
 	}
+
+	/*
+	 * This method should be used to undo the deletion of a note of the user.
+	 * Returns false if the user has no such deleted note (any more).
+	 */
+
+	public boolean restoreNote(String userId, int noteId) {
+		return noteDAO.restoreNote(userId, noteId);
+	}
+	/*
+	 * This method should be used to delete all notes of a user matching the
+	 * criteria in one statement. At least one criterion is required so that an
+	 * empty request cannot wipe out every note of the user.
+	 */
+
+	public int deleteNotes(String userId, NoteCriteria criteria) {
+		if (criteria.isEmpty()) {
+			throw new IllegalArgumentException("At least one criterion is required");
+		}
+		return noteDAO.deleteNotes(userId, criteria);
+	}
+
 	/*
 	 * This method should be used to get a note by userId.
 	 */
 
+	@Transactional(readOnly = true)
 	public List<Note> getAllNotesByUserId(String userId) {
-		return null;
+		return withPendingState(noteDAO.getAllNotesByUserId(userId));
+
+	}
+
+	/*
+	 * This method should be used to get the summaries (id, title, status and
+	 * creation date) of the notes of a user, for list views, with the title and
+	 * status of their autosaved state when that is not written yet.
+	 */
+
+	@Transactional(readOnly = true)
+	public List<NoteSummary> getNoteSummariesByUserId(String userId) {
+		List<NoteSummary> summaries = noteDAO.getNoteSummariesByUserId(userId);
+		for (NoteSummary summary : summaries) {
+			Note pending = noteAutosaveService.getPendingNote(summary.getNoteId());
+			if (pending != null) {
+				summary.setNoteTitle(pending.getNoteTitle());
+				summary.setNoteStatus(pending.getNoteStatus());
+			}
+		}
+		return summaries;
+	}
 
+	/*
+	 * This method should be used to get the number of notes of a user in total
+	 * and per status, category and reminder, from the counters kept up to date by
+	 * NoteDAO instead of counting the notes.
+	 */
+
+	@Transactional(readOnly = true)
+	public Map<String, Object> getNoteStatistics(String userId) {
+		return noteDAO.getNoteCounters(userId);
 	}
 
 	/*
-	 * This method should be used to get a note by noteId.
+	 * This method should be used to get one page of a user's notes. The cursor is
+	 * the nextCursor of the previous page, or null for the first page. One extra
+	 * note is read to find out whether another page follows. Notes are returned
+	 * with their autosaved state when that is not written yet.
 	 */
+
+	@Transactional(readOnly = true)
+	public NotePage getNotesByUserId(String userId, String cursor, int limit) {
+		int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+		NoteCursor position = cursor == null || cursor.isEmpty() ? null : NoteCursor.decode(cursor);
+		List<Note> notes = withPendingState(noteDAO.getNotesByUserIdAfter(userId, position, pageSize + 1));
+		if (notes.size() <= pageSize) {
+			return new NotePage(notes, null);
+		}
+		notes = notes.subList(0, pageSize);
+		return new NotePage(notes, NoteCursor.of(notes.get(pageSize - 1)).encode());
+	}
+
+	/*
+	 * This method should be used to stream all the notes of a user to the
+	 * consumer, one at a time, without holding them all in memory, with their
+	 * autosaved state when that is not written yet.
+	 */
+	@Transactional(readOnly = true)
+	public int exportNotesByUserId(String userId, Consumer<Note> consumer) {
+		return noteDAO.exportNotesByUserId(userId, note -> consumer.accept(withPendingState(note)));
+	}
+
+	/*
+	 * This method should be used to get a note by noteId, with its autosaved
+	 * state when that is not written yet.
+	 */
+	@Transactional(readOnly = true)
 	public Note getNoteById(int noteId) throws NoteNotFoundException {
-		return null;
+		Note note = noteDAO.getNoteById(noteId);
+		if (note == null) {
+			throw new NoteNotFoundException("Note Not Found");
+		}
+		return withPendingState(note);
+
+	}
+
+	/*
+	 * This method should be used to autosave a note of the user: the note is
+	 * checked but only kept as the pending state of the note, which is written
+	 * later (see NoteAutosaveServiceImpl). Only its editable properties are
+	 * written. The note is looked up only for the first autosave of a burst.
+	 */
+
+	public void autosaveNote(String userId, Note note)
+			throws ReminderNotFoundException, NoteNotFoundException, CategoryNotFoundException {
+		Note pending = noteAutosaveService.getPendingNote(note.getNoteId());
+		if (pending == null || !userId.equals(pending.getCreatedBy())) {
+			Note existing = noteDAO.getNoteById(note.getNoteId());
+			if (existing == null || !userId.equals(existing.getCreatedBy())) {
+				throw new NoteNotFoundException("Note Not Found");
+			}
+		}
+		if (note.getCategory() != null) {
+			note.setCategory(categoryDAO.getCategoryById(note.getCategory().getCategoryId()));
+		}
+		if (note.getReminder() != null) {
+			note.setReminder(reminderDAO.getReminderById(note.getReminder().getReminderId()));
+		}
+		note.setCreatedBy(userId);
+		noteAutosaveService.autosave(note);
+	}
 
+	/*
+	 * This method should be used to write the autosaved state of a note of the
+	 * user now, when the user saves explicitly. Returns false if the note had no
+	 * pending state. Throws NoteNotFoundException if the pending state belongs
+	 * to another user.
+	 */
+
+	public boolean saveNote(String userId, int noteId) throws NoteNotFoundException {
+		Note pending = noteAutosaveService.getPendingNote(noteId);
+		if (pending == null) {
+			return false;
+		}
+		if (!userId.equals(pending.getCreatedBy())) {
+			throw new NoteNotFoundException("Note Not Found");
+		}
+		return noteAutosaveService.flush(noteId);
+	}
+
+	/*
+	 * This method should be used to list the revisions of the content of a note
+	 * of the user, newest first. Throws NoteNotFoundException if the user has no
+	 * such note.
+	 */
+	@Transactional(readOnly = true)
+	public List<NoteRevision> getNoteRevisions(String userId, int noteId) throws NoteNotFoundException {
+		checkOwner(userId, noteId);
+		return noteDAO.getNoteRevisions(noteId);
+	}
+
+	/*
+	 * This method should be used to get a revision of a note of the user with the
+	 * content the note had then, or null if there is no such revision. Throws
+	 * NoteNotFoundException if the user has no such note.
+	 */
+	@Transactional(readOnly = true)
+	public NoteRevision getNoteRevision(String userId, int noteId, int revision) throws NoteNotFoundException {
+		checkOwner(userId, noteId);
+		return noteDAO.getNoteRevision(noteId, revision);
 	}
 
 	/*
@@ -61,8 +335,157 @@ public class NoteServiceImpl implements NoteService {
 
 	public Note updateNote(Note note, int id)
 			throws ReminderNotFoundException, NoteNotFoundException, CategoryNotFoundException {
+		noteAutosaveService.discard(id);
+		note.setVersion(getNoteById(id).getVersion());
+		validateReferences(note);
+		writeNote(note);
 		return note;
 
 	}
 
+	/*
+	 * This method should be used to update a existing note only if it still has
+	 * the version the client read. The note is written with one versioned UPDATE
+	 * and not read beforehand; only when that UPDATE matches no row is the note
+	 * looked up, to tell a missing note from one changed in the meantime.
+	 */
+
+	public Note updateNote(Note note, int id, int version) throws ReminderNotFoundException,
+			NoteNotFoundException, CategoryNotFoundException, VersionConflictException {
+		validateReferences(note);
+		noteAutosaveService.discard(id);
+		note.setVersion(version);
+		try {
+			writeNote(note);
+		} catch (OptimisticLockException e) {
+			getNoteById(id);
+			throw new VersionConflictException("Note has been modified");
+		}
+		return note;
+	}
+
+	/*
+	 * This method should be used to apply a JSON merge patch to a note: only the
+	 * properties present in the patch are changed and a null value clears one.
+	 * The category and reminder are given as objects holding their id and must
+	 * exist. Only the changed columns are written and the note is not read: the
+	 * UPDATE only matches a note of the user, unless no row was updated and a
+	 * missing note, or one of another user, must be told from one changed in the
+	 * meantime. A pending autosave of the note is written in the same UPDATE, so
+	 * the version is checked against the stored one. Throws
+	 * NoteNotFoundException if the user has no such note.
+	 */
+
+	@Transactional
+	public void patchNote(String userId, int noteId, Map<String, Object> patch, Integer version)
+			throws ReminderNotFoundException,
+			NoteNotFoundException, CategoryNotFoundException, VersionConflictException {
+		Map<String, Object> changes = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : patch.entrySet()) {
+			String property = entry.getKey();
+			Object value = entry.getValue();
+			if (!Note.PATCHABLE_PROPERTIES.contains(property)) {
+				throw new IllegalArgumentException("Property cannot be patched: " + property);
+			}
+			if (value == null) {
+				changes.put(property, null);
+			} else if ("category".equals(property)) {
+				changes.put(property, categoryDAO.getCategoryById(referencedId(value, "categoryId")));
+			} else if ("reminder".equals(property)) {
+				changes.put(property, reminderDAO.getReminderById(referencedId(value, "reminderId")));
+			} else if (value instanceof String) {
+				changes.put(property, value);
+			} else {
+				throw new IllegalArgumentException(property + " must be a string");
+			}
+		}
+		int updated = noteAutosaveService.flush(noteId, userId, changes, version);
+		if (updated < 0) {
+			Note note = getNoteById(noteId);
+			checkOwner(userId, note);
+			if (version != null && note.getVersion() != version) {
+				throw new VersionConflictException("Note has been modified");
+			}
+		} else if (updated == 0) {
+			checkOwner(userId, getNoteById(noteId));
+			throw new VersionConflictException("Note has been modified");
+		}
+	}
+
+	/*
+	 * Writes the note with one versioned UPDATE. An archived note has no row in
+	 * Note, so when the UPDATE matches nothing and the note turns out to be
+	 * archived, it is moved back to Note and the UPDATE is tried once more.
+	 */
+	private void writeNote(Note note) {
+		try {
+			noteDAO.UpdateNote(note);
+		} catch (OptimisticLockException e) {
+			if (!noteDAO.promoteNote(note.getNoteId())) {
+				throw e;
+			}
+			noteDAO.UpdateNote(note);
+		}
+	}
+
+	/*
+	 * The category and reminder linked to a note, when present, must exist.
+	 */
+	private void validateReferences(Note note) throws ReminderNotFoundException, CategoryNotFoundException {
+		if (note.getCategory() != null) {
+			categoryDAO.getCategoryById(note.getCategory().getCategoryId());
+		}
+		if (note.getReminder() != null) {
+			reminderDAO.getReminderById(note.getReminder().getReminderId());
+		}
+	}
+
+	/*
+	 * The id of a category or reminder referenced in a patch, e.g. {"categoryId": 3}.
+	 */
+	private int referencedId(Object reference, String idProperty) {
+		Object id = reference instanceof Map ? ((Map<?, ?>) reference).get(idProperty) : null;
+		if (!(id instanceof Number)) {
+			throw new IllegalArgumentException(idProperty + " is required");
+		}
+		return ((Number) id).intValue();
+	}
+
+	/*
+	 * The notes, each with the editable properties of its pending autosave.
+	 */
+	private List<Note> withPendingState(List<Note> notes) {
+		List<Note> merged = new ArrayList<Note>(notes);
+		for (int i = 0; i < merged.size(); i++) {
+			merged.set(i, withPendingState(merged.get(i)));
+		}
+		return merged;
+	}
+
+	/*
+	 * A copy of the note with the editable properties of its pending autosave,
+	 * or the note itself if it has none.
+	 */
+	private Note withPendingState(Note note) {
+		Note pending = noteAutosaveService.getPendingNote(note.getNoteId());
+		if (pending == null) {
+			return note;
+		}
+		Note merged = new Note(note.getNoteId(), pending.getNoteTitle(), pending.getNoteContent(),
+				pending.getNoteStatus(), note.getNoteCreatedAt(), pending.getCategory(), pending.getReminder(),
+				note.getCreatedBy());
+		merged.setVersion(note.getVersion());
+		return merged;
+	}
+
+	private void checkOwner(String userId, int noteId) throws NoteNotFoundException {
+		checkOwner(userId, getNoteById(noteId));
+	}
+
+	private void checkOwner(String userId, Note note) throws NoteNotFoundException {
+		if (!userId.equals(note.getCreatedBy())) {
+			throw new NoteNotFoundException("Note Not Found");
+		}
+	}
+
 }
@@ -0,0 +1,65 @@
+package com.stackroute.keepnote.service;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Times of day in which maintenance jobs may run, written as comma separated
+ * HH:mm-HH:mm ranges in server local time, e.g. "01:00-05:00,13:00-13:30". The
+ * start is included and the end is not; a range may wrap around midnight
+ * ("22:00-04:00") and a range whose start equals its end is the whole day. An
+ * empty value has no window at all.
+ */
+public final class OffPeakWindows {
+
+	private final List<LocalTime[]> ranges;
+
+	private OffPeakWindows(List<LocalTime[]> ranges) {
+		this.ranges = Collections.unmodifiableList(ranges);
+	}
+
+	/*
+	 * Throws IllegalArgumentException if a range is not of the form HH:mm-HH:mm.
+	 */
+	public static OffPeakWindows parse(String windows) {
+		List<LocalTime[]> ranges = new ArrayList<LocalTime[]>();
+		for (String range : windows.split(",")) {
+			if (range.trim().isEmpty()) {
+				continue;
+			}
+			String[] bounds = range.trim().split("-");
+			if (bounds.length != 2) {
+				throw new IllegalArgumentException("Malformed time window: " + range);
+			}
+			try {
+				ranges.add(new LocalTime[] { LocalTime.parse(bounds[0].trim()), LocalTime.parse(bounds[1].trim()) });
+			} catch (RuntimeException e) {
+				throw new IllegalArgumentException("Malformed time window: " + range, e);
+			}
+		}
+		return new OffPeakWindows(ranges);
+	}
+
+	public boolean contains(LocalTime time) {
+		for (LocalTime[] range : ranges) {
+			LocalTime start = range[0];
+			LocalTime end = range[1];
+			if (start.equals(end)) {
+				return true;
+			}
+			boolean inRange = start.isBefore(end) ? !time.isBefore(start) && time.isBefore(end)
+					: !time.isBefore(start) || time.isBefore(end);
+			if (inRange) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isEmpty() {
+		return ranges.isEmpty();
+	}
+
+}
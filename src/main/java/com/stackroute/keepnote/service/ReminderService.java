@@ -1,8 +1,10 @@
 package com.stackroute.keepnote.service;
 
 import java.util.List;
+import java.util.Map;
 
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Reminder;
 
 public interface ReminderService {
@@ -14,6 +16,12 @@ public interface ReminderService {
 
 	public Reminder updateReminder(Reminder reminder, int id) throws ReminderNotFoundException;
 
+	public Reminder updateReminder(Reminder reminder, int id, int version)
+			throws ReminderNotFoundException, VersionConflictException;
+
+	public Reminder patchReminder(String userId, int id, Map<String, Object> patch, Integer version)
+			throws ReminderNotFoundException, VersionConflictException;
+
 	public boolean deleteReminder(int reminderId);
 
 	public Reminder getReminderById(int reminderId) throws ReminderNotFoundException;
@@ -1,7 +1,17 @@
 package com.stackroute.keepnote.service;
 
 import java.util.List;
+import java.util.Map;
+
+import javax.persistence.OptimisticLockException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.dao.ReminderDAO;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Reminder;
 
 /*
@@ -13,6 +23,7 @@ import com.stackroute.keepnote.model.Reminder;
 * better. Additionally, tool support and additional behavior might rely on it in the 
 * future.
 * */
+@Service
 public class ReminderServiceImpl implements ReminderService {
 
 	/*
@@ -20,15 +31,19 @@ public class ReminderServiceImpl implements ReminderService {
 	 * autowiring) Please note that we should not create any object using the new
 	 * keyword.
 	 */
+	private ReminderDAO reminderDAO;
 
-	
+	@Autowired
+	public ReminderServiceImpl(ReminderDAO reminderDAO) {
+		this.reminderDAO = reminderDAO;
+	}
 
 	/*
 	 * This method should be used to save a new reminder.
 	 */
 
 	public boolean createReminder(Reminder reminder) {
-		return false;
+		return reminderDAO.createReminder(reminder);
 
 	}
 
@@ -37,21 +52,84 @@ public class ReminderServiceImpl implements ReminderService {
 	 */
 
 	public Reminder updateReminder(Reminder reminder, int id) throws ReminderNotFoundException {
+		reminder.setVersion(reminderDAO.getReminderById(id).getVersion());
+		reminderDAO.updateReminder(reminder);
+		return reminder;
+	}
+
+	/*
+	 * This method should be used to update a existing reminder only if it still
+	 * has the version the client read. One versioned UPDATE is issued; the reminder
+	 * is looked up only when it matched no row.
+	 */
+
+	public Reminder updateReminder(Reminder reminder, int id, int version)
+			throws ReminderNotFoundException, VersionConflictException {
+		reminder.setVersion(version);
+		try {
+			reminderDAO.updateReminder(reminder);
+		} catch (OptimisticLockException e) {
+			reminderDAO.getReminderById(id);
+			throw new VersionConflictException("Reminder has been modified");
+		}
+		return reminder;
+	}
+
+	/*
+	 * This method should be used to apply a JSON merge patch to a reminder: only
+	 * the name, description and type present in the patch are changed. The
+	 * reminder is usually served from the second level cache and only the changed
+	 * columns are written (@DynamicUpdate). Throws ReminderNotFoundException if
+	 * the user has no such reminder, VersionConflictException if it is not at the
+	 * given version or was changed before the write.
+	 */
+
+	@Transactional
+	public Reminder patchReminder(String userId, int id, Map<String, Object> patch, Integer version)
+			throws ReminderNotFoundException, VersionConflictException {
+		Reminder reminder = reminderDAO.getReminderById(id);
+		if (!userId.equals(reminder.getReminderCreatedBy())) {
+			throw new ReminderNotFoundException("Reminder Not Found");
+		}
+		if (version != null && reminder.getVersion() != version) {
+			throw new VersionConflictException("Reminder has been modified");
+		}
+		for (Map.Entry<String, Object> entry : patch.entrySet()) {
+			if ("reminderName".equals(entry.getKey())) {
+				reminder.setReminderName(text(entry));
+			} else if ("reminderDescription".equals(entry.getKey())) {
+				reminder.setReminderDescription(text(entry));
+			} else if ("reminderType".equals(entry.getKey())) {
+				reminder.setReminderType(text(entry));
+			} else {
+				throw new IllegalArgumentException("Property cannot be patched: " + entry.getKey());
+			}
+		}
+		try {
+			reminderDAO.updateReminder(reminder);
+		} catch (OptimisticLockException e) {
+			throw new VersionConflictException("Reminder has been modified");
+		}
 		return reminder;
 	}
 
 	/* This method should be used to delete an existing reminder. */
 	
 	public boolean deleteReminder(int reminderId) {
-		return false;
+		return reminderDAO.deleteReminder(reminderId);
 	}
 
 	/*
 	 * This method should be used to get a reminder by reminderId.
 	 */
 	
+	@Transactional(readOnly = true)
 	public Reminder getReminderById(int reminderId) throws ReminderNotFoundException {
-		return null;
+		Reminder reminder = reminderDAO.getReminderById(reminderId);
+		if (reminder == null) {
+			throw new ReminderNotFoundException("Reminder Not Found");
+		}
+		return reminder;
 
 	}
 
@@ -59,8 +137,17 @@ public class ReminderServiceImpl implements ReminderService {
 	 * This method should be used to get a reminder by userId.
 	 */
 
+	@Transactional(readOnly = true)
 	public List<Reminder> getAllReminderByUserId(String userId) {
-		return null;
+		return reminderDAO.getAllReminderByUserId(userId);
 
 	}
+
+	private static String text(Map.Entry<String, Object> entry) {
+		if (entry.getValue() != null && !(entry.getValue() instanceof String)) {
+			throw new IllegalArgumentException(entry.getKey() + " must be a string");
+		}
+		return (String) entry.getValue();
+	}
+
 }
@@ -0,0 +1,11 @@
+package com.stackroute.keepnote.service;
+
+import com.stackroute.keepnote.model.EraseJob;
+
+public interface UserEraseService {
+
+	public EraseJob eraseUser(String userId);
+
+	public EraseJob getEraseJob(String jobId);
+
+}
@@ -0,0 +1,133 @@
+package com.stackroute.keepnote.service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.dao.CategoryDAO;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.dao.ReminderDAO;
+import com.stackroute.keepnote.dao.UserDAO;
+import com.stackroute.keepnote.model.EraseJob;
+
+/*
+ * Erases users in the background. Notes and archived notes go first (they
+ * reference categories and reminders), then categories, reminders and finally
+ * the user row. Each chunk is a separate DELETE ... LIMIT in its own
+ * transaction, with a pause in between, so row locks are held briefly and
+ * foreground requests keep running. Jobs are kept in memory and are lost on
+ * restart; erasing again is safe since every step only deletes what is left.
+ * Finished jobs are dropped erase.job_retention_ms after they finished.
+ */
+@Service
+public class UserEraseServiceImpl implements UserEraseService {
+
+	private UserDAO userDAO;
+
+	private NoteDAO noteDAO;
+
+	private CategoryDAO categoryDAO;
+
+	private ReminderDAO reminderDAO;
+
+	private TaskExecutor taskExecutor;
+
+	private final Map<String, EraseJob> jobs = new ConcurrentHashMap<String, EraseJob>();
+
+	@Value("${erase.chunk_size:1000}")
+	private int chunkSize = 1000;
+
+	@Value("${erase.pause_ms:50}")
+	private long pauseMillis = 50;
+
+	@Value("${erase.job_retention_ms:3600000}")
+	private long jobRetentionMillis = 3600000;
+
+	@Autowired
+	public UserEraseServiceImpl(UserDAO userDAO, NoteDAO noteDAO, CategoryDAO categoryDAO, ReminderDAO reminderDAO,
+			@Qualifier("backgroundTaskExecutor") TaskExecutor taskExecutor) {
+		this.userDAO = userDAO;
+		this.noteDAO = noteDAO;
+		this.categoryDAO = categoryDAO;
+		this.reminderDAO = reminderDAO;
+		this.taskExecutor = taskExecutor;
+	}
+
+	/*
+	 * This method should be used to start erasing a user. It returns at once with
+	 * the job, whose progress can be followed with getEraseJob.
+	 */
+	public EraseJob eraseUser(String userId) {
+		pruneJobs();
+		final EraseJob job = new EraseJob(UUID.randomUUID().toString(), userId);
+		jobs.put(job.getJobId(), job);
+		taskExecutor.execute(() -> run(job));
+		return job;
+	}
+
+	/*
+	 * This method should be used to get an erase job by jobId, or null if there is
+	 * no such job.
+	 */
+	public EraseJob getEraseJob(String jobId) {
+		pruneJobs();
+		return jobs.get(jobId);
+	}
+
+	private void pruneJobs() {
+		long finishedBefore = System.currentTimeMillis() - jobRetentionMillis;
+		jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().getTime() < finishedBefore);
+	}
+
+	private void run(EraseJob job) {
+		job.setStatus(EraseJob.RUNNING);
+		ShardContext.setUserId(job.getUserId());
+		try {
+			int deleted;
+			while ((deleted = noteDAO.deleteNotesByUserId(job.getUserId(), chunkSize)) > 0) {
+				job.setNotesDeleted(job.getNotesDeleted() + deleted);
+				pause();
+			}
+			while ((deleted = noteDAO.deleteArchivedNotesByUserId(job.getUserId(), chunkSize)) > 0) {
+				job.setNotesDeleted(job.getNotesDeleted() + deleted);
+				pause();
+			}
+			while ((deleted = categoryDAO.deleteCategoriesByUserId(job.getUserId(), chunkSize)) > 0) {
+				job.setCategoriesDeleted(job.getCategoriesDeleted() + deleted);
+				pause();
+			}
+			while ((deleted = reminderDAO.deleteRemindersByUserId(job.getUserId(), chunkSize)) > 0) {
+				job.setRemindersDeleted(job.getRemindersDeleted() + deleted);
+				pause();
+			}
+			userDAO.deleteUser(job.getUserId());
+			job.setStatus(EraseJob.COMPLETED);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			job.setError("Interrupted");
+			job.setStatus(EraseJob.FAILED);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			job.setError(e.getMessage());
+			job.setStatus(EraseJob.FAILED);
+		} finally {
+			ShardContext.clear();
+			job.setFinishedAt(new Date());
+		}
+	}
+
+	private void pause() throws InterruptedException {
+		if (pauseMillis > 0) {
+			Thread.sleep(pauseMillis);
+		}
+	}
+
+}
@@ -1,5 +1,10 @@
 package com.stackroute.keepnote.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.stackroute.keepnote.dao.UserDAO;
 import com.stackroute.keepnote.exception.UserAlreadyExistException;
 import com.stackroute.keepnote.exception.UserNotFoundException;
 import com.stackroute.keepnote.model.User;
@@ -13,7 +18,7 @@ import com.stackroute.keepnote.model.User;
 * better. Additionally, tool support and additional behavior might rely on it in the 
 * future.
 * */
-
+@Service
 public class UserServiceImpl implements UserService {
 
 	/*
@@ -21,13 +26,22 @@ public class UserServiceImpl implements UserService {
 	 * autowiring) Please note that we should not create any object using the new
 	 * keyword.
 	 */
+	private UserDAO userDAO;
+
+	@Autowired
+	public UserServiceImpl(UserDAO userDAO) {
+		this.userDAO = userDAO;
+	}
 
 	/*
 	 * This method should be used to save a new user.
 	 */
 
 	public boolean registerUser(User user) throws UserAlreadyExistException {
-		return false;
+		if (userDAO.getUserById(user.getUserId()) != null) {
+			throw new UserAlreadyExistException("User Already Exists");
+		}
+		return userDAO.registerUser(user);
 
 	}
 
@@ -36,6 +50,10 @@ public class UserServiceImpl implements UserService {
 	 */
 
 	public User updateUser(User user, String userId) throws Exception {
+		if (userDAO.getUserById(userId) == null) {
+			throw new UserNotFoundException("User Not Found");
+		}
+		userDAO.updateUser(user);
 		return user;
 
 	}
@@ -44,8 +62,13 @@ public class UserServiceImpl implements UserService {
 	 * This method should be used to get a user by userId.
 	 */
 
+	@Transactional(value = "directoryTransactionManager", readOnly = true)
 	public User getUserById(String UserId) throws UserNotFoundException {
-		return null;
+		User user = userDAO.getUserById(UserId);
+		if (user == null) {
+			throw new UserNotFoundException("User Not Found");
+		}
+		return user;
 
 	}
 
@@ -54,13 +77,16 @@ public class UserServiceImpl implements UserService {
 	 */
 
 	public boolean validateUser(String userId, String password) throws UserNotFoundException {
-		return false;
+		if (!userDAO.validateUser(userId, password)) {
+			throw new UserNotFoundException("Invalid user id or password");
+		}
+		return true;
 
 	}
 
 	/* This method should be used to delete an existing user. */
 	public boolean deleteUser(String UserId) {
-		return false;
+		return userDAO.deleteUser(UserId);
 
 	}
 
@@ -0,0 +1,56 @@
+package db.migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import com.stackroute.keepnote.model.NoteBody;
+import com.stackroute.keepnote.model.NoteContentConverter;
+
+/*
+ * Moves the content of the existing notes into NoteBody, one body per distinct
+ * content, and points the notes at their body. The hash has to be computed on
+ * the decoded text, hence a Java migration. Notes are handled in batches so
+ * large tables are not read at once.
+ */
+public class V10__Move_note_content_to_bodies extends BaseJavaMigration {
+
+	private static final int BATCH_SIZE = 500;
+
+	@Override
+	public void migrate(Context context) throws Exception {
+		Connection connection = context.getConnection();
+		NoteContentConverter converter = new NoteContentConverter();
+		try (PreparedStatement select = connection.prepareStatement("SELECT note_id, note_content FROM Note"
+				+ " WHERE content_hash IS NULL AND note_content IS NOT NULL LIMIT " + BATCH_SIZE);
+				PreparedStatement upsert = connection.prepareStatement("INSERT INTO NoteBody"
+						+ " (content_hash, content, ref_count) VALUES (?, ?, 1)"
+						+ " ON DUPLICATE KEY UPDATE ref_count = ref_count + 1");
+				PreparedStatement update = connection
+						.prepareStatement("UPDATE Note SET content_hash = ? WHERE note_id = ?")) {
+			int moved;
+			do {
+				moved = 0;
+				try (ResultSet rows = select.executeQuery()) {
+					while (rows.next()) {
+						byte[] stored = rows.getBytes("note_content");
+						String hash = NoteBody.hashOf(converter.convertToEntityAttribute(stored));
+						upsert.setString(1, hash);
+						upsert.setBytes(2, stored);
+						upsert.addBatch();
+						update.setString(1, hash);
+						update.setInt(2, rows.getInt("note_id"));
+						update.addBatch();
+						moved++;
+					}
+				}
+				upsert.executeBatch();
+				update.executeBatch();
+			} while (moved == BATCH_SIZE);
+		}
+	}
+
+}
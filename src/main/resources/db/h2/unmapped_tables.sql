@@ -0,0 +1,29 @@
+-- Tables of the embedded H2 shards that have no entity, hence are not created
+-- by hbm2ddl with the mapped ones. Same columns and keys as the MySQL
+-- migrations (V3, V5 and V16, V13): keep them in step.
+
+CREATE TABLE IF NOT EXISTS IdempotencyKey (
+  user_id VARCHAR(255) NOT NULL,
+  idempotency_key VARCHAR(255) NOT NULL,
+  note_id INT NOT NULL,
+  created_at DATETIME NOT NULL,
+  PRIMARY KEY (user_id, idempotency_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_idempotency_created ON IdempotencyKey (created_at);
+
+CREATE TABLE IF NOT EXISTS ImportCheckpoint (
+  user_id VARCHAR(255) NOT NULL,
+  import_name VARCHAR(255) NOT NULL,
+  lines_done BIGINT NOT NULL,
+  updated_at DATETIME NOT NULL,
+  PRIMARY KEY (user_id, import_name)
+);
+
+CREATE TABLE IF NOT EXISTS NoteCounter (
+  user_id VARCHAR(255) NOT NULL,
+  dimension VARCHAR(16) NOT NULL,
+  counter_key VARCHAR(255) NOT NULL,
+  note_count INT NOT NULL,
+  PRIMARY KEY (user_id, dimension, counter_key)
+);
@@ -0,0 +1,4 @@
+-- Note contents now live in NoteBody only.
+
+ALTER TABLE Note DROP COLUMN note_content,
+  ADD CONSTRAINT fk_note_body FOREIGN KEY (content_hash) REFERENCES NoteBody (content_hash);
@@ -0,0 +1,11 @@
+-- Revisions of the note contents: full snapshots every
+-- revision.snapshot_interval revisions and text deltas in between.
+
+CREATE TABLE NoteRevision (
+  note_id INT NOT NULL,
+  revision INT NOT NULL,
+  snapshot BIT(1) NOT NULL,
+  payload MEDIUMBLOB,
+  created_at DATETIME NOT NULL,
+  PRIMARY KEY (note_id, revision)
+) ENGINE=InnoDB;
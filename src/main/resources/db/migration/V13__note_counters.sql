@@ -0,0 +1,35 @@
+-- Per-user note counters (see NoteCounterStore): the number of notes not
+-- deleted, archived ones included, in total and per status, category and
+-- reminder; notes without one are counted under the empty key.
+
+CREATE TABLE NoteCounter (
+  user_id VARCHAR(255) NOT NULL,
+  dimension VARCHAR(16) NOT NULL,
+  counter_key VARCHAR(255) NOT NULL,
+  note_count INT NOT NULL,
+  PRIMARY KEY (user_id, dimension, counter_key)
+) ENGINE=InnoDB;
+
+INSERT INTO NoteCounter (user_id, dimension, counter_key, note_count)
+SELECT created_by, 'total', '', COUNT(*) FROM (
+  SELECT created_by FROM Note WHERE deleted = 0
+  UNION ALL SELECT created_by FROM NoteArchive
+) n WHERE created_by IS NOT NULL GROUP BY created_by;
+
+INSERT INTO NoteCounter (user_id, dimension, counter_key, note_count)
+SELECT created_by, 'status', COALESCE(note_status, ''), COUNT(*) FROM (
+  SELECT created_by, note_status FROM Note WHERE deleted = 0
+  UNION ALL SELECT created_by, note_status FROM NoteArchive
+) n WHERE created_by IS NOT NULL GROUP BY created_by, COALESCE(note_status, '');
+
+INSERT INTO NoteCounter (user_id, dimension, counter_key, note_count)
+SELECT created_by, 'category', COALESCE(CAST(category_id AS CHAR), ''), COUNT(*) FROM (
+  SELECT created_by, category_id FROM Note WHERE deleted = 0
+  UNION ALL SELECT created_by, category_id FROM NoteArchive
+) n WHERE created_by IS NOT NULL GROUP BY created_by, COALESCE(CAST(category_id AS CHAR), '');
+
+INSERT INTO NoteCounter (user_id, dimension, counter_key, note_count)
+SELECT created_by, 'reminder', COALESCE(CAST(reminder_id AS CHAR), ''), COUNT(*) FROM (
+  SELECT created_by, reminder_id FROM Note WHERE deleted = 0
+  UNION ALL SELECT created_by, reminder_id FROM NoteArchive
+) n WHERE created_by IS NOT NULL GROUP BY created_by, COALESCE(CAST(reminder_id AS CHAR), '');
@@ -0,0 +1,14 @@
+-- Transactional outbox: one row per change of a note, category or reminder,
+-- written in the transaction of the change and removed by the change relay
+-- once published.
+
+CREATE TABLE ChangeOutbox (
+  change_id BIGINT NOT NULL AUTO_INCREMENT,
+  entity_type VARCHAR(16) NOT NULL,
+  entity_id INT NOT NULL,
+  operation VARCHAR(8) NOT NULL,
+  user_id VARCHAR(255),
+  version INT NOT NULL,
+  changed_at DATETIME NOT NULL,
+  PRIMARY KEY (change_id)
+) ENGINE=InnoDB;
@@ -0,0 +1,5 @@
+-- Archived note content is stored like the note bodies (see NoteContentConverter)
+-- instead of as bare zlib data. The existing rows hold a zlib stream, which is
+-- what follows the FORMAT_DEFLATE marker (1), so they only get the marker.
+
+UPDATE NoteArchive SET note_content = CONCAT(X'01', note_content) WHERE note_content IS NOT NULL;
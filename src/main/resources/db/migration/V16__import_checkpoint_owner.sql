@@ -0,0 +1,8 @@
+-- Import checkpoints belong to the user importing: two users importing files
+-- of the same name each resume from their own progress. The checkpoints kept
+-- so far have no user and are dropped; importing such a file again reads it
+-- from the start and rejects the lines whose rows were already imported.
+
+DELETE FROM ImportCheckpoint;
+ALTER TABLE ImportCheckpoint ADD COLUMN user_id VARCHAR(255) NOT NULL FIRST;
+ALTER TABLE ImportCheckpoint DROP PRIMARY KEY, ADD PRIMARY KEY (user_id, import_name);
@@ -0,0 +1,17 @@
+-- Every user scoped query filters on the owner column, so index it.
+--
+-- InnoDB stores rows in primary key order. Making the note primary key
+-- (created_by, note_id) keeps all notes of one user on contiguous pages;
+-- note_id stays unique on its own, which is all Hibernate relies on.
+
+ALTER TABLE Note
+	DROP PRIMARY KEY,
+	ADD PRIMARY KEY (created_by, note_id),
+	ADD UNIQUE KEY uk_note_id (note_id),
+	ADD KEY idx_note_owner_created (created_by, note_creation_date, note_id);
+
+ALTER TABLE Category
+	ADD KEY idx_category_owner (category_creator);
+
+ALTER TABLE Reminder
+	ADD KEY idx_reminder_owner (reminder_creator);
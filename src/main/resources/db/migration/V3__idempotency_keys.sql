@@ -0,0 +1,11 @@
+-- Idempotency-Key values already used to create a note, per user, so that a
+-- retried create returns the original outcome instead of inserting twice.
+
+CREATE TABLE IdempotencyKey (
+	user_id VARCHAR(255) NOT NULL,
+	idempotency_key VARCHAR(255) NOT NULL,
+	note_id INT NOT NULL,
+	created_at DATETIME NOT NULL,
+	PRIMARY KEY (user_id, idempotency_key),
+	KEY idx_idempotency_created (created_at)
+) ENGINE=InnoDB;
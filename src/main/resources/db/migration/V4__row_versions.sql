@@ -0,0 +1,6 @@
+-- Version column per row for optimistic locking. Updates carry the version the
+-- client last read and only succeed when it is still current.
+
+ALTER TABLE Note ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE Category ADD COLUMN version INT NOT NULL DEFAULT 0;
+ALTER TABLE Reminder ADD COLUMN version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- Progress of bulk imports: the number of lines of the import file that are
+-- committed. It is written in the same transaction as the rows of each chunk,
+-- so a restarted import resumes exactly after the last committed chunk.
+
+CREATE TABLE ImportCheckpoint (
+	import_name VARCHAR(255) NOT NULL,
+	lines_done BIGINT NOT NULL,
+	updated_at DATETIME NOT NULL,
+	PRIMARY KEY (import_name)
+) ENGINE=InnoDB;
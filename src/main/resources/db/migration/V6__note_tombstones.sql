@@ -0,0 +1,7 @@
+-- Deleting a note only marks it deleted, so it can still be restored. Marked
+-- notes are removed by the purger once they are older than the retention; the
+-- index lets it find them without scanning live notes.
+
+ALTER TABLE Note ADD COLUMN deleted BIT(1) NOT NULL DEFAULT 0;
+ALTER TABLE Note ADD COLUMN deleted_at DATETIME NULL;
+ALTER TABLE Note ADD KEY idx_note_tombstones (deleted, deleted_at);
@@ -0,0 +1,20 @@
+-- Cold storage for notes past the archive age or status: same columns as Note,
+-- with the content deflated, and only the index needed to list a user's notes.
+-- Archived notes move back to Note when they are changed.
+
+CREATE TABLE NoteArchive (
+	note_id INT NOT NULL,
+	note_title VARCHAR(255),
+	note_content MEDIUMBLOB,
+	note_status VARCHAR(255),
+	note_creation_date DATETIME,
+	category_id INT,
+	reminder_id INT,
+	created_by VARCHAR(255) NOT NULL,
+	version INT NOT NULL DEFAULT 0,
+	archived_at DATETIME NOT NULL,
+	PRIMARY KEY (note_id),
+	KEY idx_note_archive_owner (created_by, note_creation_date),
+	CONSTRAINT fk_note_archive_category FOREIGN KEY (category_id) REFERENCES Category (category_id),
+	CONSTRAINT fk_note_archive_reminder FOREIGN KEY (reminder_id) REFERENCES Reminder (reminder_id)
+) ENGINE=InnoDB;
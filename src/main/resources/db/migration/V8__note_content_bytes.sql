@@ -0,0 +1,6 @@
+-- Note content is stored as bytes with a format marker, compressed when large
+-- (see NoteContentConverter). Converting to utf8mb4 first makes the existing
+-- rows UTF-8 bytes without marker, which the converter reads as plain text.
+
+ALTER TABLE Note MODIFY note_content MEDIUMTEXT CHARACTER SET utf8mb4;
+ALTER TABLE Note MODIFY note_content MEDIUMBLOB;
@@ -0,0 +1,12 @@
+-- Note contents are stored once per distinct content in NoteBody, keyed by
+-- the SHA-256 of the content and counting the notes referring to it. The
+-- existing contents are moved over by V10 (a Java migration).
+
+CREATE TABLE NoteBody (
+  content_hash CHAR(64) CHARACTER SET ascii NOT NULL,
+  content MEDIUMBLOB,
+  ref_count INT NOT NULL,
+  PRIMARY KEY (content_hash)
+) ENGINE=InnoDB;
+
+ALTER TABLE Note ADD COLUMN content_hash CHAR(64) CHARACTER SET ascii NULL;
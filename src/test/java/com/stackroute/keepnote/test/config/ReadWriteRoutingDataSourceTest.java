@@ -0,0 +1,62 @@
+package com.stackroute.keepnote.test.config;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.stackroute.keepnote.config.ReadWriteRoutingDataSource;
+
+public class ReadWriteRoutingDataSourceTest {
+
+	private EmbeddedDatabase primary;
+	private EmbeddedDatabase replica;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate transactionTemplate;
+
+	@Before
+	public void setUp() {
+		primary = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("primary").build();
+		replica = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("replica").build();
+		new JdbcTemplate(primary).execute("CREATE TABLE node (name VARCHAR(10)); INSERT INTO node VALUES ('primary')");
+		new JdbcTemplate(replica).execute("CREATE TABLE node (name VARCHAR(10)); INSERT INTO node VALUES ('replica')");
+
+		ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(primary, Arrays.<DataSource>asList(replica));
+		routingDataSource.afterPropertiesSet();
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+	}
+
+	@After
+	public void tearDown() {
+		primary.shutdown();
+		replica.shutdown();
+	}
+
+	@Test
+	public void testReadOnlyTransactionUsesReplica() {
+		transactionTemplate.setReadOnly(true);
+		String node = transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+		assertEquals("replica", node);
+	}
+
+	@Test
+	public void testReadWriteTransactionUsesPrimary() {
+		String node = transactionTemplate.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM node", String.class));
+		assertEquals("primary", node);
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.stackroute.keepnote.test.config;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.config.ShardRoutingTransactionManager;
+
+public class ShardRoutingTransactionManagerTest {
+
+	private EmbeddedDatabase directory;
+	private EmbeddedDatabase shard0;
+	private EmbeddedDatabase shard1;
+	private TransactionTemplate transactionTemplate;
+
+	@Before
+	public void setUp() {
+		directory = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("directory").build();
+		shard0 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("shard0").build();
+		shard1 = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).setName("shard1").build();
+		new JdbcTemplate(shard0).execute("CREATE TABLE note (title VARCHAR(10))");
+		new JdbcTemplate(shard1).execute("CREATE TABLE note (title VARCHAR(10))");
+		transactionTemplate = new TransactionTemplate(new ShardRoutingTransactionManager(
+				new DataSourceTransactionManager(directory), Arrays.<PlatformTransactionManager>asList(
+						new DataSourceTransactionManager(shard0), new DataSourceTransactionManager(shard1))));
+	}
+
+	@After
+	public void tearDown() {
+		ShardContext.clear();
+		directory.shutdown();
+		shard0.shutdown();
+		shard1.shutdown();
+	}
+
+	@Test
+	public void testShardOfIsStable() {
+		assertEquals(0, ShardRouter.shardOf("Jhon123", 2));
+		assertEquals(1, ShardRouter.shardOf("Jhon124", 2));
+		assertEquals(2, ShardRouter.shardOf("Jhon123", 4));
+		assertEquals(ShardRouter.shardOf("alice", 3), ShardRouter.shardOf(new String("alice"), 3));
+	}
+
+	@Test
+	public void testTransactionRunsOnShardOfUser() {
+		ShardContext.setUserId("Jhon124");
+		transactionTemplate.execute(status -> {
+			assertTrue(TransactionSynchronizationManager.hasResource(shard1));
+			assertFalse(TransactionSynchronizationManager.hasResource(shard0));
+			return null;
+		});
+	}
+
+	@Test
+	public void testTransactionWithoutUserRunsOnDirectory() {
+		transactionTemplate.execute(status -> {
+			assertTrue(TransactionSynchronizationManager.hasResource(directory));
+			return null;
+		});
+	}
+
+	@Test
+	public void testSelectedShardTakesPrecedenceOverUser() {
+		ShardContext.setUserId("Jhon123");
+		ShardContext.setShard(1);
+		transactionTemplate.execute(status -> {
+			assertTrue(TransactionSynchronizationManager.hasResource(shard1));
+			assertFalse(TransactionSynchronizationManager.hasResource(shard0));
+			return null;
+		});
+	}
+
+	@Test
+	public void testRollbackGoesToShardOfTransaction() {
+		ShardContext.setUserId("Jhon123");
+		transactionTemplate.execute(status -> {
+			new JdbcTemplate(shard0).update("INSERT INTO note VALUES ('lost')");
+			ShardContext.setUserId("Jhon124");
+			status.setRollbackOnly();
+			return null;
+		});
+		assertEquals(Integer.valueOf(0),
+				new JdbcTemplate(shard0).queryForObject("SELECT COUNT(*) FROM note", Integer.class));
+	}
+
+}
@@ -1,5 +1,6 @@
 package com.stackroute.keepnote.test.controller;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.*;
 import java.util.ArrayList;
 import java.util.Date;
@@ -11,23 +12,28 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stackroute.keepnote.config.ApplicationContextConfig;
 import com.stackroute.keepnote.controller.NoteController;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NotePage;
+import com.stackroute.keepnote.model.NoteRevision;
 import com.stackroute.keepnote.model.Reminder;
 import com.stackroute.keepnote.model.User;
 import com.stackroute.keepnote.service.NoteService;
@@ -57,6 +63,8 @@ public class NoteControllerTest {
 	private NoteService noteService;
 	@Autowired
 	private MockHttpSession session;
+	@Autowired
+	private ObjectMapper objectMapper;
 	@InjectMocks
 	private NoteController noteController;
 
@@ -129,6 +137,39 @@ public class NoteControllerTest {
 
 	}
 
+	@Test
+	public void testNoteContentIsReadAndWrittenAsJson() throws Exception {
+
+		// the message converter of the application, not the default one of standaloneSetup
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(noteController)
+				.setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper)).build();
+		when(noteService.createNote(any())).thenReturn(true);
+		mockMvc.perform(post("/note").contentType(MediaType.APPLICATION_JSON)
+				.content(objectMapper.writeValueAsString(note)).session(session)).andExpect(status().isCreated());
+		ArgumentCaptor<Note> created = ArgumentCaptor.forClass(Note.class);
+		verify(noteService).createNote(created.capture());
+		assertEquals("Complete testing for step-5", created.getValue().getNoteContent());
+
+		when(noteService.getNotesByUserId("Jhon123", null, 10)).thenReturn(new NotePage(allNotesByUserId, null));
+		mockMvc.perform(get("/note").param("limit", "10").session(session)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.notes[2].noteContent").value("Complete testing for step-5"));
+	}
+
+	@Test
+	public void testRevisionContentIsWrittenAsJson() throws Exception {
+
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(noteController)
+				.setMessageConverters(new MappingJackson2HttpMessageConverter(objectMapper)).build();
+		NoteRevision noteRevision = new NoteRevision();
+		ReflectionTestUtils.setField(noteRevision, "noteId", 1);
+		ReflectionTestUtils.setField(noteRevision, "revision", 2);
+		noteRevision.setContent("Complete testing for step-3");
+		when(noteService.getNoteRevision("Jhon123", 1, 2)).thenReturn(noteRevision);
+		mockMvc.perform(get("/note/{id}/revisions/{revision}", 1, 2).session(session)).andExpect(status().isOk())
+				.andExpect(jsonPath("$.revision").value(2))
+				.andExpect(jsonPath("$.content").value("Complete testing for step-3"));
+	}
+
 	@Test
 	public void testCreateNoteFailure() throws Exception {
 
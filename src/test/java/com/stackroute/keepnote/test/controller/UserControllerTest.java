@@ -27,7 +27,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.stackroute.keepnote.config.ApplicationContextConfig;
 import com.stackroute.keepnote.controller.UserController;
 import com.stackroute.keepnote.exception.UserAlreadyExistException;
+import com.stackroute.keepnote.model.EraseJob;
 import com.stackroute.keepnote.model.User;
+import com.stackroute.keepnote.service.UserEraseService;
 import com.stackroute.keepnote.service.UserService;
 
 @RunWith(SpringRunner.class)
@@ -41,8 +43,10 @@ public class UserControllerTest {
 	private MockHttpSession session;
 	@Mock
 	private UserService userService;
+	@Mock
+	private UserEraseService userEraseService;
 	@InjectMocks
-	private UserController userController = new UserController(userService);
+	private UserController userController = new UserController(userService, userEraseService);
 
 	@Before
 	public void setUp() throws Exception {
@@ -139,6 +143,54 @@ public class UserControllerTest {
 		mockMvc.perform(get("/user/{id}", user.getUserId())).andExpect(status().isUnauthorized()).andDo(print());
 	}
 
+	@Test
+	public void testEraseUserSuccess() throws Exception {
+		when(userEraseService.eraseUser(user.getUserId())).thenReturn(new EraseJob("job1", user.getUserId()));
+		mockMvc.perform(post("/user/{id}/erase", user.getUserId()).session(session))
+				.andExpect(status().isAccepted()).andDo(print());
+		verify(userEraseService).eraseUser(user.getUserId());
+	}
+
+	@Test
+	public void testEraseOtherUserFailure() throws Exception {
+		mockMvc.perform(post("/user/{id}/erase", "Ann456").session(session)).andExpect(status().isForbidden())
+				.andDo(print());
+		verify(userEraseService, never()).eraseUser(any());
+	}
+
+	@Test
+	public void testEraseUserWithoutSessionFailure() throws Exception {
+		mockMvc.perform(post("/user/{id}/erase", user.getUserId())).andExpect(status().isUnauthorized())
+				.andDo(print());
+		verify(userEraseService, never()).eraseUser(any());
+	}
+
+	@Test
+	public void testGetEraseJobSuccess() throws Exception {
+		when(userEraseService.getEraseJob("job1")).thenReturn(new EraseJob("job1", user.getUserId()));
+		mockMvc.perform(get("/user/erase/{jobId}", "job1").session(session)).andExpect(status().isOk())
+				.andDo(print());
+	}
+
+	@Test
+	public void testGetEraseJobOfOtherUserFailure() throws Exception {
+		when(userEraseService.getEraseJob("job1")).thenReturn(new EraseJob("job1", "Ann456"));
+		mockMvc.perform(get("/user/erase/{jobId}", "job1").session(session)).andExpect(status().isNotFound())
+				.andDo(print());
+	}
+
+	@Test
+	public void testGetEraseJobFailure() throws Exception {
+		when(userEraseService.getEraseJob("job1")).thenReturn(null);
+		mockMvc.perform(get("/user/erase/{jobId}", "job1").session(session)).andExpect(status().isNotFound())
+				.andDo(print());
+	}
+
+	@Test
+	public void testGetEraseJobWithoutSessionFailure() throws Exception {
+		mockMvc.perform(get("/user/erase/{jobId}", "job1")).andExpect(status().isUnauthorized()).andDo(print());
+	}
+
 	public static String asJsonString(final Object obj) {
 		try {
 
@@ -8,6 +8,7 @@ import javax.persistence.Query;
 import javax.transaction.Transactional;
 
 import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -115,4 +116,20 @@ public class CategoryDAOImplTest {
 		assertEquals(3, allCategories.size());
 	}
 
+	@Test
+	@Rollback(true)
+	public void testCachedListIsInvalidatedOnInsert() {
+		Statistics statistics = sessionFactory.getStatistics();
+		int before = categoryDAO.getAllCategoryByUserId("Jhon123").size();
+		long hits = statistics.getQueryCacheHitCount();
+		// nothing written since: served from the category.byUser region
+		assertEquals(before, categoryDAO.getAllCategoryByUserId("Jhon123").size());
+		assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+		categoryDAO.createCategory(category);
+		categoryDAO.createCategory(new Category(2, "Testing-2", "All about testing the query cache", null, "Jhon123", null));
+		// the inserts invalidated the cached list, which is read again from the database
+		assertEquals(before + 2, categoryDAO.getAllCategoryByUserId("Jhon123").size());
+		assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+	}
+
 }
@@ -1,12 +1,30 @@
 package com.stackroute.keepnote.test.dao;
 
 import static org.junit.Assert.*;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
+import javax.persistence.OptimisticLockException;
 import javax.persistence.Query;
 import javax.transaction.Transactional;
+import org.hibernate.HibernateException;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.ResultSetMappingDefinition;
+import org.hibernate.engine.query.spi.sql.NativeSQLQueryReturn;
+import org.hibernate.engine.spi.NamedQueryDefinitionBuilder;
+import org.hibernate.engine.spi.NamedSQLQueryDefinitionBuilder;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.NamedQueryRepository;
+import org.hibernate.procedure.ProcedureCallMemento;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,12 +37,23 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.support.DependencyInjectionTestExecutionListener;
 import org.springframework.test.context.transaction.TransactionalTestExecutionListener;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import com.stackroute.keepnote.config.ApplicationContextConfig;
+import com.stackroute.keepnote.config.ConnectionPoolMetrics;
+import com.stackroute.keepnote.dao.ChangeOutboxDAO;
+import com.stackroute.keepnote.dao.ChangeOutboxDAOImpl;
 import com.stackroute.keepnote.dao.NoteDAO;
 import com.stackroute.keepnote.dao.NoteDAOImpl;
 import com.stackroute.keepnote.exception.NoteNotFoundException;
+import com.stackroute.keepnote.model.ChangeRecord;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBody;
+import com.stackroute.keepnote.model.NoteCriteria;
+import com.stackroute.keepnote.model.NoteCursor;
+import com.stackroute.keepnote.model.NoteRevision;
+import com.stackroute.keepnote.model.NoteSummary;
+import com.stackroute.keepnote.model.UnmappedTableQueries;
 
 @RunWith(SpringRunner.class)
 @Transactional
@@ -34,6 +63,7 @@ import com.stackroute.keepnote.model.Note;
 public class NoteDAOImplTest {
 
 @Autowired private SessionFactory sessionFactory;
+@Autowired private ConnectionPoolMetrics connectionPoolMetrics;
 	       private NoteDAO noteDAO;
 	       private Note note;
 
@@ -60,6 +90,147 @@ public class NoteDAOImplTest {
 		noteDAO.deleteNote(note.getNoteId());
 	}
 
+	@Test
+	@Rollback(true)
+	@SuppressWarnings("unchecked")
+	public void testConnectionPoolMetricsAreExposed() {
+
+		noteDAO.createNote(note);
+		Map<String, Object> primary = connectionPoolMetrics.getStatistics().get("primary");
+		assertNotNull(primary);
+		// pool.maximum_pool_size of application.properties
+		assertEquals(10, primary.get("max"));
+		assertTrue(primary.containsKey("timeouts"));
+		// the checkout of the connection of this transaction was timed
+		Map<String, Object> checkoutWait = (Map<String, Object>) primary.get("checkoutWaitMicros");
+		assertTrue((Long) checkoutWait.get("count") >= 1);
+		assertTrue(primary.containsKey("usageMicros"));
+	}
+
+	@Test
+	@Rollback(true)
+	public void testDeleteNotesByCriteriaLeavesOtherNotes() throws NoteNotFoundException {
+
+		Date older = new Date(1528000000000L);
+		Date newer = new Date(1528000060000L);
+		noteDAO.createNote(new Note(1, "Testing-1", "Testing Service layer", "Done", older, null, null, "Jhon123"));
+		noteDAO.createNote(new Note(2, "Testing-2", "Testing Service layer", "Done", newer, null, null, "Jhon123"));
+		noteDAO.createNote(new Note(3, "Testing-3", "Testing Service layer", "Active", older, null, null, "Jhon123"));
+		noteDAO.createNote(new Note(4, "Testing-4", "Testing Service layer", "Done", older, null, null, "Other123"));
+		assertEquals(1, noteDAO.deleteNotes("Jhon123", new NoteCriteria("Done", null, null, new Date(1528000030000L))));
+		sessionFactory.getCurrentSession().clear();
+		List<Note> notes = noteDAO.getAllNotesByUserId("Jhon123");
+		assertEquals(2, notes.size());
+		assertEquals(2, notes.get(0).getNoteId());
+		assertEquals(3, notes.get(1).getNoteId());
+		assertEquals(0, noteDAO.getNoteById(2).getVersion());
+		assertEquals("Testing Service layer", noteDAO.getNoteById(3).getNoteContent());
+		assertEquals("Done", noteDAO.getNoteById(4).getNoteStatus());
+		try {
+			noteDAO.getNoteById(1);
+			fail("The matching note should be deleted");
+		} catch (NoteNotFoundException e) {
+		}
+	}
+
+	@Test
+	@Rollback(true)
+	public void testNoteSummariesOfUser() {
+
+		Date older = new Date(1528000000000L);
+		Date newer = new Date(1528000060000L);
+		noteDAO.createNote(new Note(1, "Testing-1", "Testing Service layer", "Active", older, null, null, "Jhon123"));
+		noteDAO.createNote(new Note(2, "Testing-2", "Testing Service layer", "Done", newer, null, null, "Jhon123"));
+		noteDAO.createNote(new Note(3, "Testing-3", "Testing Service layer", "Active", newer, null, null, "Other123"));
+		noteDAO.createNote(new Note(4, "Testing-4", "Testing Service layer", "Active", newer, null, null, "Jhon123"));
+		noteDAO.deleteNote(4);
+		sessionFactory.getCurrentSession().clear();
+		List<NoteSummary> summaries = noteDAO.getNoteSummariesByUserId("Jhon123");
+		assertEquals(2, summaries.size());
+		assertEquals(2, summaries.get(0).getNoteId());
+		assertEquals("Testing-2", summaries.get(0).getNoteTitle());
+		assertEquals("Done", summaries.get(0).getNoteStatus());
+		assertEquals(newer, summaries.get(0).getNoteCreatedAt());
+		assertEquals(1, summaries.get(1).getNoteId());
+		assertEquals("Testing-1", summaries.get(1).getNoteTitle());
+		assertEquals("Active", summaries.get(1).getNoteStatus());
+		assertEquals(older, summaries.get(1).getNoteCreatedAt());
+		// plain objects: no note was loaded into the session
+		assertEquals(0, sessionFactory.getCurrentSession().getStatistics().getEntityCount());
+	}
+
+	@Test
+	@Rollback(true)
+	public void testPagesOfUserEndWithNotesWithoutCreationDate() {
+
+		Date older = new Date(1528000000000L);
+		Date newer = new Date(1528000060000L);
+		Note first = new Note(1, "Testing-1", "Testing Service layer", "Active", older, null, null, "Jhon123");
+		Note second = new Note(2, "Testing-2", "Testing Service layer", "Active", null, null, null, "Jhon123");
+		Note third = new Note(3, "Testing-3", "Testing Service layer", "Active", newer, null, null, "Jhon123");
+		Note fourth = new Note(4, "Testing-4", "Testing Service layer", "Active", null, null, null, "Jhon123");
+		for (Note created : Arrays.asList(first, second, third, fourth)) {
+			noteDAO.createNote(created);
+		}
+		sessionFactory.getCurrentSession().clear();
+		List<Note> page = noteDAO.getNotesByUserIdAfter("Jhon123", null, 3);
+		assertEquals(3, page.size());
+		assertEquals(third.getNoteId(), page.get(0).getNoteId());
+		assertEquals(first.getNoteId(), page.get(1).getNoteId());
+		assertEquals(fourth.getNoteId(), page.get(2).getNoteId());
+		page = noteDAO.getNotesByUserIdAfter("Jhon123", NoteCursor.of(page.get(2)), 3);
+		assertEquals(1, page.size());
+		assertEquals(second.getNoteId(), page.get(0).getNoteId());
+		page = noteDAO.getNotesByUserIdAfter("Jhon123", NoteCursor.of(first), 3);
+		assertEquals(2, page.size());
+		assertEquals(fourth.getNoteId(), page.get(0).getNoteId());
+	}
+
+	@Test
+	@Rollback(true)
+	public void testArchivedNotesAreListedOnceArchived() {
+
+		noteDAO.createNote(note);
+		assertEquals(1, noteDAO.getAllNotesByUserId("Jhon123").size());
+		assertEquals(1, noteDAO.archiveNotes(null, Collections.singletonList("Active"), 10));
+		List<Note> notes = noteDAO.getAllNotesByUserId("Jhon123");
+		assertEquals(1, notes.size());
+		assertEquals("Testing-1", notes.get(0).getNoteTitle());
+		assertEquals("Testing Service layer", notes.get(0).getNoteContent());
+		assertTrue(noteDAO.promoteNote(note.getNoteId()));
+		assertEquals("Testing Service layer", noteDAO.getAllNotesByUserId("Jhon123").get(0).getNoteContent());
+	}
+
+	@Test
+	@Rollback(true)
+	public void testArchivedNotesArePagedAndSummarizedLikeTheOthers() {
+
+		Note older = new Note(1, "Testing-1", "Testing Service layer", "Done", new Date(1528000000000L), null, null,
+				"Jhon123");
+		Note newer = new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(1528000060000L), null, null,
+				"Jhon123");
+		Note undated = new Note(3, "Testing-3", "Testing Service layer", "Done", null, null, null, "Jhon123");
+		for (Note created : Arrays.asList(older, newer, undated)) {
+			noteDAO.createNote(created);
+		}
+		assertEquals(2, noteDAO.archiveNotes(null, Collections.singletonList("Done"), 10));
+		sessionFactory.getCurrentSession().clear();
+
+		List<NoteSummary> summaries = noteDAO.getNoteSummariesByUserId("Jhon123");
+		assertEquals(3, summaries.size());
+		assertEquals(newer.getNoteId(), summaries.get(0).getNoteId());
+		assertEquals(older.getNoteId(), summaries.get(1).getNoteId());
+		assertEquals(undated.getNoteId(), summaries.get(2).getNoteId());
+		List<Note> page = noteDAO.getNotesByUserIdAfter("Jhon123", null, 2);
+		assertEquals(2, page.size());
+		assertEquals(newer.getNoteId(), page.get(0).getNoteId());
+		assertEquals(older.getNoteId(), page.get(1).getNoteId());
+		assertEquals("Testing Service layer", page.get(1).getNoteContent());
+		page = noteDAO.getNotesByUserIdAfter("Jhon123", NoteCursor.of(page.get(1)), 2);
+		assertEquals(1, page.size());
+		assertEquals(undated.getNoteId(), page.get(0).getNoteId());
+	}
+
 	@Test
 	@Rollback(true)
 	public void testCreateNoteFailure() {
@@ -82,6 +253,61 @@ public class NoteDAOImplTest {
 
 	}
 
+	@Test
+	@Rollback(true)
+	public void testDeletedNoteIsHiddenUntilRestored() throws NoteNotFoundException {
+
+		noteDAO.createNote(note);
+		assertEquals(true, noteDAO.deleteNote(note.getNoteId()));
+		assertEquals(false, noteDAO.deleteNote(note.getNoteId()));
+		assertTrue(noteDAO.getAllNotesByUserId("Jhon123").isEmpty());
+		assertEquals(1, noteDAO.getExistingNoteIds(Arrays.asList(note.getNoteId())).size());
+		assertEquals(false, noteDAO.restoreNote("Jhon124", note.getNoteId()));
+		assertEquals(true, noteDAO.restoreNote("Jhon123", note.getNoteId()));
+		sessionFactory.getCurrentSession().clear();
+		assertEquals("Testing-1", noteDAO.getNoteById(note.getNoteId()).getNoteTitle());
+
+	}
+
+	@Test
+	@Rollback(true)
+	public void testUpdateDoesNotResurrectDeletedNote() {
+
+		noteDAO.createNote(note);
+		noteDAO.deleteNote(note.getNoteId());
+		sessionFactory.getCurrentSession().clear();
+		Note update = new Note(1, "Testing-2", "Updated", "Active", new Date(), null, null, "Jhon123");
+		try {
+			noteDAO.UpdateNote(update);
+			fail("a deleted note must not be updated");
+		} catch (OptimisticLockException e) {
+			assertTrue(noteDAO.getAllNotesByUserId("Jhon123").isEmpty());
+		}
+
+	}
+
+	@Test
+	@Rollback(true)
+	public void testUpdateOfStaleVersionWritesNothing() throws NoteNotFoundException {
+
+		noteDAO.createNote(note);
+		int revisions = noteDAO.getNoteRevisions(note.getNoteId()).size();
+		sessionFactory.getCurrentSession().clear();
+		Note stale = new Note(1, "Testing-2", "Updated", "Done", new Date(), null, null, "Jhon123");
+		stale.setNoteId(note.getNoteId());
+		stale.setVersion(note.getVersion() + 1);
+		try {
+			noteDAO.UpdateNote(stale);
+			fail("a note at another version must not be updated");
+		} catch (OptimisticLockException e) {
+			sessionFactory.getCurrentSession().clear();
+			assertEquals("Testing Service layer", noteDAO.getNoteById(note.getNoteId()).getNoteContent());
+			assertEquals(1, noteDAO.getNoteCounters("Jhon123").get("total"));
+			assertEquals(revisions, noteDAO.getNoteRevisions(note.getNoteId()).size());
+		}
+
+	}
+
 	@Test
 	public void testGetAllNotesByUserId() {
 		Note note2 = new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(), null, null, "Jhon123");
@@ -134,4 +360,202 @@ public class NoteDAOImplTest {
 
 	}
 
+	@Test
+	@Rollback(true)
+	public void testNotesWithSameContentShareBody() {
+		noteDAO.createNote(note);
+		noteDAO.createNote(new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(), null, null, "Jhon123"));
+		String hash = NoteBody.hashOf("Testing Service layer");
+		Object refCount = sessionFactory.getCurrentSession()
+				.createNativeQuery("SELECT ref_count FROM NoteBody WHERE content_hash = :hash")
+				.setParameter("hash", hash).getSingleResult();
+		assertEquals(2, ((Number) refCount).intValue());
+
+		noteDAO.patchNote(2, "Jhon123", Collections.<String, Object>singletonMap("noteContent", "Other content"), null);
+		refCount = sessionFactory.getCurrentSession()
+				.createNativeQuery("SELECT ref_count FROM NoteBody WHERE content_hash = :hash")
+				.setParameter("hash", hash).getSingleResult();
+		assertEquals(1, ((Number) refCount).intValue());
+	}
+
+	@Test
+	@Rollback(true)
+	public void testPatchNoteOfAnotherUserMatchesNothing() throws NoteNotFoundException {
+		noteDAO.createNote(note);
+		assertEquals(0, noteDAO.patchNote(note.getNoteId(), "Jhon124",
+				Collections.<String, Object>singletonMap("noteTitle", "Taken over"), null));
+		sessionFactory.getCurrentSession().clear();
+		assertEquals("Testing-1", noteDAO.getNoteById(note.getNoteId()).getNoteTitle());
+	}
+
+	@Test
+	@Rollback(true)
+	public void testRevisionsRebuildEveryContent() {
+		ReflectionTestUtils.setField(noteDAO, "snapshotInterval", 3);
+		noteDAO.createNote(note);
+		for (int i = 2; i <= 5; i++) {
+			noteDAO.patchNote(note.getNoteId(), "Jhon123",
+					Collections.<String, Object>singletonMap("noteContent", "Testing Service layer " + i), null);
+		}
+		List<NoteRevision> revisions = noteDAO.getNoteRevisions(note.getNoteId());
+		assertEquals(5, revisions.size());
+		assertEquals(5, revisions.get(0).getRevision());
+		assertTrue(revisions.get(1).isSnapshot());
+		assertFalse(revisions.get(2).isSnapshot());
+		assertTrue(revisions.get(4).isSnapshot());
+		assertEquals("Testing Service layer", noteDAO.getNoteRevision(note.getNoteId(), 1).getContent());
+		assertEquals("Testing Service layer 3", noteDAO.getNoteRevision(note.getNoteId(), 3).getContent());
+		assertEquals("Testing Service layer 5", noteDAO.getNoteRevision(note.getNoteId(), 5).getContent());
+		assertNull(noteDAO.getNoteRevision(note.getNoteId(), 6));
+	}
+
+	@Test
+	@Rollback(true)
+	public void testFirstRevisionKeepsContentOfNoteWithoutRevisions() {
+		noteDAO.createNote(note);
+		/* as for a note written before revisions were kept */
+		sessionFactory.getCurrentSession().getNamedNativeQuery(NoteRevision.DELETE_BY_NOTES)
+				.setParameterList("noteIds", Collections.singletonList(note.getNoteId())).executeUpdate();
+		noteDAO.patchNote(note.getNoteId(), "Jhon123", Collections.<String, Object>singletonMap("noteContent", "Changed"), null);
+		List<NoteRevision> revisions = noteDAO.getNoteRevisions(note.getNoteId());
+		assertEquals(2, revisions.size());
+		assertTrue(revisions.get(1).isSnapshot());
+		assertEquals("Testing Service layer", noteDAO.getNoteRevision(note.getNoteId(), 1).getContent());
+		assertEquals("Changed", noteDAO.getNoteRevision(note.getNoteId(), 2).getContent());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	@Rollback(true)
+	public void testCountersFollowNoteWrites() {
+		noteDAO.recomputeNoteCounters("Jhon123");
+		noteDAO.createNote(note);
+		noteDAO.createNote(new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(), null, null, "Jhon123"));
+		noteDAO.patchNote(2, "Jhon123", Collections.<String, Object>singletonMap("noteStatus", "Done"), null);
+		Map<String, Object> counters = noteDAO.getNoteCounters("Jhon123");
+		assertEquals(2, counters.get("total"));
+		assertEquals(Integer.valueOf(1), ((Map<String, Integer>) counters.get("status")).get("Active"));
+		assertEquals(Integer.valueOf(1), ((Map<String, Integer>) counters.get("status")).get("Done"));
+
+		noteDAO.deleteNote(1);
+		assertEquals(1, noteDAO.getNoteCounters("Jhon123").get("total"));
+		noteDAO.restoreNote("Jhon123", 1);
+		counters = noteDAO.getNoteCounters("Jhon123");
+		assertEquals(2, counters.get("total"));
+
+		noteDAO.recomputeNoteCounters("Jhon123");
+		assertEquals(counters, noteDAO.getNoteCounters("Jhon123"));
+	}
+
+	@Test
+	@Rollback(true)
+	public void testJdbcBatchIsSentAsOneStatement() {
+		List<Note> notes = new ArrayList<Note>();
+		for (int i = 1; i <= 10; i++) {
+			// notes 9 and 10 share their content
+			notes.add(new Note(i, "Batch-" + i, "Batch content " + Math.min(i, 9), "Active", new Date(), null, null,
+					"Jhon123"));
+		}
+		long before = sessionFactory.getCurrentSession().doReturningWork(this::insertsExecuted);
+
+		assertEquals(10, noteDAO.createNotes(notes));
+
+		// one INSERT each for the bodies, the notes (a rewritten JDBC batch), the revisions and the counters;
+		// the change outbox rows are an INSERT ... SELECT
+		assertEquals(4, sessionFactory.getCurrentSession().doReturningWork(this::insertsExecuted) - before);
+		assertEquals(10, noteDAO.getAllNotesByUserId("Jhon123").size());
+		assertEquals(2, sessionFactory.getCurrentSession().get(NoteBody.class, NoteBody.hashOf("Batch content 9"))
+				.getRefCount());
+		assertEquals(1, noteDAO.getNoteRevisions(10).size());
+		assertEquals("Batch content 9", noteDAO.getNoteRevision(10, 1).getContent());
+		assertEquals(10, noteDAO.getNoteCounters("Jhon123").get("total"));
+	}
+
+	@Test
+	@Rollback(true)
+	public void testExportStreamsNotesOfUserDetached() {
+		noteDAO.createNote(note);
+		noteDAO.createNote(new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(), null, null, "Jhon123"));
+		noteDAO.createNote(new Note(3, "Testing-3", "Testing Service layer", "Active", new Date(), null, null, "Jhon124"));
+		sessionFactory.getCurrentSession().clear();
+		List<Note> exported = new ArrayList<Note>();
+		assertEquals(2, noteDAO.exportNotesByUserId("Jhon123", exported::add));
+		assertEquals(2, exported.size());
+		for (Note exportedNote : exported) {
+			assertEquals("Jhon123", exportedNote.getCreatedBy());
+			assertFalse(sessionFactory.getCurrentSession().contains(exportedNote));
+		}
+	}
+
+	@Test
+	@Rollback(true)
+	public void testDuplicatesAreReportedWithoutBreakingTransaction() {
+		assertTrue(noteDAO.registerIdempotencyKey("Jhon123", "key-1", note.getNoteId()));
+		assertTrue(noteDAO.createNote(note));
+		assertFalse(noteDAO.registerIdempotencyKey("Jhon123", "key-1", note.getNoteId()));
+		assertFalse(noteDAO.createNote(new Note(1, "Testing-2", "Retried", "Active", new Date(), null, null, "Jhon123")));
+		assertEquals(Integer.valueOf(1), noteDAO.getNoteIdByIdempotencyKey("Jhon123", "key-1"));
+		assertEquals(1, noteDAO.getAllNotesByUserId("Jhon123").size());
+		sessionFactory.getCurrentSession().flush();
+	}
+
+	@Test
+	public void testNamedQueriesAreCheckedAtStartup() {
+		SessionFactoryImplementor factory = sessionFactory.unwrap(SessionFactoryImplementor.class);
+		assertTrue(factory.getSessionFactoryOptions().isNamedQueryStartupCheckingEnabled());
+		assertEquals("1024", factory.getProperties().get(AvailableSettings.QUERY_PLAN_CACHE_MAX_SIZE));
+		// the check run when the factory is built finds nothing wrong with the queries of the mappings
+		assertTrue(factory.getNamedQueryRepository().checkNamedQueries(factory.getQueryPlanCache()).isEmpty());
+		assertNotNull(sessionFactory.getCurrentSession().getNamedNativeQuery(UnmappedTableQueries.ADD_IDEMPOTENCY_KEY));
+		// it reports an HQL query not matching the mappings, but only parses native SQL for its parameters
+		NamedQueryRepository broken = new NamedQueryRepository(
+				Collections.singletonList(new NamedQueryDefinitionBuilder("Note.broken")
+						.setQuery("from Note where noSuchProperty = :userId").createNamedQueryDefinition()),
+				Collections.singletonList(new NamedSQLQueryDefinitionBuilder("Note.brokenNative")
+						.setQuery("SELECT no_such_column FROM NoSuchTable WHERE created_by = :userId")
+						.setQueryReturns(new NativeSQLQueryReturn[0]).createNamedQueryDefinition()),
+				Collections.<ResultSetMappingDefinition>emptyList(),
+				Collections.<String, ProcedureCallMemento>emptyMap());
+		Map<String, HibernateException> errors = broken.checkNamedQueries(factory.getQueryPlanCache());
+		assertEquals(Collections.singleton("Note.broken"), errors.keySet());
+	}
+
+	@Test
+	@Rollback(true)
+	public void testNoteChangesAreRecordedInOutbox() {
+		ChangeOutboxDAO changeOutboxDAO = new ChangeOutboxDAOImpl(sessionFactory);
+		changeOutboxDAO.deleteChanges(ids(changeOutboxDAO.getOldestChanges(1000)));
+		noteDAO.createNote(note);
+		noteDAO.patchNote(note.getNoteId(), "Jhon123", Collections.<String, Object>singletonMap("noteStatus", "Done"), null);
+		noteDAO.deleteNote(note.getNoteId());
+		List<ChangeRecord> changes = changeOutboxDAO.getOldestChanges(10);
+		assertEquals(3, changes.size());
+		assertEquals(ChangeRecord.CREATE, changes.get(0).getOperation());
+		assertEquals(ChangeRecord.UPDATE, changes.get(1).getOperation());
+		assertEquals(1, changes.get(1).getVersion());
+		assertEquals(ChangeRecord.DELETE, changes.get(2).getOperation());
+		assertEquals("Jhon123", changes.get(2).getUserId());
+		assertEquals(3, changeOutboxDAO.deleteChanges(ids(changes)));
+		assertTrue(changeOutboxDAO.getOldestChanges(10).isEmpty());
+	}
+
+	/*
+	 * INSERT statements the MySQL server received on this connection.
+	 */
+	private long insertsExecuted(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement();
+				ResultSet status = statement.executeQuery("SHOW SESSION STATUS LIKE 'Com_insert'")) {
+			status.next();
+			return status.getLong(2);
+		}
+	}
+
+	private List<Long> ids(List<ChangeRecord> changes) {
+		List<Long> changeIds = new ArrayList<Long>();
+		for (ChangeRecord change : changes) {
+			changeIds.add(change.getChangeId());
+		}
+		return changeIds;
+	}
+
 }
@@ -9,6 +9,7 @@ import javax.persistence.Query;
 import javax.transaction.Transactional;
 
 import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -127,4 +128,20 @@ public class ReminderDAOImplTest {
 		assertEquals(3, allReminder.size());
 	}
 
+	@Test
+	@Rollback(true)
+	public void testCachedListIsInvalidatedOnInsert() {
+		Statistics statistics = sessionFactory.getStatistics();
+		int before = reminderDAO.getAllReminderByUserId("Jhon123").size();
+		long hits = statistics.getQueryCacheHitCount();
+		// nothing written since: served from the reminder.byUser region
+		assertEquals(before, reminderDAO.getAllReminderByUserId("Jhon123").size());
+		assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+		reminderDAO.createReminder(reminder);
+		reminderDAO.createReminder(new Reminder(2, "Call", "Call reminder", "notification", "Jhon123", null, new Date()));
+		// the inserts invalidated the cached list, which is read again from the database
+		assertEquals(before + 2, reminderDAO.getAllReminderByUserId("Jhon123").size());
+		assertEquals(hits + 1, statistics.getQueryCacheHitCount());
+	}
+
 }
@@ -0,0 +1,134 @@
+package com.stackroute.keepnote.test.dao;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.stackroute.keepnote.config.ApplicationContextConfig;
+import com.stackroute.keepnote.config.ShardContext;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.dao.NoteDAOImpl;
+import com.stackroute.keepnote.model.Note;
+
+/*
+ * The note DAO over two embedded H2 shards, as run locally: a note is written
+ * along with the rows of the tables without an entity (counters, idempotency
+ * keys), which exist on the shards too. Statistics of the routed
+ * SessionFactory are those of all shards.
+ */
+@RunWith(SpringRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(classes = { ApplicationContextConfig.class })
+@TestPropertySource(properties = {
+		"sharding.urls=jdbc:h2:mem:note-dao-shard0;DB_CLOSE_DELAY=-1,jdbc:h2:mem:note-dao-shard1;DB_CLOSE_DELAY=-1" })
+public class ShardedNoteDAOImplTest {
+
+	private static final String USER_ID = "Jhon123";
+
+	@Autowired
+	@Qualifier("shardedSessionFactory")
+	private SessionFactory sessionFactory;
+	@Autowired
+	private ShardRouter shardRouter;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	private TransactionTemplate transactionTemplate;
+	private NoteDAO noteDAO;
+	private Note note;
+
+	@Before
+	public void setUp() {
+		ShardContext.setUserId(USER_ID);
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		noteDAO = new NoteDAOImpl(sessionFactory);
+		note = new Note(1, "Testing-1", "Testing Service layer", "Active", new Date(), null, null, USER_ID);
+	}
+
+	@After
+	public void tearDown() {
+		for (SessionFactory shard : shardRouter.getShards()) {
+			try (Session session = shard.openSession()) {
+				session.beginTransaction();
+				for (String table : new String[] { "ChangeOutbox", "IdempotencyKey", "NoteCounter", "NoteRevision", "Note",
+						"NoteBody" }) {
+					session.createNativeQuery("DELETE FROM " + table).executeUpdate();
+				}
+				session.getTransaction().commit();
+			}
+		}
+		ShardContext.clear();
+	}
+
+	@Test
+	public void testCreateNoteOnTheShardOfItsUser() {
+
+		transactionTemplate.execute(status -> noteDAO.createNote(note));
+		List<Note> notes = transactionTemplate.execute(status -> noteDAO.getAllNotesByUserId(USER_ID));
+		assertEquals(1, notes.size());
+		assertEquals("Testing Service layer", notes.get(0).getNoteContent());
+		Map<String, Object> counters = transactionTemplate.execute(status -> noteDAO.getNoteCounters(USER_ID));
+		assertEquals(1, counters.get("total"));
+
+		int shard = ShardRouter.shardOf(USER_ID, shardRouter.getShards().size());
+		assertEquals(1, countNotes(shardRouter.getShards().get(shard)));
+		assertEquals(0, countNotes(shardRouter.getShards().get(1 - shard)));
+	}
+
+	@Test
+	public void testRegisterIdempotencyKeyOnTheShardOfItsUser() {
+
+		transactionTemplate.execute(status -> noteDAO.createNote(note));
+		assertTrue(transactionTemplate
+				.execute(status -> noteDAO.registerIdempotencyKey(USER_ID, "key-1", note.getNoteId())));
+		assertFalse(transactionTemplate
+				.execute(status -> noteDAO.registerIdempotencyKey(USER_ID, "key-1", note.getNoteId())));
+		assertEquals(Integer.valueOf(note.getNoteId()),
+				transactionTemplate.execute(status -> noteDAO.getNoteIdByIdempotencyKey(USER_ID, "key-1")));
+	}
+
+	@Test
+	public void testStatisticsAddUpTheShards() {
+
+		transactionTemplate.execute(status -> noteDAO.createNote(note));
+		ShardContext.clear();
+		Statistics statistics = sessionFactory.getStatistics();
+		long inserts = 0;
+		long transactions = 0;
+		for (SessionFactory shard : shardRouter.getShards()) {
+			inserts += shard.getStatistics().getEntityInsertCount();
+			transactions += shard.getStatistics().getTransactionCount();
+		}
+		assertTrue(inserts >= 1);
+		assertEquals(inserts, statistics.getEntityInsertCount());
+		assertEquals(transactions, statistics.getTransactionCount());
+		assertTrue(statistics.getEntityStatistics(Note.class.getName()).getInsertCount() >= 1);
+		assertTrue(Arrays.asList(statistics.getEntityNames()).contains(Note.class.getName()));
+	}
+
+	private static long countNotes(SessionFactory shard) {
+		try (Session session = shard.openSession()) {
+			return ((Number) session.createNativeQuery("SELECT COUNT(*) FROM Note").getSingleResult()).longValue();
+		}
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.stackroute.keepnote.test.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.stackroute.keepnote.model.NoteBody;
+
+public class NoteBodyTest {
+
+	@Test
+	public void testHashOf() {
+		assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", NoteBody.hashOf(""));
+		assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", NoteBody.hashOf("abc"));
+		assertEquals(NoteBody.hashOf("Testing note"), NoteBody.hashOf(new String("Testing note")));
+		assertNotEquals(NoteBody.hashOf("Testing note"), NoteBody.hashOf("Testing note."));
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.stackroute.keepnote.test.model;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.stackroute.keepnote.config.ContentCompressionMetrics;
+import com.stackroute.keepnote.model.NoteContentConverter;
+
+public class NoteContentConverterTest {
+
+	private NoteContentConverter converter;
+	private ContentCompressionMetrics metrics;
+
+	@Before
+	public void setUp() {
+		metrics = new ContentCompressionMetrics();
+		converter = new NoteContentConverter(1024, metrics);
+	}
+
+	@Test
+	public void testSmallContentIsStoredPlain() {
+		byte[] data = converter.convertToDatabaseColumn("Testing Service layer");
+		assertEquals(NoteContentConverter.FORMAT_PLAIN, data[0]);
+		assertEquals("Testing Service layer", converter.convertToEntityAttribute(data));
+		assertEquals(1L, metrics.getStatistics().get("storedPlain"));
+	}
+
+	@Test
+	public void testLargeContentIsCompressed() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			content.append("- [ ] pasted checklist item ").append(i % 10).append(" é\n");
+		}
+		byte[] data = converter.convertToDatabaseColumn(content.toString());
+		assertEquals(NoteContentConverter.FORMAT_DEFLATE, data[0]);
+		assertTrue(data.length < content.length() / 5);
+		assertEquals(content.toString(), converter.convertToEntityAttribute(data));
+		assertEquals(1L, metrics.getStatistics().get("storedCompressed"));
+		assertEquals(1L, metrics.getStatistics().get("readCompressed"));
+		assertTrue((Double) metrics.getStatistics().get("compressionRatio") > 5);
+	}
+
+	@Test
+	public void testContentBelowThresholdIsStoredPlain() {
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 1023; i++) {
+			content.append('a');
+		}
+		assertEquals(NoteContentConverter.FORMAT_PLAIN, converter.convertToDatabaseColumn(content.toString())[0]);
+		assertEquals(NoteContentConverter.FORMAT_DEFLATE,
+				converter.convertToDatabaseColumn(content.append('a').toString())[0]);
+	}
+
+	@Test
+	public void testThresholdIsTakenFromConstructor() {
+		converter = new NoteContentConverter(16, metrics);
+		assertEquals(NoteContentConverter.FORMAT_DEFLATE,
+				converter.convertToDatabaseColumn("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa")[0]);
+		assertEquals(1L, metrics.getStatistics().get("storedCompressed"));
+	}
+
+	@Test
+	public void testArchivedZlibContentWithMarkerIsRead() {
+		// archived rows written before V15 hold a bare zlib stream, which the migration prefixes with the marker
+		byte[] text = "Testing the archive of notes é中".getBytes(StandardCharsets.UTF_8);
+		Deflater deflater = new Deflater();
+		deflater.setInput(text);
+		deflater.finish();
+		byte[] buffer = new byte[256];
+		int length = deflater.deflate(buffer);
+		deflater.end();
+		byte[] data = new byte[length + 1];
+		data[0] = NoteContentConverter.FORMAT_DEFLATE;
+		System.arraycopy(buffer, 0, data, 1, length);
+		assertEquals("Testing the archive of notes é中", converter.convertToEntityAttribute(data));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCorruptContent() {
+		converter.convertToEntityAttribute(new byte[] { NoteContentConverter.FORMAT_DEFLATE, 2, 3 });
+	}
+
+	@Test
+	public void testRowWithoutMarkerIsReadAsText() {
+		assertEquals("Written before compression",
+				converter.convertToEntityAttribute("Written before compression".getBytes(StandardCharsets.UTF_8)));
+		assertEquals("", converter.convertToEntityAttribute(new byte[0]));
+		assertNull(converter.convertToEntityAttribute(null));
+	}
+
+}
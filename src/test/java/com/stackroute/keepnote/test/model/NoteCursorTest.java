@@ -0,0 +1,36 @@
+package com.stackroute.keepnote.test.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteCursor;
+
+public class NoteCursorTest {
+
+	@Test
+	public void testEncodeDecode() {
+		NoteCursor cursor = new NoteCursor(new Date(1528000000000L), 42);
+		NoteCursor decoded = NoteCursor.decode(cursor.encode());
+		assertEquals(cursor.getNoteCreatedAt(), decoded.getNoteCreatedAt());
+		assertEquals(42, decoded.getNoteId());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeInvalidCursor() {
+		NoteCursor.decode("not-a-cursor");
+	}
+
+	@Test
+	public void testNoteWithoutCreationDate() {
+		NoteCursor cursor = NoteCursor.of(new Note(42, "Testing", "Testing cursor", "Active", null, null, null, "Jhon123"));
+		NoteCursor decoded = NoteCursor.decode(cursor.encode());
+		assertNull(decoded.getNoteCreatedAt());
+		assertEquals(42, decoded.getNoteId());
+		assertEquals(cursor, decoded);
+	}
+
+}
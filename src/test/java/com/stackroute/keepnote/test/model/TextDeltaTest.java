@@ -0,0 +1,38 @@
+package com.stackroute.keepnote.test.model;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.stackroute.keepnote.model.TextDelta;
+
+public class TextDeltaTest {
+
+	@Test
+	public void testDiffKeepsOnlyChangedPart() {
+		assertEquals("8:6:Service", TextDelta.diff("Testing DAO layer", "Testing Service layer"));
+		assertEquals("7:0: more", TextDelta.diff("Testing", "Testing more"));
+		assertEquals("0:0:", TextDelta.diff("", ""));
+	}
+
+	@Test
+	public void testApplyRebuildsTarget() {
+		String[][] pairs = { { "Testing DAO layer", "Testing Service layer" }, { "", "Testing" },
+				{ "Testing", "" }, { "aaaa", "aa" }, { "abcabc", "abc" }, { "note 😀 one", "note 😁 one" } };
+		for (String[] pair : pairs) {
+			assertEquals(pair[1], TextDelta.apply(pair[0], TextDelta.diff(pair[0], pair[1])));
+		}
+	}
+
+	@Test
+	public void testDiffDoesNotSplitSurrogatePairs() {
+		String delta = TextDelta.diff("note 😀", "note 😁");
+		assertEquals("5:0:😁", delta);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testApplyRejectsDeltaNotFittingBase() {
+		TextDelta.apply("short", "4:4:x");
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackroute.keepnote.dao.BulkImportDAO;
+import com.stackroute.keepnote.model.Category;
+import com.stackroute.keepnote.model.ImportJob;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.service.BulkImportServiceImpl;
+
+public class BulkImportServiceImplTest {
+
+	@Rule public TemporaryFolder importDirectory = new TemporaryFolder();
+	@Mock private BulkImportDAO bulkImportDAO;
+	private BulkImportServiceImpl bulkImportServiceImpl;
+	private List<Object> inserted;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		/* run the jobs on the calling thread */
+		bulkImportServiceImpl = new BulkImportServiceImpl(bulkImportDAO, new ObjectMapper(), Runnable::run);
+		ReflectionTestUtils.setField(bulkImportServiceImpl, "importDirectory", importDirectory.getRoot().getPath());
+		ReflectionTestUtils.setField(bulkImportServiceImpl, "commitInterval", 1000);
+		when(bulkImportDAO.getCategoryIds()).thenReturn(new HashSet<Integer>(Arrays.asList(1)));
+		when(bulkImportDAO.getReminderIds()).thenReturn(new HashSet<Integer>());
+		when(bulkImportDAO.getExistingNoteIds(anyCollection())).thenReturn(Arrays.asList(5));
+		inserted = new ArrayList<Object>();
+		doAnswer(invocation -> {
+			inserted.addAll((List<Object>) invocation.getArgument(2));
+			return null;
+		}).when(bulkImportDAO).insertChunk(anyString(), anyString(), anyList(), anyLong());
+	}
+
+	@Test
+	public void testRejectedLinesAreReportedAndOthersCommitted() throws Exception {
+		write("notes.jsonl",
+				"{\"type\":\"category\",\"categoryId\":1,\"categoryName\":\"Taken\",\"categoryCreatedBy\":\"Jhon123\"}",
+				"{\"type\":\"category\",\"categoryId\":2,\"categoryName\":\"Work\",\"categoryCreatedBy\":\"Jhon123\"}",
+				note(4, "Jhon123"),
+				note(4, "Jhon123"),
+				note(5, "Jhon123"),
+				note(6, "Ann456"),
+				"not json");
+
+		ImportJob job = bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+
+		assertEquals(ImportJob.COMPLETED, job.getStatus());
+		assertEquals(7, job.getLinesRead());
+		assertEquals(1, job.getCategoriesImported());
+		assertEquals(1, job.getNotesImported());
+		assertEquals(5, job.getLinesRejected());
+		assertEquals(new HashSet<Long>(Arrays.asList(1L, 4L, 5L, 6L, 7L)), new HashSet<Long>(job.getRejectedLines()));
+		assertEquals(2, inserted.size());
+		assertEquals(2, ((Category) inserted.get(0)).getCategoryId());
+		assertEquals(4, ((Note) inserted.get(1)).getNoteId());
+		verify(bulkImportDAO).insertChunk(eq("Jhon123"), eq("notes.jsonl"), anyList(), eq(7L));
+	}
+
+	@Test
+	public void testNoteOfUnknownCategoryIsRejected() throws Exception {
+		write("notes.jsonl", note(4, "Jhon123").replace("\"categoryId\":1", "\"categoryId\":9"));
+
+		ImportJob job = bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+
+		assertEquals(1, job.getLinesRejected());
+		assertTrue(inserted.isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFileOutsideImportDirectoryFailure() {
+		bulkImportServiceImpl.startImport("../notes.jsonl", "Jhon123");
+	}
+
+	@Test
+	public void testFinishedJobsArePrunedAfterRetention() throws Exception {
+		ReflectionTestUtils.setField(bulkImportServiceImpl, "jobRetentionMillis", 60000L);
+		write("notes.jsonl");
+		ImportJob old = bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+		ImportJob recent = bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+		old.setFinishedAt(new Date(System.currentTimeMillis() - 120000));
+
+		assertNull(bulkImportServiceImpl.getImportJob(old.getJobId()));
+		assertSame(recent, bulkImportServiceImpl.getImportJob(recent.getJobId()));
+	}
+
+	@Test
+	public void testResumeSkipsCommittedLines() throws Exception {
+		when(bulkImportDAO.getCheckpoint("Jhon123", "notes.jsonl")).thenReturn(1L);
+		write("notes.jsonl", note(4, "Jhon123"), note(7, "Jhon123"));
+
+		ImportJob job = bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+
+		assertEquals(1, job.getLinesSkipped());
+		assertEquals(1, job.getNotesImported());
+		assertEquals(7, ((Note) inserted.get(0)).getNoteId());
+	}
+
+	@Test
+	public void testCheckpointIsThatOfTheUserImporting() throws Exception {
+		when(bulkImportDAO.getCheckpoint("Ann456", "notes.jsonl")).thenReturn(1L);
+		write("notes.jsonl", note(4, "Jhon123"), note(7, "Jhon123"));
+
+		ImportJob job = bulkImportServiceImpl.startImport("./notes.jsonl", "Jhon123");
+
+		assertEquals(0, job.getLinesSkipped());
+		assertEquals(2, job.getNotesImported());
+		verify(bulkImportDAO).getCheckpoint("Jhon123", "notes.jsonl");
+		verify(bulkImportDAO).insertChunk(eq("Jhon123"), eq("notes.jsonl"), anyList(), eq(2L));
+	}
+
+	@Test
+	public void testImportOfRunningCheckpointIsRefused() throws Exception {
+		/* keep the jobs queued until they are run below */
+		List<Runnable> queued = new ArrayList<Runnable>();
+		bulkImportServiceImpl = new BulkImportServiceImpl(bulkImportDAO, new ObjectMapper(), queued::add);
+		ReflectionTestUtils.setField(bulkImportServiceImpl, "importDirectory", importDirectory.getRoot().getPath());
+		write("notes.jsonl", note(4, "Jhon123"));
+
+		bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+		try {
+			bulkImportServiceImpl.startImport("./notes.jsonl", "Jhon123");
+			fail("An import of the same file by the same user is running");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		/* another user has a checkpoint of their own */
+		bulkImportServiceImpl.startImport("notes.jsonl", "Ann456");
+		assertEquals(2, queued.size());
+
+		queued.get(0).run();
+		ImportJob again = bulkImportServiceImpl.startImport("notes.jsonl", "Jhon123");
+		assertEquals(ImportJob.PENDING, again.getStatus());
+	}
+
+	private String note(int noteId, String createdBy) {
+		return "{\"type\":\"note\",\"noteId\":" + noteId + ",\"noteTitle\":\"Imported\",\"noteContent\":\"Imported\","
+				+ "\"noteStatus\":\"Active\",\"category\":{\"categoryId\":1},\"createdBy\":\"" + createdBy + "\"}";
+	}
+
+	private void write(String fileName, String... lines) throws Exception {
+		Files.write(new File(importDirectory.getRoot(), fileName).toPath(), Arrays.asList(lines),
+				StandardCharsets.UTF_8);
+	}
+
+}
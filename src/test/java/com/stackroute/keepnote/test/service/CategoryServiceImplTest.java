@@ -1,13 +1,17 @@
 package com.stackroute.keepnote.test.service;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+
+import javax.persistence.OptimisticLockException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -16,6 +20,7 @@ import org.mockito.MockitoAnnotations;
 
 import com.stackroute.keepnote.dao.CategoryDAO;
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.service.CategoryServiceImpl;
 
@@ -121,4 +126,22 @@ public class CategoryServiceImplTest {
 		verify(categoryDAO, times(1)).getAllCategoryByUserId("Jhon123");
 	}
 
+	@Test(expected = CategoryNotFoundException.class)
+	public void testPatchCategoryOfAnotherUserFailure() throws CategoryNotFoundException, VersionConflictException {
+		when(categoryDAO.getCategoryById(1)).thenReturn(category);
+		try {
+			categoryServiceImpl.patchCategory("Jhon124", 1,
+					Collections.<String, Object>singletonMap("categoryName", "Taken over"), null);
+		} finally {
+			verify(categoryDAO, never()).updateCategory(category);
+		}
+	}
+
+	@Test(expected = VersionConflictException.class)
+	public void testPatchCategoryChangedBeforeWriteFailure() throws CategoryNotFoundException, VersionConflictException {
+		when(categoryDAO.getCategoryById(1)).thenReturn(category);
+		when(categoryDAO.updateCategory(category)).thenThrow(new OptimisticLockException());
+		categoryServiceImpl.patchCategory("Jhon123", 1, Collections.<String, Object>singletonMap("categoryName", "Renamed"), null);
+	}
+
 }
@@ -0,0 +1,95 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.ChangeOutboxDAO;
+import com.stackroute.keepnote.model.ChangeRecord;
+import com.stackroute.keepnote.service.ChangeRelayServiceImpl;
+import com.stackroute.keepnote.service.ChangeSink;
+import com.stackroute.keepnote.service.FileChangeSink;
+import com.stackroute.keepnote.service.InMemoryChangeSink;
+
+public class ChangeRelayServiceImplTest {
+
+	@Mock private ChangeOutboxDAO changeOutboxDAO;
+	private InMemoryChangeSink changeSink;
+	private ChangeRelayServiceImpl changeRelayServiceImpl;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		changeSink = new InMemoryChangeSink();
+		changeRelayServiceImpl = new ChangeRelayServiceImpl(changeOutboxDAO, changeSink, new ShardRouter(
+				Collections.<SessionFactory>emptyList(), Collections.emptyList()));
+		ReflectionTestUtils.setField(changeRelayServiceImpl, "batchSize", 2);
+	}
+
+	@Test
+	public void testRelayPublishesAndRemovesBatchesUntilEmpty() {
+		List<ChangeRecord> first = Arrays.asList(change(1, ChangeRecord.CREATE), change(2, ChangeRecord.UPDATE));
+		List<ChangeRecord> second = Arrays.asList(change(3, ChangeRecord.DELETE));
+		when(changeOutboxDAO.getOldestChanges(2)).thenReturn(first, second);
+		assertEquals(3, changeRelayServiceImpl.relayChanges());
+		verify(changeOutboxDAO).deleteChanges(Arrays.asList(1L, 2L));
+		verify(changeOutboxDAO).deleteChanges(Arrays.asList(3L));
+		List<ChangeRecord> published = changeSink.drain();
+		assertEquals(3, published.size());
+		assertEquals(ChangeRecord.DELETE, published.get(2).getOperation());
+		assertNull(published.get(0).getShard());
+		assertEquals(3L, changeRelayServiceImpl.getStatistics().get("published"));
+	}
+
+	@Test
+	public void testFailedPublishKeepsRecords() throws IOException {
+		ChangeSink failingSink = mock(ChangeSink.class);
+		doThrow(new IOException("disk full")).when(failingSink).publish(anyList());
+		changeRelayServiceImpl = new ChangeRelayServiceImpl(changeOutboxDAO, failingSink, new ShardRouter(
+				Collections.<SessionFactory>emptyList(), Collections.emptyList()));
+		when(changeOutboxDAO.getOldestChanges(anyInt())).thenReturn(Arrays.asList(change(1, ChangeRecord.CREATE)));
+		assertEquals(0, changeRelayServiceImpl.relayChanges());
+		verify(changeOutboxDAO, never()).deleteChanges(anyList());
+		assertEquals(1L, changeRelayServiceImpl.getStatistics().get("failedBatches"));
+	}
+
+	@Test
+	public void testFileSinkAppendsJsonLines() throws IOException {
+		Path file = Files.createTempDirectory("outbox").resolve("changes.jsonl");
+		FileChangeSink fileSink = new FileChangeSink(file, new ObjectMapper());
+		fileSink.publish(Arrays.asList(change(1, ChangeRecord.CREATE)));
+		fileSink.publish(Arrays.asList(change(2, ChangeRecord.DELETE)));
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals(2, lines.size());
+		assertEquals(2, new ObjectMapper().readTree(lines.get(1)).get("changeId").asInt());
+		assertEquals(ChangeRecord.DELETE, new ObjectMapper().readTree(lines.get(1)).get("operation").asText());
+	}
+
+	private ChangeRecord change(long changeId, String operation) {
+		return new ChangeRecord(changeId, ChangeRecord.NOTE, 1, operation, "Jhon123", 0, new Date());
+	}
+
+}
@@ -0,0 +1,59 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stackroute.keepnote.config.ApplicationContextConfig;
+import com.stackroute.keepnote.model.ChangeRecord;
+import com.stackroute.keepnote.service.FileChangeSink;
+
+public class FileChangeSinkTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ObjectMapper objectMapper;
+	private FileChangeSink fileChangeSink;
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		// the mapper of the application, with the Hibernate module
+		objectMapper = new ApplicationContextConfig().objectMapper();
+		file = folder.getRoot().toPath().resolve("outbox/changes.jsonl");
+		fileChangeSink = new FileChangeSink(file, objectMapper);
+	}
+
+	@Test
+	public void testRecordsAreWrittenWithTheirShard() throws Exception {
+		ChangeRecord sharded = new ChangeRecord(7, ChangeRecord.NOTE, 1, ChangeRecord.UPDATE, "Jhon123", 2, new Date());
+		sharded.setShard(1);
+		ChangeRecord unsharded = new ChangeRecord(8, ChangeRecord.CATEGORY, 3, ChangeRecord.DELETE, "Jhon123", 0,
+				new Date());
+		fileChangeSink.publish(Arrays.asList(sharded, unsharded));
+
+		List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+		assertEquals(2, lines.size());
+		JsonNode first = objectMapper.readTree(lines.get(0));
+		assertEquals(7, first.get("changeId").asLong());
+		assertEquals("Note", first.get("entityType").asText());
+		assertEquals(1, first.get("shard").asInt());
+		JsonNode second = objectMapper.readTree(lines.get(1));
+		assertTrue(second.has("shard"));
+		assertTrue(second.get("shard").isNull());
+	}
+
+}
@@ -0,0 +1,123 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.service.NoteAutosaveServiceImpl;
+
+public class NoteAutosaveServiceImplTest {
+
+	@Mock private NoteDAO noteDAO;
+	private NoteAutosaveServiceImpl noteAutosaveServiceImpl;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		noteAutosaveServiceImpl = new NoteAutosaveServiceImpl(noteDAO);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testBurstOfAutosavesIsWrittenOnce() {
+		for (int i = 1; i <= 10; i++) {
+			noteAutosaveServiceImpl.autosave(note("Draft " + i));
+		}
+		assertEquals("Draft 10", noteAutosaveServiceImpl.getPendingNote(1).getNoteContent());
+		assertTrue(noteAutosaveServiceImpl.flush(1));
+		ArgumentCaptor<Map<String, Object>> changes = ArgumentCaptor.forClass(Map.class);
+		verify(noteDAO, times(1)).patchNote(eq(1), eq("Jhon123"), changes.capture(), isNull());
+		assertEquals("Draft 10", changes.getValue().get("noteContent"));
+		assertNull(noteAutosaveServiceImpl.getPendingNote(1));
+		assertFalse(noteAutosaveServiceImpl.flush(1));
+		assertEquals(10.0, noteAutosaveServiceImpl.getStatistics().get("autosavesPerWrite"));
+	}
+
+	@Test
+	public void testFlushDueWaitsForMaximumDelay() {
+		ReflectionTestUtils.setField(noteAutosaveServiceImpl, "maxDelayMillis", 60000L);
+		noteAutosaveServiceImpl.autosave(note("Draft"));
+		assertEquals(0, noteAutosaveServiceImpl.flushDue());
+		ReflectionTestUtils.setField(noteAutosaveServiceImpl, "maxDelayMillis", 0L);
+		assertEquals(1, noteAutosaveServiceImpl.flushDue());
+		verify(noteDAO, times(1)).patchNote(anyInt(), anyString(), anyMap(), any());
+	}
+
+	@Test
+	public void testDiscardedStateIsNotWritten() {
+		noteAutosaveServiceImpl.autosave(note("Draft"));
+		noteAutosaveServiceImpl.discard(1);
+		assertEquals(0, noteAutosaveServiceImpl.flushAll());
+		verify(noteDAO, never()).patchNote(anyInt(), anyString(), anyMap(), any());
+	}
+
+	@Test
+	public void testFailedWriteStaysPending() {
+		when(noteDAO.patchNote(anyInt(), anyString(), anyMap(), any())).thenThrow(new IllegalStateException("down"));
+		noteAutosaveServiceImpl.autosave(note("Draft"));
+		assertEquals(0, noteAutosaveServiceImpl.flushAll());
+		assertEquals("Draft", noteAutosaveServiceImpl.getPendingNote(1).getNoteContent());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testPendingStateIsWrittenWithConditionalPatch() {
+		when(noteDAO.patchNote(eq(1), eq("Jhon123"), anyMap(), eq(3))).thenReturn(1);
+		noteAutosaveServiceImpl.autosave(note("Draft"));
+		assertEquals(1, noteAutosaveServiceImpl.flush(1, "Jhon123", Collections.<String, Object>singletonMap("noteStatus", "Done"), 3));
+		ArgumentCaptor<Map<String, Object>> changes = ArgumentCaptor.forClass(Map.class);
+		verify(noteDAO, times(1)).patchNote(eq(1), eq("Jhon123"), changes.capture(), eq(3));
+		assertEquals("Draft", changes.getValue().get("noteContent"));
+		assertEquals("Done", changes.getValue().get("noteStatus"));
+		assertNull(noteAutosaveServiceImpl.getPendingNote(1));
+	}
+
+	@Test
+	public void testPendingStateStaysPendingOnVersionConflict() {
+		when(noteDAO.patchNote(eq(1), eq("Jhon123"), anyMap(), eq(3))).thenReturn(0);
+		noteAutosaveServiceImpl.autosave(note("Draft"));
+		assertEquals(0, noteAutosaveServiceImpl.flush(1, "Jhon123", Collections.<String, Object>singletonMap("noteStatus", "Done"), 3));
+		assertEquals("Draft", noteAutosaveServiceImpl.getPendingNote(1).getNoteContent());
+	}
+
+	@Test
+	public void testPendingStateOfAnotherUserIsNotWritten() {
+		noteAutosaveServiceImpl.autosave(note("Draft"));
+		assertEquals(0, noteAutosaveServiceImpl.flush(1, "Jhon124",
+				Collections.<String, Object>singletonMap("noteStatus", "Done"), null));
+		verify(noteDAO, never()).patchNote(anyInt(), anyString(), anyMap(), any());
+		assertEquals("Draft", noteAutosaveServiceImpl.getPendingNote(1).getNoteContent());
+	}
+
+	@Test
+	public void testNothingToWrite() {
+		assertEquals(-1, noteAutosaveServiceImpl.flush(1, "Jhon123", Collections.<String, Object>emptyMap(), 3));
+		verify(noteDAO, never()).patchNote(anyInt(), anyString(), anyMap(), any());
+	}
+
+	private Note note(String content) {
+		return new Note(1, "Testing", content, "Active", new Date(), null, null, "Jhon123");
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.service.NoteCounterRepairServiceImpl;
+
+public class NoteCounterRepairServiceImplTest {
+
+	@Mock private NoteDAO noteDAO;
+	private NoteCounterRepairServiceImpl noteCounterRepairServiceImpl;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		noteCounterRepairServiceImpl = new NoteCounterRepairServiceImpl(noteDAO, new ShardRouter(
+				Collections.<SessionFactory>emptyList(), Collections.emptyList()));
+		ReflectionTestUtils.setField(noteCounterRepairServiceImpl, "pauseMillis", 0L);
+	}
+
+	@Test
+	public void testRepairRecomputesEveryUser() {
+		ReflectionTestUtils.setField(noteCounterRepairServiceImpl, "windows", "00:00-00:00");
+		when(noteDAO.getCountedUserIds()).thenReturn(Arrays.asList("Jhon123", "Jhon124"));
+		assertEquals(2, noteCounterRepairServiceImpl.repairCounters());
+		verify(noteDAO, times(1)).recomputeNoteCounters("Jhon123");
+		verify(noteDAO, times(1)).recomputeNoteCounters("Jhon124");
+	}
+
+	@Test
+	public void testNoRepairOutsideWindow() {
+		ReflectionTestUtils.setField(noteCounterRepairServiceImpl, "windows", "");
+		assertEquals(0, noteCounterRepairServiceImpl.repairCounters());
+		verify(noteDAO, never()).recomputeNoteCounters(anyString());
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.Date;
+
+import org.hibernate.SessionFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.stackroute.keepnote.config.ShardRouter;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.service.NotePurgeServiceImpl;
+import com.stackroute.keepnote.service.OffPeakWindows;
+
+public class NotePurgeServiceImplTest {
+
+	@Mock private NoteDAO noteDAO;
+	private NotePurgeServiceImpl notePurgeServiceImpl;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		notePurgeServiceImpl = new NotePurgeServiceImpl(noteDAO, new ShardRouter(
+				Collections.<SessionFactory>emptyList(), Collections.emptyList()));
+		ReflectionTestUtils.setField(notePurgeServiceImpl, "pauseMillis", 0L);
+		ReflectionTestUtils.setField(notePurgeServiceImpl, "batchSize", 500);
+	}
+
+	@Test
+	public void testPurgeRemovesBatchesUntilNoneLeft() {
+		ReflectionTestUtils.setField(notePurgeServiceImpl, "windows", "00:00-00:00");
+		when(noteDAO.purgeDeletedNotes(any(Date.class), anyInt())).thenReturn(500, 120, 0);
+		assertEquals(620, notePurgeServiceImpl.purgeDeletedNotes());
+		verify(noteDAO, times(3)).purgeDeletedNotes(any(Date.class), anyInt());
+	}
+
+	@Test
+	public void testPurgeOutsideWindowDoesNothing() {
+		ReflectionTestUtils.setField(notePurgeServiceImpl, "windows", "");
+		assertEquals(0, notePurgeServiceImpl.purgeDeletedNotes());
+		verify(noteDAO, never()).purgeDeletedNotes(any(Date.class), anyInt());
+	}
+
+	@Test
+	public void testOffPeakWindows() {
+		OffPeakWindows windows = OffPeakWindows.parse("01:00-05:00, 22:30-00:30");
+		assertTrue(windows.contains(LocalTime.of(1, 0)));
+		assertFalse(windows.contains(LocalTime.of(5, 0)));
+		assertFalse(windows.contains(LocalTime.of(12, 0)));
+		assertTrue(windows.contains(LocalTime.of(23, 15)));
+		assertTrue(windows.contains(LocalTime.of(0, 10)));
+		assertTrue(OffPeakWindows.parse("").isEmpty());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOffPeakWindowsMalformed() {
+		OffPeakWindows.parse("1am-5am");
+	}
+
+}
@@ -2,12 +2,21 @@ package com.stackroute.keepnote.test.service;
 
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.persistence.OptimisticLockException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,9 +29,15 @@ import com.stackroute.keepnote.dao.ReminderDAO;
 import com.stackroute.keepnote.exception.CategoryNotFoundException;
 import com.stackroute.keepnote.exception.NoteNotFoundException;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Category;
 import com.stackroute.keepnote.model.Note;
+import com.stackroute.keepnote.model.NoteBatchResult;
+import com.stackroute.keepnote.model.NoteCursor;
+import com.stackroute.keepnote.model.NotePage;
+import com.stackroute.keepnote.model.NoteSummary;
 import com.stackroute.keepnote.model.Reminder;
+import com.stackroute.keepnote.service.NoteAutosaveService;
 import com.stackroute.keepnote.service.NoteServiceImpl;
 
 
@@ -31,6 +46,7 @@ public class NoteServiceImplTest {
 	@Mock private NoteDAO noteDAO;
 	@Mock private CategoryDAO categoryDAO;
 	@Mock private ReminderDAO reminderDAO;
+	@Mock private NoteAutosaveService noteAutosaveService;
 	@InjectMocks NoteServiceImpl noteServiceImpl;
 
 	private Note note;
@@ -106,6 +122,28 @@ public class NoteServiceImplTest {
 
 	}
 
+	@Test
+	public void testCreateNoteRetriedWithSameIdempotencyKey() throws ReminderNotFoundException, CategoryNotFoundException {
+		when(noteDAO.registerIdempotencyKey("Jhon123", "key-1", 1)).thenReturn(true, false);
+		when(noteDAO.getNoteIdByIdempotencyKey("Jhon123", "key-1")).thenReturn(1);
+		when(noteDAO.createNote(note)).thenReturn(true);
+		assertTrue(noteServiceImpl.createNote(note, "key-1"));
+		assertTrue(noteServiceImpl.createNote(note, "key-1"));
+		verify(noteDAO, times(1)).createNote(note);
+
+	}
+
+	@Test
+	public void testCreateNoteWithIdempotencyKeyOfOtherNoteFailure()
+			throws ReminderNotFoundException, CategoryNotFoundException {
+		Note other = new Note(2, "Testing", "Testing Service layer", "Active", new Date(), category, reminder, "Jhon123");
+		when(noteDAO.registerIdempotencyKey("Jhon123", "key-1", 2)).thenReturn(false);
+		when(noteDAO.getNoteIdByIdempotencyKey("Jhon123", "key-1")).thenReturn(1);
+		assertFalse(noteServiceImpl.createNote(other, "key-1"));
+		verify(noteDAO, never()).createNote(other);
+
+	}
+
 	@Test(expected = ReminderNotFoundException.class)
 	public void testCreateNoteWithoutCategoryFailure() throws ReminderNotFoundException, CategoryNotFoundException {
 		reminder = new Reminder(2, "Email reminder", "daily reminder", "Active", "Jhon123", null, new Date());
@@ -150,6 +188,63 @@ public class NoteServiceImplTest {
 
 	}
 
+	@Test
+	public void testGetNotesByUserIdReadsOneExtraNote() {
+		Date createdAt = new Date(1528000000000L);
+		notes.add(new Note(3, "Testing-3", "Testing Service layer", "Active", createdAt, null, null, "Jhon123"));
+		notes.add(new Note(2, "Testing-2", "Testing Service layer", "Active", createdAt, null, null, "Jhon123"));
+		notes.add(new Note(1, "Testing-1", "Testing Service layer", "Active", createdAt, null, null, "Jhon123"));
+		when(noteDAO.getNotesByUserIdAfter("Jhon123", null, 3)).thenReturn(notes);
+		NotePage page = noteServiceImpl.getNotesByUserId("Jhon123", null, 2);
+		assertEquals(notes.subList(0, 2), page.getNotes());
+		NoteCursor next = NoteCursor.decode(page.getNextCursor());
+		assertEquals(createdAt, next.getNoteCreatedAt());
+		assertEquals(2, next.getNoteId());
+	}
+
+	@Test
+	public void testGetNotesByUserIdLastPage() {
+		Date createdAt = new Date(1528000000000L);
+		String cursor = new NoteCursor(createdAt, 2).encode();
+		notes.add(new Note(1, "Testing-1", "Testing Service layer", "Active", createdAt, null, null, "Jhon123"));
+		when(noteDAO.getNotesByUserIdAfter("Jhon123", new NoteCursor(createdAt, 2), 3)).thenReturn(notes);
+		NotePage page = noteServiceImpl.getNotesByUserId("Jhon123", cursor, 2);
+		assertEquals(notes, page.getNotes());
+		assertNull(page.getNextCursor());
+		verify(noteDAO, times(1)).getNotesByUserIdAfter("Jhon123", new NoteCursor(createdAt, 2), 3);
+	}
+
+	@Test
+	public void testGetNotesByUserIdPastNoteWithoutCreationDate() {
+		notes.add(new Note(4, "Testing-4", "Testing Service layer", "Active", null, null, null, "Jhon123"));
+		notes.add(new Note(3, "Testing-3", "Testing Service layer", "Active", null, null, null, "Jhon123"));
+		notes.add(new Note(1, "Testing-1", "Testing Service layer", "Active", null, null, null, "Jhon123"));
+		when(noteDAO.getNotesByUserIdAfter("Jhon123", new NoteCursor(null, 5), 3)).thenReturn(notes);
+		NotePage page = noteServiceImpl.getNotesByUserId("Jhon123", new NoteCursor(null, 5).encode(), 2);
+		assertEquals(notes.subList(0, 2), page.getNotes());
+		assertEquals(new NoteCursor(null, 3), NoteCursor.decode(page.getNextCursor()));
+	}
+
+	@Test
+	public void testGetNotesByUserIdPageOfExactlyLimitIsLast() {
+		Date createdAt = new Date(1528000000000L);
+		notes.add(new Note(2, "Testing-2", "Testing Service layer", "Active", createdAt, null, null, "Jhon123"));
+		notes.add(new Note(1, "Testing-1", "Testing Service layer", "Active", createdAt, null, null, "Jhon123"));
+		when(noteDAO.getNotesByUserIdAfter("Jhon123", null, 3)).thenReturn(notes);
+		NotePage page = noteServiceImpl.getNotesByUserId("Jhon123", "", 2);
+		assertEquals(2, page.getNotes().size());
+		assertNull(page.getNextCursor());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testGetNotesByUserIdMalformedCursor() {
+		try {
+			noteServiceImpl.getNotesByUserId("Jhon123", "not-a-cursor", 2);
+		} finally {
+			verifyZeroInteractions(noteDAO);
+		}
+	}
+
 	@Test
 	public void testGetNoteByIdSuccess() throws NoteNotFoundException {
 		when(noteDAO.getNoteById(note.getNoteId())).thenReturn(note);
@@ -247,4 +342,147 @@ public class NoteServiceImplTest {
 
 	}
 
+	@Test
+	public void testCreateNotesReportsConflicts() {
+		Note note2 = new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(), category, reminder, "Jhon123");
+		Note duplicate = new Note(2, "Testing-3", "Testing Service layer", "Active", new Date(), null, null, "Jhon123");
+		when(noteDAO.getExistingNoteIds(Arrays.asList(1, 2, 2))).thenReturn(Arrays.asList(1));
+		when(categoryDAO.getExistingCategoryIds(Collections.singleton(1))).thenReturn(Arrays.asList(1));
+		when(reminderDAO.getExistingReminderIds(Collections.singleton(1))).thenReturn(Arrays.asList(1));
+		List<NoteBatchResult> results = noteServiceImpl.createNotes(Arrays.asList(note, note2, duplicate));
+		assertEquals(NoteBatchResult.CONFLICT, results.get(0).getStatus());
+		assertEquals(NoteBatchResult.CREATED, results.get(1).getStatus());
+		assertEquals(NoteBatchResult.CONFLICT, results.get(2).getStatus());
+		verify(noteDAO, times(1)).createNotes(Arrays.asList(note2));
+	}
+
+	@Test
+	public void testCreateNotesLooksReferencesUpOnce() {
+		Note note2 = new Note(2, "Testing-2", "Testing Service layer", "Active", new Date(), category, null, "Jhon123");
+		Note note3 = new Note(3, "Testing-3", "Testing Service layer", "Active", new Date(), category, reminder, "Jhon123");
+		when(noteDAO.getExistingNoteIds(Arrays.asList(1, 2, 3))).thenReturn(Collections.<Integer>emptyList());
+		when(categoryDAO.getExistingCategoryIds(Collections.singleton(1))).thenReturn(Arrays.asList(1));
+		when(reminderDAO.getExistingReminderIds(Collections.singleton(1))).thenReturn(Collections.<Integer>emptyList());
+		List<NoteBatchResult> results = noteServiceImpl.createNotes(Arrays.asList(note, note2, note3));
+		assertEquals(NoteBatchResult.INVALID, results.get(0).getStatus());
+		assertEquals(NoteBatchResult.CREATED, results.get(1).getStatus());
+		assertEquals(NoteBatchResult.INVALID, results.get(2).getStatus());
+		verify(categoryDAO, times(1)).getExistingCategoryIds(Collections.singleton(1));
+		verify(categoryDAO, never()).getCategoryById(1);
+		verify(noteDAO, times(1)).createNotes(Arrays.asList(note2));
+	}
+
+	@Test
+	public void testConditionalUpdateNoteSkipsRead() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		when(noteDAO.UpdateNote(note)).thenReturn(true);
+		Note updatedNote = noteServiceImpl.updateNote(note, 1, 3);
+		assertEquals(3, updatedNote.getVersion());
+		verify(noteDAO, never()).getNoteById(1);
+		verify(noteDAO, times(1)).UpdateNote(note);
+	}
+
+	@Test(expected = VersionConflictException.class)
+	public void testConditionalUpdateNoteConflict() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		when(noteDAO.UpdateNote(note)).thenThrow(OptimisticLockException.class);
+		when(noteDAO.getNoteById(1)).thenReturn(note);
+		noteServiceImpl.updateNote(note, 1, 3);
+	}
+
+	@Test(expected = NoteNotFoundException.class)
+	public void testConditionalUpdateNoteNotFound() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		when(noteDAO.UpdateNote(note)).thenThrow(OptimisticLockException.class);
+		when(noteDAO.getNoteById(1)).thenThrow(NoteNotFoundException.class);
+		noteServiceImpl.updateNote(note, 1, 3);
+	}
+
+	@Test
+	public void testConditionalUpdateNotePromotesArchivedNote() throws ReminderNotFoundException,
+			NoteNotFoundException, CategoryNotFoundException, VersionConflictException {
+		when(noteDAO.UpdateNote(note)).thenThrow(OptimisticLockException.class).thenReturn(true);
+		when(noteDAO.promoteNote(1)).thenReturn(true);
+		noteServiceImpl.updateNote(note, 1, 3);
+		verify(noteDAO, times(2)).UpdateNote(note);
+		verify(noteDAO, never()).getNoteById(1);
+	}
+
+	@Test
+	public void testPatchNoteWritesOnlyChangedProperties() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		Map<String, Object> patch = Collections.<String, Object>singletonMap("noteStatus", "Archived");
+		when(noteAutosaveService.flush(1, "Jhon123", patch, null)).thenReturn(1);
+		noteServiceImpl.patchNote("Jhon123", 1, patch, null);
+		verify(noteAutosaveService, times(1)).flush(1, "Jhon123", patch, null);
+		verify(noteDAO, never()).getNoteById(1);
+	}
+
+	@Test(expected = VersionConflictException.class)
+	public void testPatchNoteOfChangedVersionFailure() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		Map<String, Object> patch = Collections.<String, Object>singletonMap("noteStatus", "Archived");
+		when(noteAutosaveService.flush(1, "Jhon123", patch, 3)).thenReturn(0);
+		when(noteDAO.getNoteById(1)).thenReturn(note);
+		noteServiceImpl.patchNote("Jhon123", 1, patch, 3);
+	}
+
+	@Test(expected = NoteNotFoundException.class)
+	public void testPatchNoteOfAnotherUserFailure() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		Map<String, Object> patch = Collections.<String, Object>singletonMap("noteStatus", "Archived");
+		when(noteAutosaveService.flush(1, "Jhon124", patch, null)).thenReturn(0);
+		when(noteDAO.getNoteById(1)).thenReturn(note);
+		noteServiceImpl.patchNote("Jhon124", 1, patch, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPatchNoteRejectsCreatedBy() throws ReminderNotFoundException, NoteNotFoundException,
+			CategoryNotFoundException, VersionConflictException {
+		noteServiceImpl.patchNote("Jhon123", 1, Collections.<String, Object>singletonMap("createdBy", "Jhon124"), null);
+	}
+
+	@Test
+	public void testGetNoteByIdSeesAutosavedState() throws NoteNotFoundException {
+		Note autosaved = new Note(1, "Testing", "Autosaved content", "Active", null, category, reminder, "Jhon123");
+		when(noteDAO.getNoteById(1)).thenReturn(note);
+		when(noteAutosaveService.getPendingNote(1)).thenReturn(autosaved);
+		Note fetched = noteServiceImpl.getNoteById(1);
+		assertEquals("Autosaved content", fetched.getNoteContent());
+		assertEquals(note.getNoteCreatedAt(), fetched.getNoteCreatedAt());
+		assertEquals("Testing Service layer", note.getNoteContent());
+	}
+
+	@Test
+	public void testListsOfNotesSeeAutosavedState() {
+		Note autosaved = new Note(1, "Autosaved", "Autosaved content", "Done", null, category, reminder, "Jhon123");
+		notes.add(note);
+		when(noteAutosaveService.getPendingNote(1)).thenReturn(autosaved);
+		when(noteDAO.getNotesByUserIdAfter("Jhon123", null, 21)).thenReturn(notes);
+		when(noteDAO.getNoteSummariesByUserId("Jhon123")).thenReturn(new ArrayList<NoteSummary>(
+				Arrays.asList(new NoteSummary(1, "Testing-1", "Active", note.getNoteCreatedAt()))));
+		when(noteDAO.exportNotesByUserId(anyString(), any())).thenAnswer(invocation -> {
+			invocation.<Consumer<Note>>getArgument(1).accept(note);
+			return 1;
+		});
+
+		assertEquals("Autosaved content", noteServiceImpl.getNotesByUserId("Jhon123", null, 20).getNotes().get(0)
+				.getNoteContent());
+		NoteSummary summary = noteServiceImpl.getNoteSummariesByUserId("Jhon123").get(0);
+		assertEquals("Autosaved", summary.getNoteTitle());
+		assertEquals("Done", summary.getNoteStatus());
+		List<Note> exported = new ArrayList<Note>();
+		assertEquals(1, noteServiceImpl.exportNotesByUserId("Jhon123", exported::add));
+		assertEquals("Autosaved content", exported.get(0).getNoteContent());
+		assertEquals("Testing Service layer", note.getNoteContent());
+	}
+
+	@Test
+	public void testUpdateNoteDiscardsAutosavedState() throws Exception {
+		when(noteDAO.getNoteById(1)).thenReturn(note);
+		noteServiceImpl.updateNote(note, 1);
+		verify(noteAutosaveService, times(1)).discard(1);
+		verify(noteDAO, times(1)).UpdateNote(note);
+	}
+
 }
@@ -1,13 +1,17 @@
 package com.stackroute.keepnote.test.service;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+
+import javax.persistence.OptimisticLockException;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -16,6 +20,7 @@ import org.mockito.MockitoAnnotations;
 
 import com.stackroute.keepnote.dao.ReminderDAO;
 import com.stackroute.keepnote.exception.ReminderNotFoundException;
+import com.stackroute.keepnote.exception.VersionConflictException;
 import com.stackroute.keepnote.model.Reminder;
 import com.stackroute.keepnote.service.ReminderServiceImpl;
 
@@ -114,4 +119,22 @@ public class ReminderServiceImplTest {
 		assertEquals(allReminder, reminders);
 	}
 
+	@Test(expected = ReminderNotFoundException.class)
+	public void testPatchReminderOfAnotherUserFailure() throws ReminderNotFoundException, VersionConflictException {
+		when(reminderDAO.getReminderById(1)).thenReturn(reminder);
+		try {
+			reminderServiceImpl.patchReminder("Jhon124", 1,
+					Collections.<String, Object>singletonMap("reminderName", "Taken over"), null);
+		} finally {
+			verify(reminderDAO, never()).updateReminder(reminder);
+		}
+	}
+
+	@Test(expected = VersionConflictException.class)
+	public void testPatchReminderChangedBeforeWriteFailure() throws ReminderNotFoundException, VersionConflictException {
+		when(reminderDAO.getReminderById(1)).thenReturn(reminder);
+		when(reminderDAO.updateReminder(reminder)).thenThrow(new OptimisticLockException());
+		reminderServiceImpl.patchReminder("Jhon123", 1, Collections.<String, Object>singletonMap("reminderName", "Renamed"), null);
+	}
+
 }
@@ -0,0 +1,90 @@
+package com.stackroute.keepnote.test.service;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.stackroute.keepnote.dao.CategoryDAO;
+import com.stackroute.keepnote.dao.NoteDAO;
+import com.stackroute.keepnote.dao.ReminderDAO;
+import com.stackroute.keepnote.dao.UserDAO;
+import com.stackroute.keepnote.model.EraseJob;
+import com.stackroute.keepnote.service.UserEraseServiceImpl;
+
+public class UserEraseServiceImplTest {
+
+	@Mock private UserDAO userDAO;
+	@Mock private NoteDAO noteDAO;
+	@Mock private CategoryDAO categoryDAO;
+	@Mock private ReminderDAO reminderDAO;
+	private UserEraseServiceImpl userEraseServiceImpl;
+
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		/* run the jobs on the calling thread */
+		userEraseServiceImpl = new UserEraseServiceImpl(userDAO, noteDAO, categoryDAO, reminderDAO, Runnable::run);
+		ReflectionTestUtils.setField(userEraseServiceImpl, "pauseMillis", 0L);
+		ReflectionTestUtils.setField(userEraseServiceImpl, "chunkSize", 2);
+	}
+
+	@Test
+	public void testEraseUserDeletesInChunksThenUser() {
+		when(noteDAO.deleteNotesByUserId("Jhon123", 2)).thenReturn(2, 1, 0);
+		when(noteDAO.deleteArchivedNotesByUserId("Jhon123", 2)).thenReturn(1, 0);
+		when(categoryDAO.deleteCategoriesByUserId("Jhon123", 2)).thenReturn(2, 0);
+		when(reminderDAO.deleteRemindersByUserId("Jhon123", 2)).thenReturn(0);
+		when(userDAO.deleteUser("Jhon123")).thenReturn(true);
+
+		EraseJob job = userEraseServiceImpl.eraseUser("Jhon123");
+
+		assertEquals(EraseJob.COMPLETED, job.getStatus());
+		assertEquals(4, job.getNotesDeleted());
+		assertEquals(2, job.getCategoriesDeleted());
+		assertEquals(0, job.getRemindersDeleted());
+		assertNotNull(job.getFinishedAt());
+		verify(noteDAO, times(3)).deleteNotesByUserId("Jhon123", 2);
+		verify(userDAO).deleteUser("Jhon123");
+		assertSame(job, userEraseServiceImpl.getEraseJob(job.getJobId()));
+	}
+
+	@Test
+	public void testEraseUserFailureKeepsUser() {
+		when(noteDAO.deleteNotesByUserId(eq("Jhon123"), anyInt())).thenThrow(new IllegalStateException("down"));
+
+		EraseJob job = userEraseServiceImpl.eraseUser("Jhon123");
+
+		assertEquals(EraseJob.FAILED, job.getStatus());
+		assertEquals("down", job.getError());
+		verify(userDAO, never()).deleteUser("Jhon123");
+	}
+
+	@Test
+	public void testFinishedJobsArePrunedAfterRetention() {
+		ReflectionTestUtils.setField(userEraseServiceImpl, "jobRetentionMillis", 60000L);
+		EraseJob old = userEraseServiceImpl.eraseUser("Jhon123");
+		EraseJob recent = userEraseServiceImpl.eraseUser("Ann456");
+		old.setFinishedAt(new Date(System.currentTimeMillis() - 120000));
+
+		assertNull(userEraseServiceImpl.getEraseJob(old.getJobId()));
+		assertSame(recent, userEraseServiceImpl.getEraseJob(recent.getJobId()));
+	}
+
+	@Test
+	public void testGetUnknownEraseJob() {
+		assertNull(userEraseServiceImpl.getEraseJob("none"));
+	}
+
+}